@@ -0,0 +1,260 @@
+import java.rmi.server.RemoteServer;
+import java.rmi.server.ServerNotActiveException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Controle de admissão na entrada do RemoteListImpl: sob sobrecarga o
+ * servidor recusa na hora, com uma sugestão de quando tentar de novo, em vez
+ * de enfileirar mais threads RMI até a latência explodir para todos.
+ *
+ * Três barreiras, nesta ordem:
+ * - limite de chamadas em execução, ajustado por AIMD: cresce 1/limite a cada
+ *   chamada rápida com o limite em uso e cai 10% (no máximo uma vez por
+ *   {@code targetMillis}) quando uma chamada passa do alvo de latência. O
+ *   ajuste é por CAS, sem lock, para não virar um ponto de disputa global;
+ * - taxa por cliente (host do RMI ou da conexão binária), um balde de fichas
+ *   cada, para que um cliente em laço não tome o servidor dos outros; baldes
+ *   cheios (clientes parados) são descartados a cada 10 s;
+ * - taxa global, outro balde.
+ *
+ * A recusa é uma RemoteListInterface.OverloadedException lançada antes de a
+ * chamada fazer qualquer coisa, então repetir é sempre seguro. As tarefas do
+ * próprio servidor (snapshot, compressão, replicação) usam caminhos que não
+ * passam por aqui.
+ */
+public class AdmissionControl {
+    private static final double BACKOFF = 0.9;
+    private static final long SWEEP_NANOS = TimeUnit.SECONDS.toNanos(10);  // limpeza dos baldes de clientes
+    private static final ThreadLocal<String> BINARY_CLIENT = new ThreadLocal<>();
+
+    /** Balde de fichas: {@code rate} por segundo, acumulando até {@code burst}. */
+    private static final class TokenBucket {
+        private final double perNano;
+        private final double burst;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        TokenBucket(double rate, double burst) {
+            this.perNano = rate / 1e9;
+            this.burst = Math.max(1, burst);
+            this.tokens = this.burst;
+        }
+
+        /** Tira uma ficha; sem ficha, devolve em quantos ms haverá uma (0 = tirou). */
+        synchronized long take() {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - refilledAt) * perNano);
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens--;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1 - tokens) / perNano / 1e6));
+        }
+
+        /** Devolve a ficha de uma chamada que uma barreira seguinte recusou. */
+        synchronized void refund() {
+            tokens = Math.min(burst, tokens + 1);
+        }
+
+        /** Cheio em {@code now}: igual a um balde novo, pode ser descartado. */
+        synchronized boolean fullAt(long now) {
+            return tokens + (now - refilledAt) * perNano >= burst;
+        }
+    }
+
+    private final TokenBucket global;
+    private final double clientRate;
+    private final double clientBurst;
+    private final ConcurrentHashMap<String, TokenBucket> clients = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Limite exato (double em bits), atualizado por CAS: a saída de cada chamada não passa por um monitor
+    private final AtomicLong exactLimit;
+    private final AtomicLong lastDecrease;
+    private volatile long avgNanos; // média móvel da latência, para a sugestão de espera
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejectedClient = new LongAdder();
+    private final LongAdder rejectedGlobal = new LongAdder();
+    private final LongAdder rejectedConcurrency = new LongAdder();
+
+    /** Taxas em chamadas/s (0 = sem limite); rajadas em chamadas. */
+    public AdmissionControl(double globalRate, double globalBurst, double clientRate, double clientBurst,
+                            int initialLimit, int minLimit, int maxLimit, long targetMillis) {
+        this.global = globalRate > 0 ? new TokenBucket(globalRate, globalBurst) : null;
+        this.clientRate = clientRate;
+        this.clientBurst = clientBurst;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.exactLimit = new AtomicLong(Double.doubleToLongBits(
+                Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit))));
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+        this.lastDecrease = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * remotelist.admission (padrão false) liga; remotelist.admission.rate e
+     * .burst (global), .clientRate e .clientBurst (por cliente), .limit,
+     * .minLimit e .maxLimit (chamadas em execução) e .targetMillis (alvo de
+     * latência). Retorna null se desligado.
+     */
+    public static AdmissionControl fromSystemProperties() {
+        if (!Boolean.getBoolean("remotelist.admission")) {
+            return null;
+        }
+        double rate = Double.parseDouble(System.getProperty("remotelist.admission.rate", "0"));
+        double clientRate = Double.parseDouble(System.getProperty("remotelist.admission.clientRate", "0"));
+        int processors = Runtime.getRuntime().availableProcessors();
+        return new AdmissionControl(rate,
+                Double.parseDouble(System.getProperty("remotelist.admission.burst", String.valueOf(rate / 10))),
+                clientRate,
+                Double.parseDouble(System.getProperty("remotelist.admission.clientBurst",
+                        String.valueOf(clientRate / 10))),
+                Integer.getInteger("remotelist.admission.limit", 16 * processors),
+                Integer.getInteger("remotelist.admission.minLimit", processors),
+                Integer.getInteger("remotelist.admission.maxLimit", 256 * processors),
+                Long.getLong("remotelist.admission.targetMillis", 50));
+    }
+
+    /** Marca a thread como atendendo o cliente binário {@code host} (ver BinaryServer). */
+    static void enterBinary(String host) {
+        BINARY_CLIENT.set(host);
+    }
+
+    static void exitBinary() {
+        BINARY_CLIENT.remove();
+    }
+
+    // Host de quem chamou; "local" numa chamada de dentro do processo
+    private static String caller() {
+        String binary = BINARY_CLIENT.get();
+        if (binary != null) {
+            return binary;
+        }
+        try {
+            return RemoteServer.getClientHost();
+        } catch (ServerNotActiveException e) {
+            return "local";
+        }
+    }
+
+    /**
+     * Admite a chamada ou lança OverloadedException; admitida, release no fim
+     * dela. O limite de execução vem primeiro e uma recusa devolve as fichas
+     * já tiradas, para que uma chamada recusada não gaste a taxa do cliente.
+     */
+    public void acquire() {
+        if (inFlight.incrementAndGet() > limit()) {
+            inFlight.decrementAndGet();
+            rejectedConcurrency.increment();
+            throw new RemoteListInterface.OverloadedException("Servidor ocupado",
+                    Math.max(1, TimeUnit.NANOSECONDS.toMillis(avgNanos)));
+        }
+        TokenBucket bucket = null;
+        if (clientRate > 0) {
+            String client = caller();
+            bucket = clients.computeIfAbsent(client, k -> new TokenBucket(clientRate, clientBurst));
+            long wait = bucket.take();
+            if (wait > 0) {
+                inFlight.decrementAndGet();
+                rejectedClient.increment();
+                throw new RemoteListInterface.OverloadedException("Limite de taxa do cliente " + client, wait);
+            }
+            sweepIdleClients();
+        }
+        if (global != null) {
+            long wait = global.take();
+            if (wait > 0) {
+                if (bucket != null) {
+                    bucket.refund();
+                }
+                inFlight.decrementAndGet();
+                rejectedGlobal.increment();
+                throw new RemoteListInterface.OverloadedException("Limite de taxa do servidor", wait);
+            }
+        }
+        admitted.increment();
+    }
+
+    // A cada SWEEP_NANOS, uma chamada (a que ganhar o CAS) descarta os baldes
+    // cheios: um cliente que sumiu não fica para sempre no mapa
+    private void sweepIdleClients() {
+        long now = System.nanoTime();
+        long last = lastSweep.get();
+        if (now - last >= SWEEP_NANOS && lastSweep.compareAndSet(last, now)) {
+            clients.values().removeIf(bucket -> bucket.fullAt(now));
+        }
+    }
+
+    /** Fim de uma chamada admitida, com a latência dela. */
+    public void release(long latencyNanos) {
+        int running = inFlight.getAndDecrement();
+        avgNanos += (latencyNanos - avgNanos) >> 4;  // corrida inofensiva: é só uma sugestão
+        if (latencyNanos > targetNanos) {
+            // Várias chamadas lentas juntas contam como um único sinal: só quem ganha o CAS reduz
+            long now = System.nanoTime();
+            long last = lastDecrease.get();
+            if (now - last >= targetNanos && lastDecrease.compareAndSet(last, now)) {
+                adjustLimit(true);
+            }
+        } else {
+            double current = Double.longBitsToDouble(exactLimit.get());
+            // Só cresce se o limite estiver sendo usado, senão ele subiria sem medir nada
+            if (2 * running >= current && current < maxLimit) {
+                adjustLimit(false);
+            }
+        }
+    }
+
+    private void adjustLimit(boolean decrease) {
+        while (true) {
+            long bits = exactLimit.get();
+            double current = Double.longBitsToDouble(bits);
+            double next = decrease ? Math.max(minLimit, current * BACKOFF) : Math.min(maxLimit, current + 1 / current);
+            if (next == current || exactLimit.compareAndSet(bits, Double.doubleToLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    public int limit() {
+        return (int) Double.longBitsToDouble(exactLimit.get());
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public String describe() {
+        return String.format("taxa global %s, por cliente %s, limite de execução %d (%d-%d, alvo %d ms)",
+                global != null ? (long) (global.perNano * 1e9) + "/s" : "livre",
+                clientRate > 0 ? (long) clientRate + "/s" : "livre", limit(), minLimit, maxLimit,
+                TimeUnit.NANOSECONDS.toMillis(targetNanos));
+    }
+
+    /** Linhas no formato do Prometheus para o /metrics. */
+    void scrape(StringBuilder out) {
+        out.append("# TYPE remotelist_admission_limit gauge\n");
+        out.append("remotelist_admission_limit ").append(limit()).append('\n');
+        out.append("# TYPE remotelist_admission_in_flight gauge\n");
+        out.append("remotelist_admission_in_flight ").append(inFlight.get()).append('\n');
+        out.append("# TYPE remotelist_admission_admitted_total counter\n");
+        out.append("remotelist_admission_admitted_total ").append(admitted.sum()).append('\n');
+        out.append("# TYPE remotelist_admission_rejected_total counter\n");
+        out.append("remotelist_admission_rejected_total{reason=\"client_rate\"} ").append(rejectedClient.sum())
+                .append('\n');
+        out.append("remotelist_admission_rejected_total{reason=\"global_rate\"} ").append(rejectedGlobal.sum())
+                .append('\n');
+        out.append("remotelist_admission_rejected_total{reason=\"concurrency\"} ")
+                .append(rejectedConcurrency.sum()).append('\n');
+    }
+}
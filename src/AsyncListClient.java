@@ -0,0 +1,196 @@
+import java.nio.ByteBuffer;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fachada assíncrona com lotes automáticos sobre um {@link BinaryClient}.
+ *
+ * append/get/remove/size devolvem um CompletableFuture na hora. As chamadas
+ * feitas dentro da janela de espera ({@code lingerMicros}) são juntadas em
+ * uma única requisição BATCH, até {@code maxBatch} operações; com o lote
+ * cheio ele sai imediatamente. O servidor executa o lote em ordem, e appends
+ * seguidos na mesma lista viram um único appendAll (um registro no WAL e uma
+ * espera de fsync para o grupo todo).
+ *
+ * A ordem de envio é a ordem das chamadas, então as operações de uma mesma
+ * thread são aplicadas na ordem em que ela as fez. Os futuros são completados
+ * na thread leitora do BinaryClient.
+ */
+public class AsyncListClient implements AutoCloseable {
+    private final BinaryClient client;
+    private final long lingerMicros;
+    private final int maxBatch;
+    private final ScheduledExecutorService timer;
+
+    // Lote em formação, protegido por this
+    private List<PendingOp> batch = new ArrayList<>();
+    private long batchNumber;
+
+    private static final class PendingOp {
+        final byte op;
+        final byte[] listId;
+        final int arg;
+        final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+        PendingOp(byte op, String listId, int arg) {
+            this.op = op;
+            this.listId = BinaryProtocol.utf8(listId);
+            this.arg = arg;
+        }
+    }
+
+    public AsyncListClient(BinaryClient client) {
+        this(client, 200, 1024);
+    }
+
+    public AsyncListClient(BinaryClient client, long lingerMicros, int maxBatch) {
+        this.client = client;
+        this.lingerMicros = lingerMicros;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.timer = Executors.newSingleThreadScheduledExecutor(RemoteListServer.daemonThreads("async-linger"));
+    }
+
+    public CompletableFuture<Boolean> append(String listId, int value) {
+        return enqueue(BinaryProtocol.APPEND, listId, value).thenApply(r -> r != 0);
+    }
+
+    public CompletableFuture<Integer> get(String listId, int index) {
+        return enqueue(BinaryProtocol.GET, listId, index);
+    }
+
+    public CompletableFuture<Integer> remove(String listId) {
+        return enqueue(BinaryProtocol.REMOVE, listId, 0);
+    }
+
+    public CompletableFuture<Integer> size(String listId) {
+        return enqueue(BinaryProtocol.SIZE, listId, 0);
+    }
+
+    /** Envia o lote em formação sem esperar a janela. */
+    public synchronized void flush() {
+        sendBatch();
+    }
+
+    @Override
+    public void close() {
+        flush();
+        timer.shutdown();
+    }
+
+    private CompletableFuture<Integer> enqueue(byte op, String listId, int arg) {
+        PendingOp pending = new PendingOp(op, listId, arg);
+        synchronized (this) {
+            batch.add(pending);
+            if (batch.size() >= maxBatch) {
+                sendBatch();
+            } else if (batch.size() == 1) {
+                // Primeira operação do lote: agenda o envio ao fim da janela
+                long number = batchNumber;
+                timer.schedule(() -> flushIfStill(number), lingerMicros, TimeUnit.MICROSECONDS);
+            }
+        }
+        return pending.result;
+    }
+
+    private synchronized void flushIfStill(long number) {
+        if (batchNumber == number) {
+            sendBatch();
+        }
+    }
+
+    // Chamado sob this: o quadro entra na conexão ainda sob o lock, então os
+    // lotes saem na ordem em que foram fechados e cada thread vê suas
+    // operações aplicadas na ordem em que as fez
+    private void sendBatch() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<PendingOp> ops = batch;
+        batch = new ArrayList<>(Math.min(maxBatch, ops.size() * 2));
+        batchNumber++;
+        if (ops.size() == 1) {
+            sendSingle(ops.get(0));
+            return;
+        }
+        int payload = 4;
+        for (PendingOp op : ops) {
+            payload += 1 + 2 + op.listId.length + (hasArg(op.op) ? 4 : 0);
+        }
+        client.call(BinaryProtocol.BATCH, payload, buf -> {
+            buf.putInt(ops.size());
+            for (PendingOp op : ops) {
+                buf.put(op.op);
+                BinaryProtocol.putString(buf, op.listId);
+                if (hasArg(op.op)) {
+                    buf.putInt(op.arg);
+                }
+            }
+        }, buf -> {
+            for (PendingOp op : ops) {
+                completeFrom(op, buf);
+            }
+            return null;
+        }).whenComplete((ignored, error) -> {
+            if (error != null) {
+                failAll(ops, error);
+            }
+        });
+    }
+
+    private void sendSingle(PendingOp op) {
+        CompletableFuture<Integer> call;
+        switch (op.op) {
+            case BinaryProtocol.APPEND:
+                call = client.call(op.op, 2 + op.listId.length + 4, buf -> {
+                    BinaryProtocol.putString(buf, op.listId);
+                    buf.putInt(op.arg);
+                }, buf -> (int) buf.get());
+                break;
+            case BinaryProtocol.GET:
+                call = client.call(op.op, 2 + op.listId.length + 4, buf -> {
+                    BinaryProtocol.putString(buf, op.listId);
+                    buf.putInt(op.arg);
+                }, ByteBuffer::getInt);
+                break;
+            default:
+                call = client.call(op.op, 2 + op.listId.length,
+                        buf -> BinaryProtocol.putString(buf, op.listId), ByteBuffer::getInt);
+        }
+        call.whenComplete((value, error) -> {
+            if (error != null) {
+                op.result.completeExceptionally(unwrap(error));
+            } else {
+                op.result.complete(value);
+            }
+        });
+    }
+
+    private static void completeFrom(PendingOp op, ByteBuffer buf) {
+        if (buf.get() == BinaryProtocol.OK) {
+            op.result.complete(buf.getInt());
+        } else {
+            op.result.completeExceptionally(new RemoteException(BinaryProtocol.getString(buf)));
+        }
+    }
+
+    private static void failAll(List<PendingOp> ops, Throwable error) {
+        Throwable cause = unwrap(error);
+        for (PendingOp op : ops) {
+            op.result.completeExceptionally(cause);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof java.util.concurrent.CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+    }
+
+    private static boolean hasArg(byte op) {
+        return op == BinaryProtocol.APPEND || op == BinaryProtocol.GET;
+    }
+}
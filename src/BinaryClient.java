@@ -0,0 +1,491 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Cliente do protocolo binário ({@link BinaryProtocol}): implementa
+ * RemoteListInterface sobre uma única conexão TCP, que pode ser usada por
+ * várias threads ao mesmo tempo.
+ *
+ * Cada chamada recebe um id e segue sem esperar as anteriores; uma thread
+ * leitora casa as respostas pelos ids. Os métodos síncronos esperam a
+ * própria resposta, e os {@code *Async} devolvem o futuro direto, permitindo
+ * muitas requisições em voo por thread. As continuações dos futuros rodam na
+ * thread leitora, então não devem bloquear.
+ *
+ * Escritas concorrentes se juntam: quem encontra outra thread enviando só
+ * acrescenta seu quadro ao buffer, e a que está enviando leva tudo na
+ * próxima syscall.
+ */
+public class BinaryClient implements RemoteListInterface, AutoCloseable {
+    private static final int BUFFER = 64 * 1024;
+    private static final boolean COMPRESS_RANGES = Boolean.parseBoolean(
+            System.getProperty("remotelist.binary.compressRanges", "true"));
+
+    /** Escreve os parâmetros de uma requisição no buffer de saída. */
+    interface Encoder {
+        void encode(ByteBuffer buf);
+    }
+
+    private final SocketChannel channel;
+    private final ConcurrentHashMap<Integer, CompletableFuture<ByteBuffer>> pending = new ConcurrentHashMap<>();
+    private final Thread reader;
+
+    // Saída: quadros acumulados em {@code out} enquanto outra thread envia {@code sending}
+    private final Object outLock = new Object();
+    private ByteBuffer out = ByteBuffer.allocateDirect(BUFFER);
+    private ByteBuffer sending = ByteBuffer.allocateDirect(BUFFER);
+    private boolean flushing;
+    private int nextId;
+    private volatile IOException failure;
+
+    public BinaryClient(String host, int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        reader = new Thread(this::readLoop, "binary-client-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    // ---- API assíncrona ----
+
+    public CompletableFuture<Boolean> appendAsync(String listId, int value) {
+        byte[] id = BinaryProtocol.utf8(listId);
+        return call(BinaryProtocol.APPEND, 2 + id.length + 4, buf -> {
+            BinaryProtocol.putString(buf, id);
+            buf.putInt(value);
+        }, BinaryClient::readBoolean);
+    }
+
+    public CompletableFuture<Integer> getAsync(String listId, int index) {
+        byte[] id = BinaryProtocol.utf8(listId);
+        return call(BinaryProtocol.GET, 2 + id.length + 4, buf -> {
+            BinaryProtocol.putString(buf, id);
+            buf.putInt(index);
+        }, ByteBuffer::getInt);
+    }
+
+    public CompletableFuture<Integer> removeAsync(String listId) {
+        byte[] id = BinaryProtocol.utf8(listId);
+        return call(BinaryProtocol.REMOVE, 2 + id.length, buf -> BinaryProtocol.putString(buf, id), ByteBuffer::getInt);
+    }
+
+    public CompletableFuture<Integer> sizeAsync(String listId) {
+        byte[] id = BinaryProtocol.utf8(listId);
+        return call(BinaryProtocol.SIZE, 2 + id.length, buf -> BinaryProtocol.putString(buf, id), ByteBuffer::getInt);
+    }
+
+    public CompletableFuture<Long> openAsync(String listId) {
+        byte[] id = BinaryProtocol.utf8(listId);
+        return call(BinaryProtocol.OPEN, 2 + id.length, buf -> BinaryProtocol.putString(buf, id), ByteBuffer::getLong);
+    }
+
+    public CompletableFuture<Boolean> appendAsync(long handle, int value) {
+        return call(BinaryProtocol.APPEND_H, 12, buf -> buf.putLong(handle).putInt(value), BinaryClient::readBoolean);
+    }
+
+    public CompletableFuture<Integer> getAsync(long handle, int index) {
+        return call(BinaryProtocol.GET_H, 12, buf -> buf.putLong(handle).putInt(index), ByteBuffer::getInt);
+    }
+
+    public CompletableFuture<Integer> removeAsync(long handle) {
+        return call(BinaryProtocol.REMOVE_H, 8, buf -> buf.putLong(handle), ByteBuffer::getInt);
+    }
+
+    public CompletableFuture<Integer> sizeAsync(long handle) {
+        return call(BinaryProtocol.SIZE_H, 8, buf -> buf.putLong(handle), ByteBuffer::getInt);
+    }
+
+    public CompletableFuture<String[]> listIdsAsync() {
+        return call(BinaryProtocol.LIST_IDS, 0, buf -> { }, buf -> {
+            String[] ids = new String[buf.getInt()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = BinaryProtocol.getString(buf);
+            }
+            return ids;
+        });
+    }
+
+    public CompletableFuture<RemoteListInterface.ListPage> scanListIdsAsync(String prefix, String cursor, int limit) {
+        byte[] p = BinaryProtocol.utf8(prefix != null ? prefix : "");
+        byte[] c = cursor != null ? BinaryProtocol.utf8(cursor) : null;
+        return call(BinaryProtocol.SCAN_LIST_IDS, 2 + p.length + 1 + (c != null ? 2 + c.length : 0) + 4, buf -> {
+            BinaryProtocol.putString(buf, p);
+            if (c != null) {
+                BinaryProtocol.putString(buf.put((byte) 1), c);
+            } else {
+                buf.put((byte) 0);
+            }
+            buf.putInt(limit);
+        }, buf -> {
+            String[] ids = new String[buf.getInt()];
+            int[] sizes = new int[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = BinaryProtocol.getString(buf);
+                sizes[i] = buf.getInt();
+            }
+            return new RemoteListInterface.ListPage(ids, sizes, buf.get() != 0 ? BinaryProtocol.getString(buf) : null);
+        });
+    }
+
+    public CompletableFuture<Boolean> appendAllAsync(String listId, int[] values) {
+        byte[] id = BinaryProtocol.utf8(listId);
+        int payload = (int) Math.min(Integer.MAX_VALUE, 2 + id.length + 4 + 4L * values.length);
+        return call(BinaryProtocol.APPEND_ALL, payload, buf -> {
+            BinaryProtocol.putString(buf, id);
+            BinaryProtocol.putInts(buf, values);
+        }, BinaryClient::readBoolean);
+    }
+
+    /** Com remotelist.binary.compressRanges (padrão true) o servidor pode responder comprimido (PackedInts). */
+    public CompletableFuture<int[]> getRangeAsync(String listId, int from, int to) {
+        byte[] id = BinaryProtocol.utf8(listId);
+        if (!COMPRESS_RANGES) {
+            return call(BinaryProtocol.GET_RANGE, 2 + id.length + 8, buf -> {
+                BinaryProtocol.putString(buf, id);
+                buf.putInt(from).putInt(to);
+            }, BinaryProtocol::getInts);
+        }
+        return call(BinaryProtocol.GET_RANGE_PACKED, 2 + id.length + 8, buf -> {
+            BinaryProtocol.putString(buf, id);
+            buf.putInt(from).putInt(to);
+        }, buf -> buf.get() == 1 ? PackedInts.readFrom(buf).toArray() : BinaryProtocol.getInts(buf));
+    }
+
+    public CompletableFuture<int[]> removeNAsync(String listId, int n) {
+        byte[] id = BinaryProtocol.utf8(listId);
+        return call(BinaryProtocol.REMOVE_N, 2 + id.length + 4, buf -> {
+            BinaryProtocol.putString(buf, id);
+            buf.putInt(n);
+        }, BinaryProtocol::getInts);
+    }
+
+    public CompletableFuture<int[]> sizesAsync(String[] listIds) {
+        byte[][] ids = new byte[listIds.length][];
+        int payload = 4;
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = BinaryProtocol.utf8(listIds[i]);
+            payload += 2 + ids[i].length;
+        }
+        return call(BinaryProtocol.SIZES, payload, buf -> {
+            buf.putInt(ids.length);
+            for (byte[] id : ids) {
+                BinaryProtocol.putString(buf, id);
+            }
+        }, BinaryProtocol::getInts);
+    }
+
+    public CompletableFuture<RemoteListInterface.Stats> statsAsync(String listId, int from, int to) {
+        byte[] id = BinaryProtocol.utf8(listId);
+        return call(BinaryProtocol.STATS, 2 + id.length + 8, buf -> {
+            BinaryProtocol.putString(buf, id);
+            buf.putInt(from).putInt(to);
+        }, buf -> new RemoteListInterface.Stats(buf.getLong(), buf.getLong(), buf.getInt(), buf.getInt()));
+    }
+
+    public CompletableFuture<Long> countAsync(String listId, int from, int to, int low, int high) {
+        byte[] id = BinaryProtocol.utf8(listId);
+        return call(BinaryProtocol.COUNT, 2 + id.length + 16, buf -> {
+            BinaryProtocol.putString(buf, id);
+            buf.putInt(from).putInt(to).putInt(low).putInt(high);
+        }, ByteBuffer::getLong);
+    }
+
+    public CompletableFuture<long[]> histogramAsync(String listId, int from, int to, int low, int high,
+            int buckets) {
+        byte[] id = BinaryProtocol.utf8(listId);
+        return call(BinaryProtocol.HISTOGRAM, 2 + id.length + 20, buf -> {
+            BinaryProtocol.putString(buf, id);
+            buf.putInt(from).putInt(to).putInt(low).putInt(high).putInt(buckets);
+        }, BinaryProtocol::getLongs);
+    }
+
+    public CompletableFuture<RemoteListInterface.ScanResult> scanAsync(String listId, int from, int to, int low,
+            int high, int limit) {
+        byte[] id = BinaryProtocol.utf8(listId);
+        return call(BinaryProtocol.SCAN, 2 + id.length + 20, buf -> {
+            BinaryProtocol.putString(buf, id);
+            buf.putInt(from).putInt(to).putInt(low).putInt(high).putInt(limit);
+        }, buf -> new RemoteListInterface.ScanResult(BinaryProtocol.getInts(buf), buf.getInt()));
+    }
+
+    // ---- RemoteListInterface (síncrono) ----
+
+    @Override
+    public boolean append(String listId, int value) throws RemoteException {
+        return await(appendAsync(listId, value));
+    }
+
+    @Override
+    public int get(String listId, int index) throws RemoteException {
+        return await(getAsync(listId, index));
+    }
+
+    @Override
+    public int remove(String listId) throws RemoteException {
+        return await(removeAsync(listId));
+    }
+
+    @Override
+    public int size(String listId) throws RemoteException {
+        return await(sizeAsync(listId));
+    }
+
+    @Override
+    public String[] listIds() throws RemoteException {
+        return await(listIdsAsync());
+    }
+
+    @Override
+    public RemoteListInterface.ListPage scanListIds(String prefix, String cursor, int limit) throws RemoteException {
+        return await(scanListIdsAsync(prefix, cursor, limit));
+    }
+
+    @Override
+    public long open(String listId) throws RemoteException {
+        return await(openAsync(listId));
+    }
+
+    @Override
+    public boolean append(long handle, int value) throws RemoteException {
+        return await(appendAsync(handle, value));
+    }
+
+    @Override
+    public int get(long handle, int index) throws RemoteException {
+        return await(getAsync(handle, index));
+    }
+
+    @Override
+    public int remove(long handle) throws RemoteException {
+        return await(removeAsync(handle));
+    }
+
+    @Override
+    public int size(long handle) throws RemoteException {
+        return await(sizeAsync(handle));
+    }
+
+    @Override
+    public boolean appendAll(String listId, int[] values) throws RemoteException {
+        return await(appendAllAsync(listId, values));
+    }
+
+    @Override
+    public int[] getRange(String listId, int from, int to) throws RemoteException {
+        return await(getRangeAsync(listId, from, to));
+    }
+
+    @Override
+    public int[] removeN(String listId, int n) throws RemoteException {
+        return await(removeNAsync(listId, n));
+    }
+
+    @Override
+    public int[] sizes(String[] listIds) throws RemoteException {
+        return await(sizesAsync(listIds));
+    }
+
+    @Override
+    public RemoteListInterface.Stats stats(String listId, int from, int to) throws RemoteException {
+        return await(statsAsync(listId, from, to));
+    }
+
+    @Override
+    public long count(String listId, int from, int to, int low, int high) throws RemoteException {
+        return await(countAsync(listId, from, to, low, high));
+    }
+
+    @Override
+    public long[] histogram(String listId, int from, int to, int low, int high, int buckets)
+            throws RemoteException {
+        return await(histogramAsync(listId, from, to, low, high, buckets));
+    }
+
+    @Override
+    public RemoteListInterface.ScanResult scan(String listId, int from, int to, int low, int high, int limit)
+            throws RemoteException {
+        return await(scanAsync(listId, from, to, low, high, limit));
+    }
+
+    @Override
+    public void shutdown() throws RemoteException {
+        await(call(BinaryProtocol.SHUTDOWN, 0, buf -> { }, BinaryClient::readBoolean));
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Fechando de qualquer forma
+        }
+    }
+
+    /** Espera o futuro convertendo falhas no RemoteException que o RMI lançaria. */
+    static <T> T await(CompletableFuture<T> future) throws RemoteException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RemoteException) {
+                throw (RemoteException) e.getCause();
+            }
+            if (e.getCause() instanceof RemoteListInterface.StaleHandleException) {
+                throw (RemoteListInterface.StaleHandleException) e.getCause();
+            }
+            if (e.getCause() instanceof RemoteListInterface.OverloadedException) {
+                throw (RemoteListInterface.OverloadedException) e.getCause();
+            }
+            if (e.getCause() instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) e.getCause();
+            }
+            throw new RemoteException("Falha na comunicação com o servidor", e.getCause());
+        }
+    }
+
+    private static Boolean readBoolean(ByteBuffer buf) {
+        return buf.get() != 0;
+    }
+
+    <T> CompletableFuture<T> call(byte op, int payload, Encoder encoder, Function<ByteBuffer, T> decoder) {
+        if (payload < 0 || payload > BinaryProtocol.MAX_FRAME - 5) {
+            // O servidor fecharia a conexão, derrubando as outras chamadas em voo: falha só esta
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                    "Requisição maior que o limite do protocolo (" + BinaryProtocol.MAX_FRAME + " bytes)"));
+        }
+        CompletableFuture<ByteBuffer> response = new CompletableFuture<>();
+        ByteBuffer toSend;
+        synchronized (outLock) {
+            if (failure != null) {
+                return CompletableFuture.failedFuture(failure);
+            }
+            int id = nextId++;
+            pending.put(id, response);
+            out = BinaryProtocol.ensure(out, BinaryProtocol.HEADER + payload);
+            out.putInt(5 + payload).putInt(id).put(op);
+            encoder.encode(out);
+            if (flushing) {
+                return response.thenApply(decoder);  // quem está enviando leva este quadro junto
+            }
+            flushing = true;
+            toSend = swap();
+        }
+        flushLoop(toSend);
+        return response.thenApply(decoder);
+    }
+
+    // Troca os buffers sob outLock: devolve o acumulado, pronto para enviar
+    private ByteBuffer swap() {
+        ByteBuffer full = out;
+        out = sending;
+        out.clear();
+        sending = full;
+        full.flip();
+        return full;
+    }
+
+    private void flushLoop(ByteBuffer toSend) {
+        try {
+            while (true) {
+                while (toSend.hasRemaining()) {
+                    channel.write(toSend);
+                }
+                synchronized (outLock) {
+                    if (out.position() == 0) {
+                        flushing = false;
+                        return;
+                    }
+                    toSend = swap();
+                }
+            }
+        } catch (IOException e) {
+            synchronized (outLock) {
+                flushing = false;
+            }
+            fail(e);
+        }
+    }
+
+    private void readLoop() {
+        ByteBuffer in = ByteBuffer.allocateDirect(BUFFER);
+        try {
+            while (channel.read(in) >= 0) {
+                in.flip();
+                while (in.remaining() >= 4) {
+                    int length = in.getInt(in.position());
+                    if (length < 5 || length > BinaryProtocol.MAX_FRAME) {
+                        throw new IOException("Resposta inválida: quadro de " + length + " bytes");
+                    }
+                    if (in.remaining() < 4 + length) {
+                        break;
+                    }
+                    in.position(in.position() + 4);
+                    int id = in.getInt();
+                    byte status = in.get();
+                    byte[] body = new byte[length - 5];
+                    in.get(body);
+                    complete(id, status, ByteBuffer.wrap(body));
+                }
+                in.compact();
+                if (in.position() >= 4 && in.getInt(0) <= BinaryProtocol.MAX_FRAME
+                        && in.capacity() < 4 + in.getInt(0)) {
+                    in = BinaryProtocol.ensure(in, 4 + in.getInt(0) - in.position());
+                }
+            }
+            fail(new IOException("Conexão encerrada pelo servidor"));
+        } catch (IOException e) {
+            fail(e);
+        } catch (RuntimeException e) {
+            // Resposta malformada: sem isso a leitora morreria calada e os futuros nunca completariam
+            fail(new IOException("Resposta inválida do servidor", e));
+        }
+    }
+
+    private void complete(int id, byte status, ByteBuffer body) {
+        CompletableFuture<ByteBuffer> future = pending.remove(id);
+        if (future == null) {
+            return;
+        }
+        if (status == BinaryProtocol.OK) {
+            future.complete(body);
+            return;
+        }
+        try {
+            if (status == BinaryProtocol.STALE_HANDLE) {
+                future.completeExceptionally(new RemoteListInterface.StaleHandleException(body.getLong()));
+            } else if (status == BinaryProtocol.OVERLOADED) {
+                long retryAfter = body.getLong();
+                future.completeExceptionally(new RemoteListInterface.OverloadedException(
+                        BinaryProtocol.getString(body), retryAfter));
+            } else {
+                future.completeExceptionally(new RemoteException(BinaryProtocol.getString(body)));
+            }
+        } catch (RuntimeException e) {
+            // Já saiu de 'pending': completa aqui, e readLoop derruba a conexão
+            future.completeExceptionally(new RemoteException("Resposta inválida do servidor", e));
+            throw e;
+        }
+    }
+
+    private void fail(IOException e) {
+        synchronized (outLock) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        for (Integer id : pending.keySet()) {
+            CompletableFuture<ByteBuffer> future = pending.remove(id);
+            if (future != null) {
+                future.completeExceptionally(new RemoteException("Conexão perdida", e));
+            }
+        }
+        close();
+    }
+}
@@ -0,0 +1,118 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Protocolo binário do transporte NIO (alternativa ao RMI).
+ *
+ * Cada mensagem é um quadro com prefixo de tamanho:
+ * <pre>
+ * requisição: [int tamanho][int id][byte op][parâmetros]
+ * resposta:   [int tamanho][int id][byte status][resultado | mensagem de erro]
+ * </pre>
+ * onde {@code tamanho} conta os bytes depois dele. O id devolvido na resposta
+ * permite várias requisições em voo na mesma conexão (pipelining); o servidor
+ * executa as requisições de uma conexão na ordem em que chegaram.
+ *
+ * Strings são [short bytes][UTF-8]; arrays são [int n][elementos].
+ */
+final class BinaryProtocol {
+    // Requisição maior é descartada pelo servidor e respondida com ERROR; o cliente nem a envia
+    static final int MAX_FRAME = 64 << 20;
+    static final int HEADER = 9;  // tamanho + id + op/status
+
+    static final byte APPEND = 1;      // listId, int         -> boolean
+    static final byte GET = 2;         // listId, int índice  -> int
+    static final byte REMOVE = 3;      // listId              -> int
+    static final byte SIZE = 4;        // listId              -> int
+    static final byte LIST_IDS = 5;    //                     -> String[]
+    static final byte APPEND_ALL = 6;  // listId, int[]       -> boolean
+    static final byte GET_RANGE = 7;   // listId, int, int    -> int[]
+    static final byte REMOVE_N = 8;    // listId, int n       -> int[]
+    static final byte SIZES = 9;       // String[]            -> int[]
+    static final byte SHUTDOWN = 10;   //                     -> boolean
+    // Lote: [int n] e n vezes [byte op][listId][int arg se APPEND/GET], só com
+    // APPEND/GET/REMOVE/SIZE; resposta: n vezes [byte status][int | mensagem]
+    static final byte BATCH = 11;
+    // Consultas no servidor sobre [from, to) de uma lista
+    static final byte STATS = 12;      // listId, int, int                     -> long n, long soma, int mín, int máx
+    static final byte COUNT = 13;      // listId, int, int, int low, int high  -> long
+    static final byte HISTOGRAM = 14;  // listId, int, int, int, int, int faixas -> long[]
+    static final byte SCAN = 15;       // listId, int, int, int, int, int limite -> int[], int próximo
+    // Como GET_RANGE; resposta [byte 1][PackedInts] se comprimir compensar, senão [byte 0][int[]]
+    static final byte GET_RANGE_PACKED = 16;
+    // Handles (ver RemoteListInterface.open): o long no lugar do listId
+    static final byte OPEN = 17;       // listId              -> long
+    static final byte APPEND_H = 18;   // long, int           -> boolean
+    static final byte GET_H = 19;      // long, int índice    -> int
+    static final byte REMOVE_H = 20;   // long                -> int
+    static final byte SIZE_H = 21;     // long                -> int
+    // prefixo, [byte 1][cursor] ou [byte 0], int limite -> [int n] n x [id][int tamanho], [byte 1][próximo] ou [byte 0]
+    static final byte SCAN_LIST_IDS = 22;
+
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+    static final byte STALE_HANDLE = 2;  // resultado: [long handle] recusado (StaleHandleException)
+    static final byte OVERLOADED = 3;    // resultado: [long ms para tentar de novo][motivo] (OverloadedException)
+
+    private BinaryProtocol() {
+    }
+
+    static byte[] utf8(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Texto longo demais para o protocolo: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    static void putString(ByteBuffer buf, byte[] utf8) {
+        buf.putShort((short) utf8.length).put(utf8);
+    }
+
+    static String getString(ByteBuffer buf) {
+        int length = buf.getShort();
+        String s = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+        buf.position(buf.position() + length);
+        return s;
+    }
+
+    static void putInts(ByteBuffer buf, int[] values) {
+        buf.putInt(values.length);
+        buf.asIntBuffer().put(values);
+        buf.position(buf.position() + 4 * values.length);
+    }
+
+    static int[] getInts(ByteBuffer buf) {
+        int[] values = new int[buf.getInt()];
+        buf.asIntBuffer().get(values);
+        buf.position(buf.position() + 4 * values.length);
+        return values;
+    }
+
+    static void putLongs(ByteBuffer buf, long[] values) {
+        buf.putInt(values.length);
+        buf.asLongBuffer().put(values);
+        buf.position(buf.position() + 8 * values.length);
+    }
+
+    static long[] getLongs(ByteBuffer buf) {
+        long[] values = new long[buf.getInt()];
+        buf.asLongBuffer().get(values);
+        buf.position(buf.position() + 8 * values.length);
+        return values;
+    }
+
+    /** Garante espaço para mais {@code needed} bytes, dobrando o buffer se preciso. */
+    static ByteBuffer ensure(ByteBuffer buf, int needed) {
+        if (buf.remaining() >= needed) {
+            return buf;
+        }
+        int capacity = buf.capacity();
+        while (capacity - buf.position() < needed) {
+            capacity *= 2;
+        }
+        ByteBuffer bigger = buf.isDirect() ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        buf.flip();
+        return bigger.put(buf);
+    }
+}
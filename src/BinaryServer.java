@@ -0,0 +1,742 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Servidor do protocolo binário ({@link BinaryProtocol}) sobre NIO, ao lado
+ * do RMI e com as mesmas operações de RemoteListInterface.
+ *
+ * Poucas threads de I/O (seletores) atendem todas as conexões sem bloquear:
+ * leem os quadros completos e entregam a execução ao {@code executor}. As
+ * requisições de uma conexão são executadas em ordem por uma única tarefa de
+ * cada vez, e as respostas são acumuladas e enviadas juntas ao fim do lote,
+ * então um cliente com muitas requisições em voo paga poucas syscalls.
+ *
+ * Contrapressão: com {@code MAX_QUEUED_FRAMES} requisições esperando execução
+ * ou {@code MAX_PENDING_OUT} bytes de resposta ainda não enviados, a conexão
+ * deixa de ser lida (sai OP_READ) e, com a saída cheia, as requisições
+ * param de ser executadas até o socket liberar. Um cliente que manda sem ler
+ * as respostas para no próprio TCP em vez de encher o heap.
+ */
+public class BinaryServer {
+    private static final int READ_BUFFER = 64 * 1024;
+    // Acima disto a conexão para de ser lida até os workers e o socket darem vazão
+    private static final int MAX_QUEUED_FRAMES = 1024;
+    private static final int MAX_PENDING_OUT = 4 << 20;
+    private static final int MIN_FRAME = BinaryProtocol.HEADER - 4;
+    // Op interna: a requisição passou de MAX_FRAME e foi descartada; o quadro traz [int id][op][int tamanho]
+    private static final byte TOO_LARGE = 0;
+
+    private final RemoteListInterface target;
+    private final Executor executor;
+    private final ServerSocketChannel acceptor;
+    private final IoLoop[] loops;
+    private volatile boolean running = true;
+    private int nextLoop;
+
+    public BinaryServer(RemoteListInterface target, int port, int ioThreads, Executor executor) throws IOException {
+        this.target = target;
+        this.executor = executor;
+        this.acceptor = ServerSocketChannel.open();
+        acceptor.bind(new InetSocketAddress(port));
+        acceptor.configureBlocking(false);
+        this.loops = new IoLoop[Math.max(1, ioThreads)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new IoLoop(i);
+        }
+        acceptor.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public void start() {
+        for (IoLoop loop : loops) {
+            loop.thread.start();
+        }
+    }
+
+    public int port() {
+        return acceptor.socket().getLocalPort();
+    }
+
+    public void stop() {
+        running = false;
+        for (IoLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+        for (IoLoop loop : loops) {
+            try {
+                loop.thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            acceptor.close();
+        } catch (IOException e) {
+            // Já estamos encerrando
+        }
+    }
+
+    private final class IoLoop implements Runnable {
+        final Selector selector;
+        final Thread thread;
+        final Queue<SocketChannel> incoming = new ConcurrentLinkedQueue<>();
+
+        IoLoop(int index) throws IOException {
+            selector = Selector.open();
+            thread = new Thread(this, "binary-io-" + index);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    SocketChannel channel;
+                    while ((channel = incoming.poll()) != null) {
+                        try {
+                            register(channel);
+                        } catch (IOException e) {
+                            channel.close();  // cliente desistiu antes do registro
+                        }
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            try {
+                                accept();
+                            } catch (IOException e) {
+                                // Ex.: sem descritores livres; as conexões já abertas seguem atendidas
+                                ServerLog.error("Falha ao aceitar conexão binária: " + e.getMessage());
+                            }
+                            continue;
+                        }
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                connection.onReadable();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.onWritable();
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            // Inclui CancelledKeyException de um close() feito por um worker:
+                            // derruba só esta conexão, nunca o loop e as outras dele
+                            connection.close();
+                        }
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (running) {
+                    ServerLog.error("Falha no loop de I/O binário: " + e.getMessage());
+                }
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    if (key.attachment() instanceof Connection) {
+                        ((Connection) key.attachment()).close();
+                    }
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    // Já estamos encerrando
+                }
+            }
+        }
+
+        private void accept() throws IOException {
+            SocketChannel channel;
+            while ((channel = acceptor.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                IoLoop loop = loops[nextLoop++ % loops.length];
+                if (loop == this) {
+                    register(channel);
+                } else {
+                    loop.incoming.add(channel);
+                    loop.selector.wakeup();
+                }
+            }
+        }
+
+        private void register(SocketChannel channel) throws IOException {
+            Connection connection = new Connection(channel, selector);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        }
+    }
+
+    private final class Connection {
+        final SocketChannel channel;
+        final Selector selector;
+        final String host;  // cliente para o controle de admissão
+        SelectionKey key;
+        ByteBuffer in = ByteBuffer.allocate(READ_BUFFER);
+        int discarding;  // bytes que faltam de uma requisição grande demais
+
+        // Quadros lidos e ainda não executados, e se já há uma tarefa drenando
+        final Queue<byte[]> inbox = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queued = new AtomicInteger();  // tamanho de inbox
+        final AtomicBoolean scheduled = new AtomicBoolean();
+
+        // Respostas pendentes de envio, protegidas por outLock
+        final Object outLock = new Object();
+        ByteBuffer out = ByteBuffer.allocate(READ_BUFFER);
+        boolean waitingWritable;
+        boolean stalled;  // drain parado com a saída cheia; 'scheduled' continua true
+
+        // Resultados de um lote em montagem; só a tarefa de drain usa
+        ByteBuffer batchOut = ByteBuffer.allocate(4096);
+
+        Connection(SocketChannel channel, Selector selector) {
+            this.channel = channel;
+            this.selector = selector;
+            String remote;
+            try {
+                remote = ((InetSocketAddress) channel.getRemoteAddress()).getHostString();
+            } catch (IOException | RuntimeException e) {
+                remote = "desconhecido";
+            }
+            this.host = remote;
+        }
+
+        void onReadable() throws IOException {
+            int n = channel.read(in);
+            if (n < 0) {
+                close();
+                return;
+            }
+            in.flip();
+            boolean received = false;
+            while (true) {
+                if (discarding > 0) {
+                    int skipped = Math.min(discarding, in.remaining());
+                    in.position(in.position() + skipped);
+                    discarding -= skipped;
+                    if (discarding > 0) {
+                        break;
+                    }
+                }
+                if (in.remaining() < 4) {
+                    break;
+                }
+                int length = in.getInt(in.position());
+                if (length < MIN_FRAME) {
+                    throw new IOException("Quadro inválido: " + length + " bytes");
+                }
+                if (length > BinaryProtocol.MAX_FRAME) {
+                    // Descarta a requisição e responde erro só para ela, sem derrubar a conexão
+                    if (in.remaining() < 8) {
+                        break;
+                    }
+                    int id = in.getInt(in.position() + 4);
+                    enqueue(ByteBuffer.allocate(9).putInt(id).put(TOO_LARGE).putInt(length).array());
+                    received = true;
+                    in.position(in.position() + 4);
+                    discarding = length;
+                    continue;
+                }
+                if (in.remaining() < 4 + length) {
+                    break;
+                }
+                in.position(in.position() + 4);
+                byte[] frame = new byte[length];
+                in.get(frame);
+                enqueue(frame);
+                received = true;
+            }
+            in.compact();
+            if (in.position() >= 4 && in.getInt(0) <= BinaryProtocol.MAX_FRAME
+                    && in.capacity() < 4 + in.getInt(0)) {
+                // Quadro maior que o buffer: cresce só para ele
+                in = BinaryProtocol.ensure(in, 4 + in.getInt(0) - in.position());
+            }
+            if (received) {
+                synchronized (outLock) {
+                    updateInterest();
+                }
+                if (scheduled.compareAndSet(false, true)) {
+                    executor.execute(this::drain);
+                }
+            }
+        }
+
+        private void enqueue(byte[] frame) {
+            inbox.add(frame);
+            queued.incrementAndGet();
+        }
+
+        void drain() {
+            AdmissionControl.enterBinary(host);
+            try {
+                drainFrames();
+            } finally {
+                AdmissionControl.exitBinary();
+            }
+        }
+
+        private void drainFrames() {
+            do {
+                byte[] frame;
+                while ((frame = inbox.poll()) != null) {
+                    queued.decrementAndGet();
+                    handle(ByteBuffer.wrap(frame));
+                    if (outputFull() && (!flushQuietly() || stall())) {
+                        return;  // conexão caiu, ou onWritable retoma quando o socket liberar
+                    }
+                }
+                if (!flushQuietly()) {
+                    return;
+                }
+                scheduled.set(false);
+                // Outro quadro pode ter chegado entre o último poll e o set(false)
+            } while (!inbox.isEmpty() && scheduled.compareAndSet(false, true));
+        }
+
+        void onWritable() throws IOException {
+            synchronized (outLock) {
+                out.flip();
+                channel.write(out);
+                out.compact();
+                if (out.position() == 0) {
+                    waitingWritable = false;
+                }
+                if (stalled && out.position() < MAX_PENDING_OUT) {
+                    stalled = false;
+                    executor.execute(this::drain);
+                }
+                updateInterest();
+            }
+        }
+
+        // Depois de um flush: se a saída continua cheia, o drain para até o socket liberar
+        private boolean stall() {
+            synchronized (outLock) {
+                if (out.position() >= MAX_PENDING_OUT) {
+                    stalled = true;
+                }
+                return stalled;
+            }
+        }
+
+        // Envia o que der; false se a conexão caiu (e foi fechada)
+        private boolean flushQuietly() {
+            try {
+                flush();
+                return true;
+            } catch (IOException | CancelledKeyException e) {
+                close();
+                return false;
+            }
+        }
+
+        private void flush() throws IOException {
+            synchronized (outLock) {
+                if (!waitingWritable && out.position() > 0) {
+                    // Com waitingWritable o loop de I/O termina de enviar quando o socket liberar
+                    out.flip();
+                    channel.write(out);
+                    out.compact();
+                    waitingWritable = out.position() > 0;
+                }
+                updateInterest();
+            }
+        }
+
+        private boolean outputFull() {
+            synchronized (outLock) {
+                return out.position() >= MAX_PENDING_OUT;
+            }
+        }
+
+        // Sob outLock: lê só se houver espaço na fila e na saída; escreve se sobrou resposta
+        private void updateInterest() {
+            if (!key.isValid()) {
+                return;  // fechada (close também roda sob outLock)
+            }
+            boolean full = queued.get() >= MAX_QUEUED_FRAMES || out.position() >= MAX_PENDING_OUT;
+            int ops = (full ? 0 : SelectionKey.OP_READ) | (waitingWritable ? SelectionKey.OP_WRITE : 0);
+            if (key.interestOps() != ops) {
+                key.interestOps(ops);
+                selector.wakeup();
+            }
+        }
+
+        void close() {
+            synchronized (outLock) {
+                if (key != null) {
+                    key.cancel();
+                }
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // Conexão já fechada pelo cliente
+                }
+            }
+        }
+
+        private void handle(ByteBuffer req) {
+            int id = req.getInt();
+            byte op = req.get();
+            try {
+                switch (op) {
+                    case BinaryProtocol.APPEND:
+                        respond(id, target.append(BinaryProtocol.getString(req), req.getInt()));
+                        break;
+                    case BinaryProtocol.GET:
+                        respond(id, target.get(BinaryProtocol.getString(req), req.getInt()));
+                        break;
+                    case BinaryProtocol.REMOVE:
+                        respond(id, target.remove(BinaryProtocol.getString(req)));
+                        break;
+                    case BinaryProtocol.SIZE:
+                        respond(id, target.size(BinaryProtocol.getString(req)));
+                        break;
+                    case BinaryProtocol.LIST_IDS:
+                        respond(id, target.listIds());
+                        break;
+                    case BinaryProtocol.APPEND_ALL: {
+                        String listId = BinaryProtocol.getString(req);
+                        respond(id, target.appendAll(listId, BinaryProtocol.getInts(req)));
+                        break;
+                    }
+                    case BinaryProtocol.GET_RANGE: {
+                        String listId = BinaryProtocol.getString(req);
+                        int from = req.getInt();
+                        respond(id, target.getRange(listId, from, req.getInt()));
+                        break;
+                    }
+                    case BinaryProtocol.GET_RANGE_PACKED: {
+                        String listId = BinaryProtocol.getString(req);
+                        int from = req.getInt();
+                        respondPacked(id, target.getRange(listId, from, req.getInt()));
+                        break;
+                    }
+                    case BinaryProtocol.REMOVE_N: {
+                        String listId = BinaryProtocol.getString(req);
+                        respond(id, target.removeN(listId, req.getInt()));
+                        break;
+                    }
+                    case BinaryProtocol.SIZES: {
+                        String[] ids = new String[req.getInt()];
+                        for (int i = 0; i < ids.length; i++) {
+                            ids[i] = BinaryProtocol.getString(req);
+                        }
+                        respond(id, target.sizes(ids));
+                        break;
+                    }
+                    case BinaryProtocol.STATS: {
+                        String listId = BinaryProtocol.getString(req);
+                        int from = req.getInt();
+                        respond(id, target.stats(listId, from, req.getInt()));
+                        break;
+                    }
+                    case BinaryProtocol.COUNT: {
+                        String listId = BinaryProtocol.getString(req);
+                        int from = req.getInt();
+                        int to = req.getInt();
+                        int low = req.getInt();
+                        respond(id, target.count(listId, from, to, low, req.getInt()));
+                        break;
+                    }
+                    case BinaryProtocol.HISTOGRAM: {
+                        String listId = BinaryProtocol.getString(req);
+                        int from = req.getInt();
+                        int to = req.getInt();
+                        int low = req.getInt();
+                        int high = req.getInt();
+                        respond(id, target.histogram(listId, from, to, low, high, req.getInt()));
+                        break;
+                    }
+                    case BinaryProtocol.SCAN: {
+                        String listId = BinaryProtocol.getString(req);
+                        int from = req.getInt();
+                        int to = req.getInt();
+                        int low = req.getInt();
+                        int high = req.getInt();
+                        respond(id, target.scan(listId, from, to, low, high, req.getInt()));
+                        break;
+                    }
+                    case BinaryProtocol.SCAN_LIST_IDS: {
+                        String prefix = BinaryProtocol.getString(req);
+                        String cursor = req.get() != 0 ? BinaryProtocol.getString(req) : null;
+                        respond(id, target.scanListIds(prefix, cursor, req.getInt()));
+                        break;
+                    }
+                    case BinaryProtocol.OPEN:
+                        respond(id, target.open(BinaryProtocol.getString(req)));
+                        break;
+                    case BinaryProtocol.APPEND_H: {
+                        long handle = req.getLong();
+                        respond(id, target.append(handle, req.getInt()));
+                        break;
+                    }
+                    case BinaryProtocol.GET_H: {
+                        long handle = req.getLong();
+                        respond(id, target.get(handle, req.getInt()));
+                        break;
+                    }
+                    case BinaryProtocol.REMOVE_H:
+                        respond(id, target.remove(req.getLong()));
+                        break;
+                    case BinaryProtocol.SIZE_H:
+                        respond(id, target.size(req.getLong()));
+                        break;
+                    case BinaryProtocol.BATCH:
+                        handleBatch(id, req);
+                        break;
+                    case TOO_LARGE:
+                        respondError(id, "Requisição de " + req.getInt() + " bytes maior que o limite do protocolo ("
+                                + BinaryProtocol.MAX_FRAME + " bytes)");
+                        break;
+                    case BinaryProtocol.SHUTDOWN:
+                        target.shutdown();
+                        respond(id, true);
+                        break;
+                    default:
+                        respondError(id, "Operação desconhecida: " + op);
+                }
+            } catch (RemoteException e) {
+                respondError(id, e.getMessage());
+            } catch (RemoteListInterface.StaleHandleException e) {
+                synchronized (outLock) {
+                    begin(id, BinaryProtocol.STALE_HANDLE, 8).putLong(e.handle);
+                }
+            } catch (RemoteListInterface.OverloadedException e) {
+                byte[] text = BinaryProtocol.utf8(e.reason);
+                synchronized (outLock) {
+                    BinaryProtocol.putString(begin(id, BinaryProtocol.OVERLOADED, 10 + text.length)
+                            .putLong(e.retryAfterMillis), text);
+                }
+            } catch (RuntimeException e) {
+                respondError(id, "Requisição inválida: " + e);
+            }
+        }
+
+        /**
+         * Executa um lote em ordem e responde tudo em um quadro. Appends
+         * seguidos na mesma lista viram um appendAll: um registro no WAL e uma
+         * única espera de durabilidade para o grupo.
+         */
+        private void handleBatch(int id, ByteBuffer req) {
+            int n = req.getInt();
+            byte[] ops = new byte[n];
+            String[] ids = new String[n];
+            int[] args = new int[n];
+            for (int i = 0; i < n; i++) {
+                ops[i] = req.get();
+                ids[i] = BinaryProtocol.getString(req);
+                if (ops[i] == BinaryProtocol.APPEND || ops[i] == BinaryProtocol.GET) {
+                    args[i] = req.getInt();
+                } else if (ops[i] != BinaryProtocol.REMOVE && ops[i] != BinaryProtocol.SIZE) {
+                    throw new IllegalArgumentException("operação " + ops[i] + " não permitida em lote");
+                }
+            }
+            batchOut.clear();
+            int i = 0;
+            while (i < n) {
+                int end = i + 1;
+                try {
+                    switch (ops[i]) {
+                        case BinaryProtocol.APPEND:
+                            while (end < n && ops[end] == BinaryProtocol.APPEND && ids[end].equals(ids[i])) {
+                                end++;
+                            }
+                            if (end - i == 1) {
+                                target.append(ids[i], args[i]);
+                            } else {
+                                target.appendAll(ids[i], Arrays.copyOfRange(args, i, end));
+                            }
+                            for (int k = i; k < end; k++) {
+                                batchResult(1);
+                            }
+                            break;
+                        case BinaryProtocol.GET:
+                            batchResult(target.get(ids[i], args[i]));
+                            break;
+                        case BinaryProtocol.REMOVE:
+                            batchResult(target.remove(ids[i]));
+                            break;
+                        default:
+                            batchResult(target.size(ids[i]));
+                    }
+                } catch (RemoteException | RuntimeException e) {
+                    // Falha no meio do lote vale só para as operações dela: as anteriores já foram aplicadas
+                    byte[] text = BinaryProtocol.utf8(e instanceof RemoteException
+                            || e instanceof RemoteListInterface.OverloadedException
+                            ? String.valueOf(e.getMessage()) : "Requisição inválida: " + e);
+                    for (int k = i; k < end; k++) {
+                        batchOut = BinaryProtocol.ensure(batchOut, 3 + text.length);
+                        batchOut.put(BinaryProtocol.ERROR);
+                        BinaryProtocol.putString(batchOut, text);
+                    }
+                }
+                i = end;
+            }
+            batchOut.flip();
+            frame(id, BinaryProtocol.OK, batchOut.remaining(), buf -> buf.put(batchOut));
+        }
+
+        private void batchResult(int value) {
+            batchOut = BinaryProtocol.ensure(batchOut, 5);
+            batchOut.put(BinaryProtocol.OK).putInt(value);
+        }
+
+        /** Corpo de uma resposta, escrito logo depois do cabeçalho. */
+        private interface Body {
+            void write(ByteBuffer buf);
+        }
+
+        // Respostas de tamanho fixo e pequeno: não estouram nem falham no meio
+        private ByteBuffer begin(int id, byte status, int payload) {
+            out = BinaryProtocol.ensure(out, BinaryProtocol.HEADER + payload);
+            return out.putInt(5 + payload).putInt(id).put(status);
+        }
+
+        /**
+         * Resposta de tamanho variável: acima de MAX_FRAME vira um erro para
+         * esta requisição, e se o corpo falhar no meio o quadro é desfeito,
+         * para que nenhuma resposta seguinte da conexão saia corrompida.
+         */
+        private void frame(int id, byte status, long payload, Body body) {
+            if (5 + payload > BinaryProtocol.MAX_FRAME) {
+                respondError(id, "Resposta de " + (5 + payload) + " bytes maior que o limite do protocolo ("
+                        + BinaryProtocol.MAX_FRAME + " bytes); peça intervalos menores");
+                return;
+            }
+            synchronized (outLock) {
+                out = BinaryProtocol.ensure(out, BinaryProtocol.HEADER + (int) payload);
+                int start = out.position();
+                try {
+                    out.putInt(5 + (int) payload).putInt(id).put(status);
+                    body.write(out);
+                    if (out.position() - start != BinaryProtocol.HEADER + payload) {
+                        throw new IllegalStateException("Resposta com tamanho diferente do anunciado");
+                    }
+                } catch (RuntimeException e) {
+                    out.position(start);
+                    throw e;
+                }
+            }
+        }
+
+        private void respond(int id, boolean value) {
+            synchronized (outLock) {
+                begin(id, BinaryProtocol.OK, 1).put((byte) (value ? 1 : 0));
+            }
+        }
+
+        private void respond(int id, int value) {
+            synchronized (outLock) {
+                begin(id, BinaryProtocol.OK, 4).putInt(value);
+            }
+        }
+
+        private void respond(int id, int[] values) {
+            frame(id, BinaryProtocol.OK, 4 + 4L * values.length, buf -> BinaryProtocol.putInts(buf, values));
+        }
+
+        private void respondPacked(int id, int[] values) {
+            PackedInts packed = values.length >= PackedInts.FRAME && values.length <= PackedInts.MAX_SIZE
+                    ? PackedInts.pack(values, 0, values.length) : null;
+            if (packed == null || packed.encodedBytes() >= 4 + 4L * values.length) {
+                frame(id, BinaryProtocol.OK, 5 + 4L * values.length,
+                        buf -> BinaryProtocol.putInts(buf.put((byte) 0), values));
+                return;
+            }
+            frame(id, BinaryProtocol.OK, 1L + packed.encodedBytes(), buf -> packed.writeTo(buf.put((byte) 1)));
+        }
+
+        private void respond(int id, long value) {
+            synchronized (outLock) {
+                begin(id, BinaryProtocol.OK, 8).putLong(value);
+            }
+        }
+
+        private void respond(int id, long[] values) {
+            frame(id, BinaryProtocol.OK, 4 + 8L * values.length, buf -> BinaryProtocol.putLongs(buf, values));
+        }
+
+        private void respond(int id, RemoteListInterface.Stats stats) {
+            synchronized (outLock) {
+                begin(id, BinaryProtocol.OK, 24).putLong(stats.count).putLong(stats.sum).putInt(stats.min)
+                        .putInt(stats.max);
+            }
+        }
+
+        private void respond(int id, RemoteListInterface.ScanResult result) {
+            frame(id, BinaryProtocol.OK, 8 + 4L * result.values.length, buf -> {
+                BinaryProtocol.putInts(buf, result.values);
+                buf.putInt(result.next);
+            });
+        }
+
+        private void respond(int id, RemoteListInterface.ListPage page) {
+            byte[][] encoded = new byte[page.ids.length][];
+            long payload = 4 + 1;
+            for (int i = 0; i < encoded.length; i++) {
+                encoded[i] = BinaryProtocol.utf8(page.ids[i]);
+                payload += 2 + encoded[i].length + 4;
+            }
+            byte[] next = page.next != null ? BinaryProtocol.utf8(page.next) : null;
+            if (next != null) {
+                payload += 2 + next.length;
+            }
+            frame(id, BinaryProtocol.OK, payload, buf -> {
+                buf.putInt(encoded.length);
+                for (int i = 0; i < encoded.length; i++) {
+                    BinaryProtocol.putString(buf, encoded[i]);
+                    buf.putInt(page.sizes[i]);
+                }
+                if (next != null) {
+                    BinaryProtocol.putString(buf.put((byte) 1), next);
+                } else {
+                    buf.put((byte) 0);
+                }
+            });
+        }
+
+        private void respond(int id, String[] values) {
+            byte[][] encoded = new byte[values.length][];
+            long payload = 4;
+            for (int i = 0; i < values.length; i++) {
+                encoded[i] = BinaryProtocol.utf8(values[i]);
+                payload += 2 + encoded[i].length;
+            }
+            frame(id, BinaryProtocol.OK, payload, buf -> {
+                buf.putInt(values.length);
+                for (byte[] s : encoded) {
+                    BinaryProtocol.putString(buf, s);
+                }
+            });
+        }
+
+        private void respondError(int id, String message) {
+            String text = message != null ? message : "Erro no servidor";
+            // Cabe sempre no campo de string (short), mesmo com um listId enorme na mensagem
+            byte[] utf8 = BinaryProtocol.utf8(text.length() > 1000 ? text.substring(0, 1000) + "..." : text);
+            synchronized (outLock) {
+                BinaryProtocol.putString(begin(id, BinaryProtocol.ERROR, 2 + utf8.length), utf8);
+            }
+        }
+    }
+}
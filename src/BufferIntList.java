@@ -0,0 +1,194 @@
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Base dos armazenamentos fora do heap: segmentos de tamanho fixo em
+ * IntBuffers (memória direta ou arquivo mapeado), como os int[] do IntList.
+ * O heap guarda só o diretório de segmentos; os valores não passam pelo GC.
+ */
+abstract class BufferIntList implements IntStore {
+    protected final int chunkShift;
+    protected final int chunkSize;
+    protected final int chunkMask;
+
+    protected IntBuffer[] chunks = new IntBuffer[4];
+    protected int size;
+    int allocations;  // chamadas a allocate, conferidas por StorageBackendBenchmark --check
+
+    BufferIntList(int chunkShift) {
+        if (chunkShift < 4 || chunkShift > 28) {
+            throw new IllegalArgumentException("chunkShift fora do intervalo [4, 28]: " + chunkShift);
+        }
+        this.chunkShift = chunkShift;
+        this.chunkSize = 1 << chunkShift;
+        this.chunkMask = chunkSize - 1;
+    }
+
+    /** Segmento {@code c} com capacidade para pelo menos {@code minCapacity} valores. */
+    protected abstract IntBuffer allocate(int c, int minCapacity);
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void add(int value) {
+        IntBuffer chunk = ensureChunk(size >>> chunkShift, size & chunkMask);
+        chunk.put(size & chunkMask, value);
+        size++;
+    }
+
+    @Override
+    public void addAll(int[] values, int offset, int length) {
+        while (length > 0) {
+            int chunkOffset = size & chunkMask;
+            // Só até o fim do segmento: o resto vai para o próximo, sem realocar este já cheio
+            IntBuffer chunk = ensureChunk(size >>> chunkShift, chunkOffset + Math.min(length - 1,
+                    chunkMask - chunkOffset));
+            int n = Math.min(length, chunk.capacity() - chunkOffset);
+            chunk.put(chunkOffset, values, offset, n);
+            size += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    @Override
+    public void addAll(IntBuffer values) {
+        while (values.hasRemaining()) {
+            int chunkOffset = size & chunkMask;
+            IntBuffer chunk = ensureChunk(size >>> chunkShift, chunkOffset + Math.min(values.remaining() - 1,
+                    chunkMask - chunkOffset));
+            int n = Math.min(values.remaining(), chunk.capacity() - chunkOffset);
+            chunk.put(chunkOffset, values, values.position(), n);
+            values.position(values.position() + n);
+            size += n;
+        }
+    }
+
+    @Override
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Índice " + index + " fora do tamanho " + size);
+        }
+        return chunks[index >>> chunkShift].get(index & chunkMask);
+    }
+
+    @Override
+    public int getRacy(int index) {
+        IntBuffer[] cs = chunks;
+        int c = index >>> chunkShift;
+        if (index < 0 || c >= cs.length) {
+            return 0;
+        }
+        IntBuffer chunk = cs[c];
+        int offset = index & chunkMask;
+        if (chunk == null || offset >= chunk.capacity()) {
+            return 0;
+        }
+        return chunk.get(offset);
+    }
+
+    @Override
+    public int removeLast() {
+        if (size == 0) {
+            throw new IndexOutOfBoundsException("Lista vazia");
+        }
+        int last = size - 1;
+        int value = chunks[last >>> chunkShift].get(last & chunkMask);
+        size = last;
+        if ((last & chunkMask) == 0) {
+            releaseSpareChunks();
+        }
+        return value;
+    }
+
+    @Override
+    public int[] removeLast(int n) {
+        n = Math.min(n, size);
+        int[] out = new int[n];
+        for (int i = 0; i < n; i++) {
+            int last = size - 1 - i;
+            out[i] = chunks[last >>> chunkShift].get(last & chunkMask);
+        }
+        size -= n;
+        if (n > 0) {
+            releaseSpareChunks();
+        }
+        return out;
+    }
+
+    @Override
+    public void copyRange(int from, int to, int[] out, int outOffset) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Intervalo [" + from + ", " + to + ") fora do tamanho " + size);
+        }
+        while (from < to) {
+            IntBuffer chunk = chunks[from >>> chunkShift];
+            int chunkOffset = from & chunkMask;
+            int n = Math.min(to - from, chunk.capacity() - chunkOffset);
+            chunk.get(chunkOffset, out, outOffset, n);
+            from += n;
+            outOffset += n;
+        }
+    }
+
+    @Override
+    public void copyRangeRacy(int from, int to, int[] out) {
+        IntBuffer[] cs = chunks;
+        while (from < to) {
+            int c = from >>> chunkShift;
+            int chunkOffset = from & chunkMask;
+            IntBuffer chunk = c < cs.length ? cs[c] : null;
+            int n = Math.min(to - from, chunkSize - chunkOffset);
+            if (chunk != null) {
+                chunk.get(chunkOffset, out, from, Math.min(n, Math.max(0, chunk.capacity() - chunkOffset)));
+            }
+            from += n;
+        }
+    }
+
+    @Override
+    public long capacityBytes() {
+        long bytes = 0;
+        for (IntBuffer chunk : chunks) {
+            if (chunk != null) {
+                bytes += 4L * chunk.capacity();
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        releaseSpareChunks();
+    }
+
+    private IntBuffer ensureChunk(int c, int lastOffset) {
+        if (c >= chunks.length) {
+            chunks = Arrays.copyOf(chunks, Math.max(chunks.length * 2, c + 1));
+        }
+        IntBuffer chunk = chunks[c];
+        if (chunk == null || lastOffset >= chunk.capacity()) {
+            IntBuffer grown = allocate(c, lastOffset + 1);
+            allocations++;
+            if (chunk != null && grown != chunk) {
+                // Só o primeiro segmento cresce por cópia (ver OffHeapIntList)
+                grown.put(0, chunk, 0, chunk.capacity());
+            }
+            chunk = grown;
+            chunks[c] = chunk;
+        }
+        return chunk;
+    }
+
+    protected void releaseSpareChunks() {
+        // Como no IntList: mantém um segmento livre além do último usado
+        int keep = size == 0 ? 1 : ((size - 1) >>> chunkShift) + 2;
+        for (int c = Math.max(keep, 1); c < chunks.length && chunks[c] != null; c++) {
+            chunks[c] = null;
+        }
+    }
+}
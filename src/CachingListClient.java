@@ -0,0 +1,575 @@
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * RemoteListInterface com cache local de trechos e tamanhos das listas.
+ *
+ * As listas são lidas em segmentos alinhados de {@link #SEGMENT} valores,
+ * guardados com a versão da lista no momento da leitura; get, size, sizes e
+ * getRange pequenos são respondidos do cache enquanto a lista não mudar. O
+ * servidor avisa por callback ({@link InvalidationListener}) a nova versão e
+ * o menor índice tocado de cada lista lida, e só os segmentos a partir desse
+ * índice saem do cache: appends no fim mantêm o começo da lista em cache.
+ *
+ * A memória é limitada a {@code maxInts} valores, com descarte do segmento
+ * usado há mais tempo (LRU). Se o canal de avisos ficar mudo além de três
+ * sinais de vida, o cache inteiro é descartado e a assinatura refeita, então
+ * um servidor reiniciado nunca deixa dados velhos para trás.
+ *
+ * Escritas vão direto ao servidor e descartam na hora o que podem ter mudado,
+ * para que a própria thread leia o que escreveu.
+ */
+public class CachingListClient implements RemoteListInterface, AutoCloseable {
+    public static final int SEGMENT = 256;
+    private static final int MAX_RANGE_SEGMENTS = 16;
+
+    /** Um segmento em cache: valores a partir de index * SEGMENT (menos que SEGMENT no fim da lista). */
+    private static final class Entry {
+        final String listId;
+        final int index;
+        final int[] values;
+        final long version;
+
+        Entry(String listId, int index, int[] values, long version) {
+            this.listId = listId;
+            this.index = index;
+            this.values = values;
+            this.version = version;
+        }
+
+        int end() {
+            return index * SEGMENT + values.length;
+        }
+    }
+
+    private static final class ListState {
+        long knownVersion;   // maior versão avisada pelo servidor
+        long localWrites;    // escritas deste cliente na lista
+        int size = -1;
+        long sizeVersion;
+        int reading;         // leituras remotas em andamento que dependem deste estado
+        final Map<Integer, Entry> segments = new HashMap<>();
+    }
+
+    private final RemoteListInterface target;
+    private final InvalidationSource source;
+    private final long maxInts;
+    private final long silenceNanos;
+    private final InvalidationListener callback = this::invalidated;
+    private final InvalidationListener callbackStub;
+
+    // Estado do cache, protegido por 'this'
+    private final Map<String, ListState> lists = new HashMap<>();
+    private final LinkedHashMap<Entry, Boolean> lru = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedInts;
+    private long subscriberId = -1;
+    private long lastHeardNanos;
+    private long lastSubscribeAttemptNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final HandleTable<String> handles = new HandleTable<>();
+
+    /** {@code target} deve ser o stub RMI de um RemoteListImpl (também InvalidationSource). */
+    public CachingListClient(RemoteListInterface target, long maxInts) throws RemoteException {
+        if (!(target instanceof InvalidationSource)) {
+            throw new IllegalArgumentException("O servidor não oferece avisos de invalidação");
+        }
+        this.target = target;
+        this.source = (InvalidationSource) target;
+        this.maxInts = maxInts;
+        this.silenceNanos = 3 * TimeUnit.MILLISECONDS.toNanos(Long.getLong("remotelist.cache.heartbeatMillis", 1000));
+        this.callbackStub = (InvalidationListener) UnicastRemoteObject.exportObject(callback, 0);
+        synchronized (this) {
+            subscribe();
+        }
+    }
+
+    /** Cache com o limite de remotelist.cache.maxInts (padrão 1M valores, ~4 MB). */
+    public CachingListClient(RemoteListInterface target) throws RemoteException {
+        this(target, Long.getLong("remotelist.cache.maxInts", 1L << 20));
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    // ---- Avisos do servidor ----
+
+    private synchronized void invalidated(String[] listIds, long[] versions, int[] from) {
+        lastHeardNanos = System.nanoTime();
+        for (int i = 0; i < listIds.length; i++) {
+            ListState state = lists.get(listIds[i]);
+            if (state == null) {
+                continue;
+            }
+            state.knownVersion = Math.max(state.knownVersion, versions[i]);
+            if (state.sizeVersion < versions[i]) {
+                state.size = -1;
+            }
+            Iterator<Entry> it = state.segments.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.version < versions[i] && entry.end() > from[i]) {
+                    it.remove();
+                    forget(entry);
+                }
+            }
+            dropIfUnused(listIds[i], state);
+        }
+    }
+
+    // Sob 'this': assina (de novo) se preciso; devolve se o cache pode ser usado
+    private boolean usable() {
+        long now = System.nanoTime();
+        if (subscriberId >= 0 && now - lastHeardNanos <= silenceNanos) {
+            return true;
+        }
+        if (subscriberId >= 0) {
+            System.err.println("⚠️ Avisos de invalidação pararam de chegar: cache descartado");
+            clear();
+        }
+        if (now - lastSubscribeAttemptNanos >= TimeUnit.SECONDS.toNanos(1)) {
+            subscribe();
+        }
+        return false;
+    }
+
+    private void subscribe() {
+        lastSubscribeAttemptNanos = System.nanoTime();
+        try {
+            subscriberId = source.subscribeInvalidations(callbackStub);
+            lastHeardNanos = System.nanoTime();
+        } catch (RemoteException e) {
+            subscriberId = -1;
+        }
+    }
+
+    private void clear() {
+        lists.clear();
+        lru.clear();
+        cachedInts = 0;
+        subscriberId = -1;
+    }
+
+    private void forget(Entry entry) {
+        lru.remove(entry);
+        cachedInts -= entry.values.length;
+    }
+
+    // ---- Leituras ----
+
+    /** Leitura remota de [from, to) guardada no cache se nada mudou no caminho. */
+    private ConcurrentIntList.Segment fetch(String listId, int from, int to) throws RemoteException {
+        long subscriber;
+        long writes;
+        ListState state;
+        synchronized (this) {
+            if (!usable()) {
+                subscriber = -1;
+                writes = 0;
+                state = null;
+            } else {
+                subscriber = subscriberId;
+                state = startReading(listId);
+                writes = state.localWrites;
+            }
+        }
+        misses.increment();
+        if (subscriber < 0) {
+            int[] values = target.getRange(listId, from, to);
+            return new ConcurrentIntList.Segment(values, -1, 0);
+        }
+        ConcurrentIntList.Segment segment = null;
+        try {
+            segment = source.readSegment(subscriber, listId, from, to);
+        } finally {
+            synchronized (this) {
+                endReading(listId, state, segment, subscriber, writes, from);
+            }
+        }
+        return segment;
+    }
+
+    // Sob 'this': guarda o que a leitura trouxe, se nada mudou no caminho
+    private void endReading(String listId, ListState state, ConcurrentIntList.Segment segment,
+            long subscriber, long writes, int from) {
+        state.reading--;
+        try {
+            if (segment == null || lists.get(listId) != state || subscriber != subscriberId
+                    || writes != state.localWrites || state.knownVersion > segment.version) {
+                return;  // falhou ou algo mudou durante a leitura: responde sem guardar
+            }
+            if (state.sizeVersion <= segment.version) {
+                state.size = segment.size;
+                state.sizeVersion = segment.version;
+            }
+            for (int offset = 0; offset < segment.values.length; offset += SEGMENT) {
+                int index = (from + offset) / SEGMENT;
+                int length = Math.min(SEGMENT, segment.values.length - offset);
+                int[] values = new int[length];
+                System.arraycopy(segment.values, offset, values, 0, length);
+                Entry entry = new Entry(listId, index, values, segment.version);
+                Entry old = state.segments.put(index, entry);
+                if (old != null) {
+                    forget(old);
+                }
+                lru.put(entry, Boolean.TRUE);
+                cachedInts += length;
+            }
+            evict();
+        } finally {
+            dropIfUnused(listId, state);
+        }
+    }
+
+    // Sob 'this': estado da lista, preso enquanto a leitura remota não voltar
+    private ListState startReading(String listId) {
+        ListState state = lists.computeIfAbsent(listId, k -> new ListState());
+        state.reading++;
+        return state;
+    }
+
+    // Sob 'this': sem segmentos, tamanho nem leituras, o estado não guarda nada que valha a memória
+    private void dropIfUnused(String listId, ListState state) {
+        if (state.segments.isEmpty() && state.size < 0 && state.reading == 0) {
+            lists.remove(listId, state);
+        }
+    }
+
+    private void evict() {
+        Iterator<Entry> it = lru.keySet().iterator();
+        while (cachedInts > maxInts && it.hasNext()) {
+            Entry oldest = it.next();
+            it.remove();
+            cachedInts -= oldest.values.length;
+            // O ListState só sai sem leituras em andamento: a versão conhecida ainda as protege
+            ListState state = lists.get(oldest.listId);
+            state.segments.remove(oldest.index);
+            dropIfUnused(oldest.listId, state);
+        }
+    }
+
+    // Sob 'this': segmento em cache (marcando o uso) ou null
+    private Entry cached(String listId, int index) {
+        ListState state = lists.get(listId);
+        Entry entry = state != null ? state.segments.get(index) : null;
+        if (entry != null) {
+            lru.get(entry);
+        }
+        return entry;
+    }
+
+    @Override
+    public int get(String listId, int index) throws RemoteException {
+        if (index < 0) {
+            return target.get(listId, index);
+        }
+        int segment = index / SEGMENT;
+        int offset = index - segment * SEGMENT;
+        synchronized (this) {
+            if (usable()) {
+                Entry entry = cached(listId, segment);
+                if (entry != null && offset < entry.values.length) {
+                    hits.increment();
+                    return entry.values[offset];
+                }
+            }
+        }
+        int[] values = fetch(listId, segment * SEGMENT, segment * SEGMENT + SEGMENT).values;
+        if (offset >= values.length) {
+            throw new RemoteException("Índice inválido ou lista não existe");
+        }
+        return values[offset];
+    }
+
+    @Override
+    public int size(String listId) throws RemoteException {
+        synchronized (this) {
+            if (usable()) {
+                ListState state = lists.get(listId);
+                if (state != null && state.size >= 0) {
+                    hits.increment();
+                    return state.size;
+                }
+            }
+        }
+        ConcurrentIntList.Segment segment = fetch(listId, 0, 0);
+        return segment.size >= 0 ? segment.size : target.size(listId);
+    }
+
+    @Override
+    public int[] sizes(String[] listIds) throws RemoteException {
+        int[] result = new int[listIds.length];
+        int missing = 0;
+        synchronized (this) {
+            boolean usable = usable();
+            for (int i = 0; i < listIds.length; i++) {
+                ListState state = usable ? lists.get(listIds[i]) : null;
+                if (state != null && state.size >= 0) {
+                    result[i] = state.size;
+                } else {
+                    result[i] = -1;
+                    missing++;
+                }
+            }
+        }
+        if (missing == 0) {
+            hits.add(listIds.length);
+            return result;
+        }
+        // Uma só chamada para os que faltam
+        String[] ids = new String[missing];
+        for (int i = 0, k = 0; i < listIds.length; i++) {
+            if (result[i] < 0) {
+                ids[k++] = listIds[i];
+            }
+        }
+        int[] fetched = fetchSizes(ids);
+        for (int i = 0, k = 0; i < listIds.length; i++) {
+            if (result[i] < 0) {
+                result[i] = fetched[k++];
+            }
+        }
+        return result;
+    }
+
+    private int[] fetchSizes(String[] ids) throws RemoteException {
+        long subscriber;
+        long[] writes = new long[ids.length];
+        ListState[] states = new ListState[ids.length];
+        synchronized (this) {
+            subscriber = usable() ? subscriberId : -1;
+            for (int i = 0; subscriber >= 0 && i < ids.length; i++) {
+                states[i] = startReading(ids[i]);
+                writes[i] = states[i].localWrites;
+            }
+        }
+        misses.add(ids.length);
+        if (subscriber < 0) {
+            return target.sizes(ids);
+        }
+        ConcurrentIntList.Segment[] segments = null;
+        try {
+            segments = source.readSizes(subscriber, ids);
+        } finally {
+            synchronized (this) {
+                for (int i = 0; i < ids.length; i++) {
+                    ListState state = states[i];
+                    state.reading--;
+                    if (segments != null && lists.get(ids[i]) == state && subscriber == subscriberId
+                            && writes[i] == state.localWrites && state.knownVersion <= segments[i].version
+                            && state.sizeVersion <= segments[i].version) {
+                        state.size = segments[i].size;
+                        state.sizeVersion = segments[i].version;
+                    }
+                    dropIfUnused(ids[i], state);
+                }
+            }
+        }
+        int[] sizes = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            sizes[i] = segments[i].size;
+        }
+        return sizes;
+    }
+
+    @Override
+    public int[] getRange(String listId, int from, int to) throws RemoteException {
+        int first = from / SEGMENT;
+        int last = (to - 1) / SEGMENT;
+        if (from < 0 || to <= from || last - first >= MAX_RANGE_SEGMENTS) {
+            return target.getRange(listId, from, to);  // inválido, vazio ou grande demais para o cache
+        }
+        synchronized (this) {
+            if (usable()) {
+                int[] cached = rangeFromCache(listId, from, to);
+                if (cached != null) {
+                    hits.increment();
+                    return cached;
+                }
+            }
+        }
+        // Busca os segmentos inteiros que cobrem o intervalo e recorta
+        ConcurrentIntList.Segment segment = fetch(listId, first * SEGMENT, (last + 1) * SEGMENT);
+        int base = first * SEGMENT;
+        int start = Math.min(from - base, segment.values.length);
+        int end = Math.min(to - base, segment.values.length);
+        int[] result = new int[end - start];
+        System.arraycopy(segment.values, start, result, 0, result.length);
+        return result;
+    }
+
+    // Sob 'this': o intervalo montado do cache, ou null se faltar algum pedaço
+    private int[] rangeFromCache(String listId, int from, int to) {
+        ListState state = lists.get(listId);
+        if (state == null || state.size < 0) {
+            return null;
+        }
+        int end = Math.min(to, state.size);
+        if (from >= end) {
+            return new int[0];
+        }
+        int[] result = new int[end - from];
+        for (int i = from; i < end; ) {
+            Entry entry = cached(listId, i / SEGMENT);
+            int offset = i - (i / SEGMENT) * SEGMENT;
+            int n = entry != null ? Math.min(entry.values.length - offset, end - i) : 0;
+            if (n <= 0) {
+                return null;  // segmento fora do cache ou lido antes de a lista crescer
+            }
+            System.arraycopy(entry.values, offset, result, i - from, n);
+            i += n;
+        }
+        return result;
+    }
+
+    @Override
+    public String[] listIds() throws RemoteException {
+        return target.listIds();
+    }
+
+    @Override
+    public RemoteListInterface.ListPage scanListIds(String prefix, String cursor, int limit) throws RemoteException {
+        return target.scanListIds(prefix, cursor, limit);
+    }
+
+    // ---- Escritas: direto ao servidor, descartando o que mudou ----
+
+    private synchronized void wrote(String listId, boolean removed) {
+        ListState state = lists.get(listId);
+        if (state == null) {
+            return;
+        }
+        state.localWrites++;
+        state.size = -1;
+        if (removed) {
+            for (Entry entry : state.segments.values()) {
+                forget(entry);
+            }
+            state.segments.clear();
+        }
+        dropIfUnused(listId, state);
+    }
+
+    @Override
+    public boolean append(String listId, int value) throws RemoteException {
+        try {
+            return target.append(listId, value);
+        } finally {
+            wrote(listId, false);
+        }
+    }
+
+    @Override
+    public int remove(String listId) throws RemoteException {
+        try {
+            return target.remove(listId);
+        } finally {
+            wrote(listId, true);
+        }
+    }
+
+    @Override
+    public boolean appendAll(String listId, int[] values) throws RemoteException {
+        try {
+            return target.appendAll(listId, values);
+        } finally {
+            wrote(listId, false);
+        }
+    }
+
+    @Override
+    public int[] removeN(String listId, int n) throws RemoteException {
+        try {
+            return target.removeN(listId, n);
+        } finally {
+            wrote(listId, true);
+        }
+    }
+
+    @Override
+    public RemoteListInterface.Stats stats(String listId, int from, int to) throws RemoteException {
+        return target.stats(listId, from, to);
+    }
+
+    @Override
+    public long count(String listId, int from, int to, int low, int high) throws RemoteException {
+        return target.count(listId, from, to, low, high);
+    }
+
+    @Override
+    public long[] histogram(String listId, int from, int to, int low, int high, int buckets)
+            throws RemoteException {
+        return target.histogram(listId, from, to, low, high, buckets);
+    }
+
+    @Override
+    public RemoteListInterface.ScanResult scan(String listId, int from, int to, int low, int high, int limit)
+            throws RemoteException {
+        return target.scan(listId, from, to, low, high, limit);
+    }
+
+    // Handles locais: o roteamento precisa do listId, então o handle só o indexa aqui
+    @Override
+    public long open(String listId) throws RemoteException {
+        target.open(listId);  // cria a lista, como no servidor
+        return handles.open(listId, Function.identity());
+    }
+
+    @Override
+    public boolean append(long handle, int value) throws RemoteException {
+        return append(handles.resolve(handle), value);
+    }
+
+    @Override
+    public int get(long handle, int index) throws RemoteException {
+        return get(handles.resolve(handle), index);
+    }
+
+    @Override
+    public int remove(long handle) throws RemoteException {
+        return remove(handles.resolve(handle));
+    }
+
+    @Override
+    public int size(long handle) throws RemoteException {
+        return size(handles.resolve(handle));
+    }
+
+    @Override
+    public void shutdown() throws RemoteException {
+        target.shutdown();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (subscriberId >= 0) {
+                try {
+                    source.unsubscribeInvalidations(subscriberId);
+                } catch (RemoteException e) {
+                    // O servidor descarta o assinante quando o callback falhar
+                }
+            }
+            clear();
+        }
+        try {
+            UnicastRemoteObject.unexportObject(callback, true);
+        } catch (NoSuchObjectException e) {
+            // Já não estava exportado
+        }
+    }
+}
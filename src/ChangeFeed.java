@@ -0,0 +1,143 @@
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Envia as mudanças das listas aos assinantes do fluxo (ChangeStreamSource).
+ *
+ * Os registros vêm do histórico do WAL (LogHistory), compartilhado por todos:
+ * cada assinatura guarda só a sua posição (seq) e filtra os registros das
+ * listas que quer. O envio de cada assinatura roda numa thread à parte, um
+ * lote por vez, e o próximo só sai quando o callback volta: um assinante lento
+ * fica para trás sem atrasar escritores nem os outros assinantes. Quem ficar
+ * atrás de todo o histórico recebe um lote com {@code gap} e segue do ponto
+ * mais antigo ainda guardado.
+ */
+final class ChangeFeed {
+    private final long pushMillis = Long.getLong("remotelist.changes.pushMillis", 2);
+    private final long heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong("remotelist.changes.heartbeatMillis", 1000));
+    private final int maxBatch = Integer.getInteger("remotelist.changes.batch", 1024);
+
+    private static final class Subscription {
+        final long id;
+        final ChangeStreamListener listener;
+        final Set<String> listIds;
+        final String[] prefixes;
+        volatile long position;  // maior seq já considerada
+        final AtomicBoolean sending = new AtomicBoolean();
+        volatile long lastSentNanos = System.nanoTime();
+
+        Subscription(long id, ChangeStreamListener listener, Set<String> listIds, String[] prefixes, long position) {
+            this.id = id;
+            this.listener = listener;
+            this.listIds = listIds;
+            this.prefixes = prefixes;
+            this.position = position;
+        }
+
+        boolean matches(String listId) {
+            if (listIds.contains(listId)) {
+                return true;
+            }
+            for (String prefix : prefixes) {
+                if (listId.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final OperationLog log;
+    private final LogHistory history;
+    private final ConcurrentHashMap<Long, Subscription> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final ExecutorService senders;
+    private final ScheduledExecutorService timer;
+
+    /** Histórico de remotelist.changes.historyValues (padrão 1M valores, ~4 MB) para retomadas. */
+    ChangeFeed(OperationLog log) {
+        this.log = log;
+        this.history = new LogHistory(log, Long.getLong("remotelist.changes.historyValues", 1L << 20));
+        this.senders = Executors.newCachedThreadPool(RemoteListServer.daemonThreads("change-push"));
+        this.timer = Executors.newSingleThreadScheduledExecutor(RemoteListServer.daemonThreads("change-timer"));
+        timer.scheduleWithFixedDelay(this::flushAll, pushMillis, pushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    long subscribe(ChangeStreamListener listener, String[] listIds, String[] prefixes, long afterSeq) {
+        long id = nextId.incrementAndGet();
+        long position = afterSeq >= 0 ? afterSeq : log.lastSeq();
+        subscriptions.put(id, new Subscription(id, listener, Set.of(listIds), prefixes.clone(), position));
+        return id;
+    }
+
+    void unsubscribe(long id) {
+        subscriptions.remove(id);
+    }
+
+    private void flushAll() {
+        long now = System.nanoTime();
+        long durable = log.durableSeq();
+        for (Subscription subscription : subscriptions.values()) {
+            boolean due = subscription.position < durable || now - subscription.lastSentNanos >= heartbeatNanos;
+            if (due && subscription.sending.compareAndSet(false, true)) {
+                senders.execute(() -> send(subscription));
+            }
+        }
+    }
+
+    // Envia lotes até alcançar o histórico; depois disso, só sinal de vida
+    private void send(Subscription subscription) {
+        try {
+            while (subscriptions.containsKey(subscription.id)) {
+                long position = subscription.position;
+                OperationLog.Record[] records = history.read(position, maxBatch, 0);
+                if (records == null) {
+                    long resume = history.trimmedThrough();
+                    deliver(subscription, new OperationLog.Record[0], resume, true);
+                    continue;
+                }
+                List<OperationLog.Record> matching = new ArrayList<>();
+                for (OperationLog.Record record : records) {
+                    if (subscription.matches(record.listId)) {
+                        matching.add(record);
+                    }
+                }
+                long through = records.length > 0 ? records[records.length - 1].seq : position;
+                boolean heartbeat = System.nanoTime() - subscription.lastSentNanos >= heartbeatNanos;
+                if (!matching.isEmpty() || heartbeat) {
+                    deliver(subscription, matching.toArray(new OperationLog.Record[0]), through, false);
+                } else {
+                    subscription.position = through;
+                }
+                if (records.length < maxBatch) {
+                    break;
+                }
+            }
+        } catch (RemoteException e) {
+            // Assinante sumiu: ao voltar, assina de novo a partir da última posição que tratou
+            ServerLog.warn("Assinatura de mudanças " + subscription.id + " removida: " + e.getMessage());
+            unsubscribe(subscription.id);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            subscription.sending.set(false);
+        }
+    }
+
+    private void deliver(Subscription subscription, OperationLog.Record[] records, long through, boolean gap)
+            throws RemoteException {
+        subscription.listener.changes(new ChangeStreamSource.ChangeBatch(subscription.id, records, through, gap));
+        subscription.position = through;
+        subscription.lastSentNanos = System.nanoTime();
+    }
+}
@@ -0,0 +1,221 @@
+import java.rmi.Naming;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assinante do fluxo de mudanças: recebe os appends e removes das listas
+ * escolhidas em vez de consultar size() em laço.
+ *
+ * Os lotes chegam por callback e esperam numa fila limitada até serem
+ * consumidos com {@link #next}. Com a fila cheia o callback bloqueia, e o
+ * servidor segura os próximos lotes desta assinatura (contrapressão): um
+ * consumidor lento nunca perde mudanças nem acumula memória, a não ser que
+ * fique atrás de todo o histórico do servidor, quando recebe um lote com
+ * {@code gap}.
+ *
+ * {@link #position()} é a seq até onde o consumidor já tratou; guardada, ela
+ * permite retomar o fluxo depois de um reinício sem perder nem repetir nada.
+ * Se o servidor ficar mudo, a assinatura é refeita sozinha a partir dela.
+ */
+public class ChangeStreamClient implements AutoCloseable {
+    private final ChangeStreamSource source;
+    private final String[] listIds;
+    private final String[] prefixes;
+    private final long silenceNanos;
+    private final BlockingQueue<ChangeStreamSource.ChangeBatch> queue;
+    private final ChangeStreamListener callback = this::received;
+    private final ChangeStreamListener callbackStub;
+
+    private volatile long subscriptionId = -1;
+    private volatile long lastHeardNanos;
+    private long position;
+    private volatile boolean closed;
+
+    public ChangeStreamClient(RemoteListInterface target, String[] listIds, String[] prefixes, long afterSeq,
+                              int queueBatches) throws RemoteException {
+        if (!(target instanceof ChangeStreamSource)) {
+            throw new IllegalArgumentException("O servidor não oferece fluxo de mudanças");
+        }
+        this.source = (ChangeStreamSource) target;
+        this.listIds = listIds.clone();
+        this.prefixes = prefixes.clone();
+        this.silenceNanos = 3 * TimeUnit.MILLISECONDS.toNanos(Long.getLong("remotelist.changes.heartbeatMillis", 1000));
+        this.queue = new ArrayBlockingQueue<>(queueBatches);
+        this.callbackStub = (ChangeStreamListener) UnicastRemoteObject.exportObject(callback, 0);
+        this.position = afterSeq;
+        subscribe();
+    }
+
+    /** Fila de remotelist.changes.clientQueue lotes (padrão 64). */
+    public ChangeStreamClient(RemoteListInterface target, String[] listIds, String[] prefixes, long afterSeq)
+            throws RemoteException {
+        this(target, listIds, prefixes, afterSeq, Integer.getInteger("remotelist.changes.clientQueue", 64));
+    }
+
+    private void received(ChangeStreamSource.ChangeBatch batch) {
+        lastHeardNanos = System.nanoTime();
+        if (closed) {
+            return;
+        }
+        try {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lastHeardNanos = System.nanoTime();
+    }
+
+    private void subscribe() throws RemoteException {
+        subscriptionId = source.subscribeChanges(callbackStub, listIds, prefixes, position);
+        lastHeardNanos = System.nanoTime();
+    }
+
+    /** Seq até onde as mudanças já foram entregues por {@link #next}. */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * Próximo lote, esperando até {@code timeoutMillis}; null se nada chegou.
+     * Lotes sem registros (sinais de vida) só avançam a posição e não são
+     * devolvidos.
+     */
+    public ChangeStreamSource.ChangeBatch next(long timeoutMillis) throws RemoteException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            long remaining = deadline - System.nanoTime();
+            ChangeStreamSource.ChangeBatch batch = queue.poll(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+            if (batch == null) {
+                if (System.nanoTime() - lastHeardNanos > silenceNanos) {
+                    resubscribe();
+                }
+                return null;
+            }
+            if (batch.subscriptionId != subscriptionId || batch.throughSeq <= position && !batch.gap) {
+                continue;  // de uma assinatura antiga ou de antes de uma retomada
+            }
+            ChangeStreamSource.ChangeBatch fresh = dropDelivered(batch);
+            position = batch.throughSeq;
+            if (fresh.records.length > 0 || fresh.gap) {
+                return fresh;
+            }
+            if (remaining <= 0) {
+                return null;
+            }
+        }
+    }
+
+    // Depois de uma retomada o servidor pode repetir registros já entregues
+    private ChangeStreamSource.ChangeBatch dropDelivered(ChangeStreamSource.ChangeBatch batch) {
+        int skip = 0;
+        while (skip < batch.records.length && batch.records[skip].seq <= position) {
+            skip++;
+        }
+        if (skip == 0) {
+            return batch;
+        }
+        return new ChangeStreamSource.ChangeBatch(batch.subscriptionId,
+                Arrays.copyOfRange(batch.records, skip, batch.records.length), batch.throughSeq, batch.gap);
+    }
+
+    private void resubscribe() {
+        System.err.println("⚠️ Fluxo de mudanças sem sinal de vida: assinando de novo a partir da seq " + position);
+        long old = subscriptionId;
+        try {
+            source.unsubscribeChanges(old);
+        } catch (RemoteException e) {
+            // Servidor fora do ar: a assinatura antiga morreu junto
+        }
+        queue.clear();
+        try {
+            subscribe();
+        } catch (RemoteException e) {
+            subscriptionId = -1;
+            lastHeardNanos = System.nanoTime();  // tenta de novo depois de mais um intervalo
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            source.unsubscribeChanges(subscriptionId);
+        } catch (RemoteException e) {
+            // O servidor descarta a assinatura quando o callback falhar
+        }
+        queue.clear();
+        try {
+            UnicastRemoteObject.unexportObject(callback, true);
+        } catch (NoSuchObjectException e) {
+            // Já não estava exportado
+        }
+    }
+
+    private static String describe(OperationLog.Record record) {
+        switch (record.type) {
+            case OperationLog.APPEND:
+            case OperationLog.APPEND_ALL:
+                return "APPEND " + (record.values.length <= 8 ? Arrays.toString(record.values)
+                        : record.values.length + " valores");
+            default:
+                return "REMOVE " + record.count;
+        }
+    }
+
+    /**
+     * Acompanha listas como um tail -f.
+     * Uso: java ChangeStreamClient [--url url] [--from seq] [--prefix p]... [listId...]
+     */
+    public static void main(String[] args) throws Exception {
+        String url = "//localhost/RemoteList";
+        long from = -1;
+        List<String> ids = new ArrayList<>();
+        List<String> prefixes = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--url":
+                    url = args[++i];
+                    break;
+                case "--from":
+                    from = Long.parseLong(args[++i]);
+                    break;
+                case "--prefix":
+                    prefixes.add(args[++i]);
+                    break;
+                default:
+                    ids.add(args[i]);
+            }
+        }
+        if (ids.isEmpty() && prefixes.isEmpty()) {
+            System.err.println("Uso: java ChangeStreamClient [--url url] [--from seq] [--prefix p]... [listId...]");
+            System.exit(1);
+        }
+        RemoteListInterface target = (RemoteListInterface) Naming.lookup(url);
+        ChangeStreamClient stream = new ChangeStreamClient(target, ids.toArray(new String[0]),
+                prefixes.toArray(new String[0]), from);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("Posição para retomar: --from " + stream.position());
+            stream.close();
+        }));
+        System.out.println("📡 Acompanhando mudanças (Ctrl+C para sair)...");
+        while (true) {
+            ChangeStreamSource.ChangeBatch batch = stream.next(1000);
+            if (batch == null) {
+                continue;
+            }
+            if (batch.gap) {
+                System.out.println("⚠️ Mudanças perdidas até a seq " + batch.throughSeq + ": releia as listas");
+            }
+            for (OperationLog.Record record : batch.records) {
+                System.out.printf("%d %s %s%n", record.seq, record.listId, describe(record));
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * Callback exportado pelo assinante do fluxo de mudanças. O servidor só manda
+ * o próximo lote depois que este método volta, então um assinante que demora
+ * a consumir segura o próprio fluxo sem atrasar os outros. Um lote sem
+ * registros só avança a posição e serve de sinal de vida.
+ */
+public interface ChangeStreamListener extends Remote {
+    void changes(ChangeStreamSource.ChangeBatch batch) throws RemoteException;
+}
@@ -0,0 +1,42 @@
+import java.io.Serializable;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * Assinatura do fluxo de mudanças: em vez de consultar size() em laço, o
+ * cliente recebe os appends e removes das listas que escolheu, em ordem de
+ * seq, por callback ({@link ChangeStreamListener}). Implementada pelo
+ * RemoteListImpl ao lado da RemoteListInterface; exige o log de operações.
+ */
+public interface ChangeStreamSource extends Remote {
+    /**
+     * Passa a enviar ao callback as mudanças das listas {@code listIds} e das
+     * que começam com algum de {@code prefixes} (qualquer dos dois pode ser
+     * vazio), a partir da seq seguinte a {@code afterSeq}; negativo começa
+     * agora. Devolve o id da assinatura, repetido em cada lote.
+     */
+    long subscribeChanges(ChangeStreamListener listener, String[] listIds, String[] prefixes, long afterSeq)
+            throws RemoteException;
+
+    void unsubscribeChanges(long subscriptionId) throws RemoteException;
+
+    /** Um lote do fluxo: registros em ordem de seq, já sincronizados em disco. */
+    final class ChangeBatch implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        public final long subscriptionId;
+        public final OperationLog.Record[] records;
+        // Todo o log até esta seq já foi considerado: retomar daqui não perde nem repete nada
+        public final long throughSeq;
+        // Mudanças entre a posição anterior e throughSeq se perderam (assinante
+        // atrasado além do histórico): o estado precisa ser relido das listas
+        public final boolean gap;
+
+        ChangeBatch(long subscriptionId, OperationLog.Record[] records, long throughSeq, boolean gap) {
+            this.subscriptionId = subscriptionId;
+            this.records = records;
+            this.throughSeq = throughSeq;
+            this.gap = gap;
+        }
+    }
+}
@@ -0,0 +1,715 @@
+import java.io.Serializable;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Uma lista remota com seu próprio controle de concorrência.
+ *
+ * Cada lista tem um StampedLock próprio, então escritores em listas diferentes
+ * nunca disputam o mesmo lock. Leituras (get/size) são otimistas: não tomam
+ * lock nenhum e só caem para o read lock se um escritor tiver passado no meio.
+ * Escritas tomam o write lock, que sem disputa custa um único CAS.
+ *
+ * Com um OperationLog, cada escrita é registrada ainda sob o write lock (a
+ * ordem das seqs de uma lista é a ordem das operações) e a espera pelo fsync
+ * acontece depois de liberar o lock, para não segurar outros escritores.
+ *
+ * Snapshots são copy-on-write: snapshot() marca o tamanho atual (markSize)
+ * sob o write lock e, até terminar a cópia, cada remove que desce abaixo do
+ * menor tamanho visto desde a marca (lowWater) guarda o valor original em
+ * preserved antes que um append o sobrescreva. A cópia é feita sem lock e usa
+ * os valores preservados para o trecho de lowWater em diante, então appends e
+ * removes nunca esperam por ela; snapshot() é synchronized, então snapshots
+ * simultâneos se revezam.
+ *
+ * Listas quentes (muitos escritores na mesma lista) combinam os appends:
+ * cada append entra numa fila de uma das faixas (por thread) e quem pega o
+ * write lock aplica de uma vez os appends pendentes de todas as faixas, com
+ * um único registro no WAL. Os outros escritores só esperam o seu ser marcado
+ * como aplicado, sem disputar o lock. Um append só retorna depois de estar na
+ * lista, então get/size continuam linearizáveis. Uma lista vira quente por
+ * configuração ou depois de muitos appends encontrarem o lock ocupado.
+ *
+ * Uma lista ociosa pode ser descarregada para o disco (spill) para liberar
+ * memória; a primeira operação que precisar dos valores a traz de volta sob o
+ * write lock, então só quem usa aquela lista espera pela leitura do arquivo.
+ */
+public class ConcurrentIntList {
+    private final StampedLock lock = new StampedLock();
+    private final IntStore data;
+    private final String listId;
+    private final OperationLog log;
+    private final ChangeListener changes;
+    private long lastSeq;  // seq da última operação aplicada, protegida pelo write lock
+    private long version;  // número de mudanças da lista, protegido pelo lock
+    private boolean persisted;  // conteúdo veio do armazenamento e ainda não foi conferido com o snapshot
+    private long compactVersion = -1;  // versão vista pela última compressão e desde quando não muda
+    private long unchangedSince;
+
+    // Descarregamento para o disco (ver spill): com spilled, data está vazia e
+    // o conteúdo está no SpillStore. Protegidos pelo lock.
+    private boolean spilled;
+    private int spilledSize;
+    private SpillStore spillStore;
+    private static volatile long accessClock;  // avançado pelo ListSpiller a cada passada
+    private long accessed;                     // valor do relógio no último uso, sem sincronização
+
+    // Estado do snapshot em andamento (markSize < 0 quando não há snapshot)
+    private int markSize = -1;
+    private volatile int lowWater;  // menor tamanho desde a marca
+    private IntList preserved;      // originais de [lowWater, markSize), do maior índice para o menor
+
+    // Combinação de appends (lista quente)
+    // Com um só núcleo não há escritores em paralelo para combinar: automático desligado
+    private static final int CONTENDED_APPENDS_FOR_HOT = Integer.getInteger("remotelist.hotList.contendedAppends",
+            Runtime.getRuntime().availableProcessors() > 1 ? 1024 : 0);
+    private static final int COMBINE_LIMIT = 4096;
+    private static final int STRIPES = Integer.highestOneBit(
+            Math.min(64, Math.max(1, Runtime.getRuntime().availableProcessors())) * 2 - 1);
+    private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 128 : 0;
+    private static final long PARK_NANOS = 50_000;
+    private static final int MAX_PARKS = 20;
+    private volatile PendingStripe[] stripes;  // != null quando a lista é quente
+    private int contendedAppends;              // contagem aproximada, sem sincronização
+    private int[] combineValues;               // rascunhos do combinador, sob o write lock
+    private PendingAppend[] combineBatch;
+
+    /** Um append esperando o combinador. */
+    private static final class PendingAppend {
+        final int value;
+        final Thread waiter = Thread.currentThread();
+        long seq;
+        RuntimeException failure;
+        volatile boolean done;
+
+        PendingAppend(int value) {
+            this.value = value;
+        }
+    }
+
+    private static final class PendingStripe {
+        final ConcurrentLinkedQueue<PendingAppend> queue = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Avisado de cada mudança ainda sob o write lock, com a nova versão da
+     * lista, o menor índice tocado e o novo tamanho. Não deve bloquear.
+     */
+    public interface ChangeListener {
+        void changed(String listId, long version, int from, int size);
+    }
+
+    /** Trecho da lista com o tamanho e a versão do mesmo instante. */
+    public static final class Segment implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        public final int[] values;
+        public final int size;
+        public final long version;
+
+        Segment(int[] values, int size, long version) {
+            this.values = values;
+            this.size = size;
+            this.version = version;
+        }
+    }
+
+    public ConcurrentIntList() {
+        this(null, null);
+    }
+
+    public ConcurrentIntList(String listId, OperationLog log) {
+        this(listId, log, null);
+    }
+
+    public ConcurrentIntList(String listId, OperationLog log, ChangeListener changes) {
+        this(listId, log, changes, new IntList());
+    }
+
+    /**
+     * Lista sobre o armazenamento dado. Se ele já trouxer conteúdo (lista
+     * mapeada reaberta), a seq dele vale como a da última operação aplicada.
+     */
+    public ConcurrentIntList(String listId, OperationLog log, ChangeListener changes, IntStore data) {
+        this.listId = listId;
+        this.log = log;
+        this.changes = changes;
+        this.data = data;
+        if (data.persistedSeq() >= 0) {
+            lastSeq = data.persistedSeq();
+            persisted = true;
+        }
+    }
+
+    // Sob o write lock, depois de cada mudança: tudo a partir de 'from' pode ter mudado
+    private void changed(int from) {
+        version++;
+        if (changes != null) {
+            changes.changed(listId, version, from, data.size());
+        }
+    }
+
+    public void append(int value) {
+        touch();
+        if (stripes != null) {
+            appendCombined(value);
+            return;
+        }
+        long seq = 0;
+        long stamp = lock.tryWriteLock();
+        if (stamp == 0) {
+            if (CONTENDED_APPENDS_FOR_HOT > 0 && ++contendedAppends >= CONTENDED_APPENDS_FOR_HOT) {
+                markHot();
+            }
+            stamp = lock.writeLock();
+        }
+        try {
+            loadIfSpilled();
+            if (log != null) {
+                seq = lastSeq = log.logAppend(listId, value);
+            }
+            data.add(value);
+            changed(data.size() - 1);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        awaitDurable(seq);
+    }
+
+    /** Passa a combinar os appends desta lista (idempotente). */
+    public synchronized void markHot() {
+        if (stripes == null) {
+            PendingStripe[] created = new PendingStripe[STRIPES];
+            for (int i = 0; i < created.length; i++) {
+                created[i] = new PendingStripe();
+            }
+            stripes = created;
+        }
+    }
+
+    public boolean isHot() {
+        return stripes != null;
+    }
+
+    private void appendCombined(int value) {
+        long stamp = lock.tryWriteLock();
+        if (stamp != 0) {
+            // Lock livre: aplica o próprio append junto com os pendentes, sem passar pela fila
+            long seq;
+            try {
+                seq = combine(value, true);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            awaitDurable(seq);
+            return;
+        }
+        PendingAppend mine = new PendingAppend(value);
+        PendingStripe[] s = stripes;
+        s[(int) Thread.currentThread().getId() & (s.length - 1)].queue.add(mine);
+        int spins = 0;
+        int parks = 0;
+        while (!mine.done) {
+            stamp = lock.tryWriteLock();
+            if (stamp == 0) {
+                if (++spins <= SPINS) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                if (++parks <= MAX_PARKS) {
+                    // Quem segura o lock combina o nosso e nos acorda
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                    continue;
+                }
+                // O lock está com outra operação há tempo demais: entra na fila dele
+                stamp = lock.writeLock();
+            }
+            try {
+                combine(0, false);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+        if (mine.failure != null) {
+            throw mine.failure;
+        }
+        awaitDurable(mine.seq);
+    }
+
+    /**
+     * Sob o write lock: aplica como um lote o append do próprio combinador (se
+     * houver) e os pendentes de todas as faixas. Retorna a seq do lote.
+     */
+    private long combine(int ownValue, boolean hasOwn) {
+        if (combineValues == null) {
+            combineValues = new int[COMBINE_LIMIT];
+            combineBatch = new PendingAppend[COMBINE_LIMIT];
+        }
+        int n = 0;
+        if (hasOwn) {
+            combineValues[n++] = ownValue;
+        }
+        int first = n;
+        for (PendingStripe stripe : stripes) {
+            PendingAppend pending;
+            while (n < COMBINE_LIMIT && (pending = stripe.queue.poll()) != null) {
+                combineBatch[n] = pending;
+                combineValues[n++] = pending.value;
+            }
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long seq = 0;
+        RuntimeException failure = null;
+        try {
+            loadIfSpilled();
+            if (log != null) {
+                seq = lastSeq = n == 1 ? log.logAppend(listId, combineValues[0])
+                        : log.logAppendAll(listId, Arrays.copyOf(combineValues, n));
+            }
+            data.addAll(combineValues, 0, n);
+            changed(data.size() - n);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        for (int i = first; i < n; i++) {
+            PendingAppend pending = combineBatch[i];
+            combineBatch[i] = null;
+            pending.seq = seq;
+            pending.failure = failure;
+            pending.done = true;
+            LockSupport.unpark(pending.waiter);
+        }
+        if (failure != null && hasOwn) {
+            throw failure;
+        }
+        return seq;
+    }
+
+    public void appendAll(int[] values) {
+        if (values.length == 0) {
+            return;
+        }
+        touch();
+        long seq = 0;
+        long stamp = lock.writeLock();
+        try {
+            loadIfSpilled();
+            if (log != null) {
+                seq = lastSeq = log.logAppendAll(listId, values);
+            }
+            data.addAll(values, 0, values.length);
+            changed(data.size() - values.length);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        awaitDurable(seq);
+    }
+
+    /** Remove e retorna o último elemento (pop de pilha). */
+    public int removeLast() {
+        long seq = 0;
+        int value;
+        touch();
+        long stamp = lock.writeLock();
+        try {
+            loadIfSpilled();
+            if (data.isEmpty()) {
+                throw new NoSuchElementException("Lista vazia");
+            }
+            if (log != null) {
+                seq = lastSeq = log.logRemove(listId, 1);
+            }
+            preserveBeforeRemove(1);
+            value = data.removeLast();
+            changed(data.size());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        awaitDurable(seq);
+        return value;
+    }
+
+    /** Remove até {@code n} elementos do fim de uma vez; último primeiro. */
+    public int[] removeLast(int n) {
+        long seq = 0;
+        int[] removed;
+        touch();
+        long stamp = lock.writeLock();
+        try {
+            loadIfSpilled();
+            n = Math.min(n, data.size());
+            if (log != null && n > 0) {
+                seq = lastSeq = log.logRemove(listId, n);
+            }
+            preserveBeforeRemove(n);
+            removed = data.removeLast(n);
+            if (n > 0) {
+                changed(data.size());
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        awaitDurable(seq);
+        return removed;
+    }
+
+    /** Reaplica um registro do log na recuperação, sem registrá-lo de novo. */
+    public void replay(OperationLog.Record record) {
+        long stamp = lock.writeLock();
+        try {
+            if (record.seq <= lastSeq) {
+                return;  // já incluída no snapshot
+            }
+            loadIfSpilled();
+            int before = data.size();
+            if (record.type == OperationLog.REMOVE) {
+                data.removeLast(record.count);
+            } else {
+                data.addAll(record.values, 0, record.values.length);
+            }
+            lastSeq = record.seq;
+            changed(Math.min(before, data.size()));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Imagem de uma lista para o snapshot: conteúdo e seq da última operação incluída. */
+    public static final class Image implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        public final int[] values;
+        public final long lastSeq;
+
+        Image(int[] values, long lastSeq) {
+            this.values = values;
+            this.lastSeq = lastSeq;
+        }
+    }
+
+    /**
+     * Copia a lista como estava no instante da marca. Os escritores só esperam
+     * pelas duas seções curtas que marcam e desmarcam; a cópia em si é feita
+     * sem lock. Snapshots simultâneos (snapshotter e réplicas) se revezam.
+     */
+    public synchronized Image snapshot() {
+        int size;
+        long seq;
+        long stamp = lock.writeLock();
+        try {
+            if (spilled) {
+                // Os valores já estão fora da memória: lê do arquivo sem trazer a lista de volta
+                return new Image(spillStore.read(listId), lastSeq);
+            }
+            size = markSize = data.size();
+            lowWater = size;
+            preserved = new IntList();
+            seq = lastSeq;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        int[] out = new int[size];
+        data.copyRangeRacy(0, size, out);
+        // Tudo abaixo de lowWater nunca foi removido desde a marca, então a
+        // cópia acima vale ali; o resto vem dos valores preservados
+        int low = lowWater;
+        for (int i = low; i < size; i++) {
+            out[i] = preserved.getRacy(size - 1 - i);
+        }
+
+        stamp = lock.writeLock();
+        try {
+            markSize = -1;
+            preserved = null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return new Image(out, seq);
+    }
+
+    // Chamado sob o write lock, antes de remover n elementos do fim
+    private void preserveBeforeRemove(int n) {
+        if (markSize < 0) {
+            return;
+        }
+        int low = lowWater;
+        int size = data.size();
+        for (int i = size - 1; i >= size - n; i--) {
+            if (i < low) {
+                // Primeira vez que o índice sai da lista desde a marca: ainda é o original
+                preserved.add(data.get(i));
+                low = i;
+            }
+        }
+        // Escrita volátil depois de preservar: publica os valores ao snapshotter
+        lowWater = low;
+    }
+
+    /** Recria uma lista a partir do snapshot, antes de reaplicar o WAL. */
+    public void restore(IntBuffer values, long seq) {
+        long stamp = lock.writeLock();
+        try {
+            loadIfSpilled();
+            if (persisted) {
+                if (seq <= lastSeq) {
+                    return;  // o armazenamento já tem este snapshot ou algo mais novo
+                }
+                data.clear();
+                persisted = false;
+            }
+            int before = data.size();
+            data.addAll(values);
+            lastSeq = seq;
+            changed(before);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void awaitDurable(long seq) {
+        if (seq != 0) {
+            log.awaitDurable(seq);
+        }
+    }
+
+    public int get(int index) {
+        touch();
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            boolean out = spilled;
+            int size = data.size();
+            int value = data.getRacy(index);
+            if (lock.validate(stamp) && !out) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("Índice " + index + " fora do tamanho " + size);
+                }
+                return value;
+            }
+        }
+        stamp = readLockLoaded();
+        try {
+            return data.get(index);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        int size = spilled ? spilledSize : data.size();
+        if (stamp != 0 && lock.validate(stamp)) {
+            return size;
+        }
+        stamp = lock.readLock();
+        try {
+            return spilled ? spilledSize : data.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Copia [from, to) de forma atômica; {@code to} é limitado ao tamanho
+     * atual, então um intervalo além do fim retorna só o que existe.
+     */
+    public int[] getRange(int from, int to) {
+        if (from < 0 || to < from) {
+            throw new IndexOutOfBoundsException("Intervalo inválido [" + from + ", " + to + ")");
+        }
+        touch();
+        long stamp = readLockLoaded();
+        try {
+            int end = Math.min(to, data.size());
+            int start = Math.min(from, end);
+            int[] out = new int[end - start];
+            data.copyRange(start, end, out, 0);
+            return out;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Como getRange, mas junto com o tamanho e a versão lidos no mesmo instante. */
+    public Segment readSegment(int from, int to) {
+        if (from < 0 || to < from) {
+            throw new IndexOutOfBoundsException("Intervalo inválido [" + from + ", " + to + ")");
+        }
+        touch();
+        long stamp = readLockLoaded();
+        try {
+            int size = data.size();
+            int end = Math.min(to, size);
+            int start = Math.min(from, end);
+            int[] out = new int[end - start];
+            data.copyRange(start, end, out, 0);
+            return new Segment(out, size, version);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Roda uma consulta (ver ListQueries) sobre [from, to), limitado ao
+     * tamanho como no getRange, sem copiar a faixa: o read lock fica com quem
+     * chama enquanto a consulta percorre o armazenamento.
+     */
+    public <T> T query(int from, int to, ListQueries.RangeQuery<T> query) {
+        if (from < 0 || to < from) {
+            throw new IndexOutOfBoundsException("Intervalo inválido [" + from + ", " + to + ")");
+        }
+        touch();
+        long stamp = readLockLoaded();
+        try {
+            int end = Math.min(to, data.size());
+            return query.run(data, Math.min(from, end), end);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Comprime segmentos frios do armazenamento (ver IntStore.compactStep):
+     * os que já não recebem appends e, se a lista não muda há
+     * {@code idleNanos}, todos. O write lock é tomado a cada segmento, então
+     * leituras e escritas esperam no máximo a compressão de um; synchronized
+     * para não correr junto com a cópia sem lock do snapshot. Retorna os
+     * bytes economizados.
+     */
+    public synchronized long compact(long idleNanos) {
+        long now = System.nanoTime();
+        long saved = 0;
+        while (true) {
+            long stamp = lock.writeLock();
+            try {
+                if (version != compactVersion) {
+                    compactVersion = version;
+                    unchangedSince = now;
+                }
+                long step = data.compactStep(now - unchangedSince >= idleNanos);
+                if (step < 0) {
+                    return saved;
+                }
+                saved += step;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Descarrega o conteúdo para o disco e esvazia o armazenamento, se a lista
+     * ainda estiver em memória e não vazia. size e snapshot continuam sem
+     * trazê-la de volta; o resto a carrega na primeira chamada. synchronized
+     * como snapshot e compact. Retorna os bytes liberados.
+     */
+    public synchronized long spill(SpillStore store) {
+        if (listId == null || !store.accepts(listId)) {
+            return 0;
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (spilled || data.isEmpty()) {
+                return 0;
+            }
+            long before = data.capacityBytes();
+            int[] values = data.toArray();
+            store.write(listId, values);
+            data.clear();
+            spillStore = store;
+            spilledSize = values.length;
+            spilled = true;
+            return before - data.capacityBytes();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public String listId() {
+        return listId;
+    }
+
+    public boolean isSpilled() {
+        return spilled;
+    }
+
+    /** Valor do relógio de acesso no último uso da lista (maior = mais recente). */
+    long lastAccess() {
+        return accessed;
+    }
+
+    /** Avança o relógio de acesso: usos a partir daqui contam como mais recentes. */
+    static void tickAccessClock() {
+        accessClock++;
+    }
+
+    // Escrita só quando o relógio mudou, para não disputar a linha de cache a cada leitura
+    private void touch() {
+        long now = accessClock;
+        if (accessed != now) {
+            accessed = now;
+        }
+    }
+
+    // Sob o write lock: traz de volta uma lista descarregada
+    private void loadIfSpilled() {
+        if (spilled) {
+            int[] values = spillStore.read(listId);
+            data.addAll(values, 0, values.length);
+            spilled = false;
+            spillStore.delete(listId);
+        }
+    }
+
+    // Read lock com a lista em memória: se estiver descarregada, carrega sob o write lock antes
+    private long readLockLoaded() {
+        while (true) {
+            long stamp = lock.readLock();
+            if (!spilled) {
+                return stamp;
+            }
+            lock.unlockRead(stamp);
+            stamp = lock.writeLock();
+            try {
+                loadIfSpilled();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /** Fecha o armazenamento da lista (o mapeado grava tamanho e seq para o próximo início). */
+    public void close() {
+        long stamp = lock.writeLock();
+        try {
+            data.close(lastSeq);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Estimativa de memória da lista (dados + diretório de segmentos). */
+    public long memoryBytes() {
+        long stamp = lock.readLock();
+        try {
+            return data.capacityBytes() + (preserved != null ? preserved.capacityBytes() : 0);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int[] toArray() {
+        long stamp = readLockLoaded();
+        try {
+            return data.toArray();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+}
@@ -1,14 +1,26 @@
 import java.rmi.Naming;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.Random;
 
 public class ConcurrentTestClient {
     private static final String SERVER_URL = "//localhost/RemoteList";
+    private static final int LIST_PAGE = 1000;
     private static final AtomicInteger operationCount = new AtomicInteger(0);
     private static final AtomicInteger errorCount = new AtomicInteger(0);
+    private static final AtomicInteger rejectedCount = new AtomicInteger(0);
+
+    // Tamanho esperado de cada lista: tamanho inicial + appends - removes bem-sucedidos
+    private static final Map<String, AtomicInteger> expectedSizes = new ConcurrentHashMap<>();
+
+    // No modo local o teste roda contra um RemoteListImpl no mesmo processo,
+    // sem pausas nem printf por operação, para estressar o motor de concorrência
+    private static RemoteListInterface localServer;
+    private static boolean verbose = true;
+    private static ShardedListClient shardedClient;
 
     public static void main(String[] args) {
         try {
@@ -16,22 +28,43 @@ public class ConcurrentTestClient {
             System.out.println("🎯 Simulando múltiplos clientes acessando simultaneamente");
 
             // Configurações do teste
-            int numClients = 10;
-            int operationsPerClient = 50;
-            int testDurationSeconds = 30;
+            boolean local = args.length > 0 && args[0].equals("--local");
+            int numClients = args.length > 1 ? Integer.parseInt(args[1]) : (local ? 32 : 10);
+            int operationsPerClient = args.length > 2 ? Integer.parseInt(args[2]) : (local ? 200_000 : 50);
+            int testDurationSeconds = local ? 120 : 30;
+
+            if (local) {
+                localServer = new RemoteListImpl();
+                verbose = false;
+            }
 
             System.out.printf("⚙️ Configuração:\n");
+            System.out.printf("   • Modo: %s\n", local ? "local (em processo, sem pausas)" : "RMI");
             System.out.printf("   • %d clientes simultâneos\n", numClients);
             System.out.printf("   • %d operações por cliente\n", operationsPerClient);
             System.out.printf("   • Duração: %d segundos\n", testDurationSeconds);
 
+            // Registrar tamanhos iniciais, já que o servidor pode ter dados anteriores
+            RemoteListInterface remoteList = connect();
+            for (int clientId = 0; clientId < numClients; clientId++) {
+                String[] listIds = listIdsFor(clientId);
+                int[] sizes = remoteList.sizes(listIds);
+                for (int i = 0; i < listIds.length; i++) {
+                    expectedSizes.computeIfAbsent(listIds[i], k -> new AtomicInteger()).set(sizes[i]);
+                }
+            }
+
             // Executar teste
-            runConcurrencyTest(numClients, operationsPerClient, testDurationSeconds);
+            boolean finished = runConcurrencyTest(numClients, operationsPerClient, testDurationSeconds);
 
             // Verificar integridade dos dados
-            verifyDataIntegrity();
+            boolean consistent = verifyDataIntegrity(finished);
 
             System.out.println("\n✅ Teste de concorrência concluído!");
+            if (localServer != null) {
+                // O objeto exportado mantém a JVM viva; encerrar com o status do teste
+                System.exit(consistent ? 0 : 1);
+            }
 
         } catch (Exception e) {
             System.err.println("❌ Erro no teste: " + e.getMessage());
@@ -39,10 +72,35 @@ public class ConcurrentTestClient {
         }
     }
 
-    private static void runConcurrencyTest(int numClients, int operationsPerClient, int durationSeconds)
+    private static RemoteListInterface connect() throws Exception {
+        if (localServer != null) {
+            return localServer;
+        }
+        // -Dremotelist.shards=//localhost:1099/RemoteList,//localhost:1100/RemoteList,...
+        String shards = System.getProperty("remotelist.shards");
+        if (shards != null) {
+            synchronized (ConcurrentTestClient.class) {
+                if (shardedClient == null) {
+                    shardedClient = ShardedListClient.connect(shards.split(","));
+                    System.out.println("🧩 Roteando por hashing consistente entre " + shardedClient.nodeUrls());
+                }
+                return shardedClient;
+            }
+        }
+        return (RemoteListInterface) Naming.lookup(SERVER_URL);
+    }
+
+    private static String[] listIdsFor(int clientId) {
+        return new String[]{"shared_list", "client_" + clientId, "stress_test"};
+    }
+
+    private static boolean runConcurrencyTest(int numClients, int operationsPerClient, int durationSeconds)
             throws InterruptedException {
 
-        ExecutorService executor = Executors.newFixedThreadPool(numClients);
+        // Uma thread por cliente; com -Dremotelist.virtualThreads=true (Java 21+) são virtuais
+        boolean virtual = Boolean.getBoolean("remotelist.virtualThreads");
+        ExecutorService executor = ThreadSupport.newPerTaskExecutor(virtual, "test-client");
+        System.out.println("🧵 Clientes em " + ThreadSupport.describe(virtual));
 
         System.out.println("\n🏁 Iniciando teste...");
         long startTime = System.currentTimeMillis();
@@ -70,6 +128,9 @@ public class ConcurrentTestClient {
         System.out.printf("⏱️ Tempo total: %.2f segundos\n", duration);
         System.out.printf("✅ Operações realizadas: %d\n", operationCount.get());
         System.out.printf("❌ Erros encontrados: %d\n", errorCount.get());
+        if (rejectedCount.get() > 0) {
+            System.out.printf("🚦 Recusadas pelo servidor (repetidas depois da espera): %d\n", rejectedCount.get());
+        }
         System.out.printf("🚀 Taxa de operações: %.2f ops/segundo\n", operationCount.get() / duration);
 
         if (errorCount.get() == 0) {
@@ -77,16 +138,16 @@ public class ConcurrentTestClient {
         } else {
             System.out.println("⚠️ Alguns erros foram encontrados - verifique os logs");
         }
+        return finished;
     }
 
     private static void runClientOperations(int clientId, int numOperations) {
         try {
             // Conectar ao servidor
-            RemoteListInterface remoteList =
-                    (RemoteListInterface) Naming.lookup(SERVER_URL);
+            RemoteListInterface remoteList = connect();
 
             Random random = new Random(clientId); // Seed baseada no ID do cliente
-            String[] listIds = {"shared_list", "client_" + clientId, "stress_test"};
+            String[] listIds = listIdsFor(clientId);
 
             for (int i = 0; i < numOperations; i++) {
                 try {
@@ -97,7 +158,10 @@ public class ConcurrentTestClient {
                         case 0: // APPEND
                             int value = clientId * 1000 + i;
                             remoteList.append(listId, value);
-                            System.out.printf("Client %d: APPEND %d to %s\n", clientId, value, listId);
+                            expectedSizes.get(listId).incrementAndGet();
+                            if (verbose) {
+                                System.out.printf("Client %d: APPEND %d to %s\n", clientId, value, listId);
+                            }
                             break;
 
                         case 1: // GET (se lista não estiver vazia)
@@ -106,7 +170,9 @@ public class ConcurrentTestClient {
                                 if (size > 0) {
                                     int index = random.nextInt(size);
                                     int result = remoteList.get(listId, index);
-                                    System.out.printf("Client %d: GET %s[%d] = %d\n", clientId, listId, index, result);
+                                    if (verbose) {
+                                        System.out.printf("Client %d: GET %s[%d] = %d\n", clientId, listId, index, result);
+                                    }
                                 }
                             } catch (Exception e) {
                                 // Lista pode estar vazia ou índice inválido
@@ -115,13 +181,18 @@ public class ConcurrentTestClient {
 
                         case 2: // SIZE
                             int size = remoteList.size(listId);
-                            System.out.printf("Client %d: SIZE %s = %d\n", clientId, listId, size);
+                            if (verbose) {
+                                System.out.printf("Client %d: SIZE %s = %d\n", clientId, listId, size);
+                            }
                             break;
 
                         case 3: // REMOVE (se lista não estiver vazia)
                             try {
                                 int removed = remoteList.remove(listId);
-                                System.out.printf("Client %d: REMOVE %d from %s\n", clientId, removed, listId);
+                                expectedSizes.get(listId).decrementAndGet();
+                                if (verbose) {
+                                    System.out.printf("Client %d: REMOVE %d from %s\n", clientId, removed, listId);
+                                }
                             } catch (Exception e) {
                                 // Lista pode estar vazia
                             }
@@ -131,8 +202,15 @@ public class ConcurrentTestClient {
                     operationCount.incrementAndGet();
 
                     // Pequena pausa para simular tempo de processamento real
-                    Thread.sleep(random.nextInt(50) + 10); // 10-60ms
+                    if (verbose) {
+                        Thread.sleep(random.nextInt(50) + 10); // 10-60ms
+                    }
 
+                } catch (RemoteListInterface.OverloadedException e) {
+                    // Nada foi aplicado: espera o que o servidor sugeriu e tenta de novo
+                    rejectedCount.incrementAndGet();
+                    Thread.sleep(e.retryAfterMillis);
+                    i--;
                 } catch (Exception e) {
                     errorCount.incrementAndGet();
                     System.err.printf("Client %d - Erro na operação %d: %s\n",
@@ -140,7 +218,9 @@ public class ConcurrentTestClient {
                 }
             }
 
-            System.out.printf("🏁 Client %d finalizado (%d operações)\n", clientId, numOperations);
+            if (verbose) {
+                System.out.printf("🏁 Client %d finalizado (%d operações)\n", clientId, numOperations);
+            }
 
         } catch (Exception e) {
             errorCount.incrementAndGet();
@@ -148,47 +228,75 @@ public class ConcurrentTestClient {
         }
     }
 
-    private static void verifyDataIntegrity() {
+    private static boolean verifyDataIntegrity(boolean finished) {
+        boolean consistent = true;
         try {
             System.out.println("\n🔍 === VERIFICAÇÃO DE INTEGRIDADE ===");
 
-            RemoteListInterface remoteList =
-                    (RemoteListInterface) Naming.lookup(SERVER_URL);
-
-            String[] listIds = remoteList.listIds();
-            System.out.printf("📝 Total de listas criadas: %d\n", listIds.length);
+            RemoteListInterface remoteList = connect();
 
+            // Página a página, com os tamanhos na mesma resposta
+            int totalLists = 0;
             int totalElements = 0;
-            for (String listId : listIds) {
-                try {
-                    int size = remoteList.size(listId);
-                    totalElements += size;
-                    System.out.printf("   Lista '%s': %d elementos\n", listId, size);
-
-                    // Verificar alguns elementos aleatórios
-                    if (size > 0) {
-                        Random random = new Random();
-                        for (int i = 0; i < Math.min(3, size); i++) {
-                            int index = random.nextInt(size);
-                            int value = remoteList.get(listId, index);
-                            // Verificação básica: valores devem ser positivos (baseado na lógica do teste)
-                            if (value < 0) {
-                                System.out.printf("⚠️ Valor suspeito encontrado: %s[%d] = %d\n",
-                                        listId, index, value);
+            String cursor = null;
+            do {
+                RemoteListInterface.ListPage page = remoteList.scanListIds("", cursor, LIST_PAGE);
+                totalLists += page.ids.length;
+                cursor = page.next;
+                for (int n = 0; n < page.ids.length; n++) {
+                    String listId = page.ids[n];
+                    try {
+                        int size = page.sizes[n];
+                        totalElements += size;
+                        System.out.printf("   Lista '%s': %d elementos\n", listId, size);
+
+                        // Verificar alguns elementos aleatórios
+                        if (size > 0) {
+                            Random random = new Random();
+                            for (int i = 0; i < Math.min(3, size); i++) {
+                                int index = random.nextInt(size);
+                                int value = remoteList.get(listId, index);
+                                // Verificação básica: valores devem ser positivos (baseado na lógica do teste)
+                                if (value < 0) {
+                                    System.out.printf("⚠️ Valor suspeito encontrado: %s[%d] = %d\n",
+                                            listId, index, value);
+                                }
                             }
                         }
-                    }
 
-                } catch (Exception e) {
-                    System.err.printf("❌ Erro ao verificar lista '%s': %s\n", listId, e.getMessage());
+                    } catch (Exception e) {
+                        System.err.printf("❌ Erro ao verificar lista '%s': %s\n", listId, e.getMessage());
+                    }
                 }
-            }
+            } while (cursor != null);
 
+            System.out.printf("📝 Total de listas criadas: %d\n", totalLists);
             System.out.printf("📊 Total de elementos em todas as listas: %d\n", totalElements);
+
+            // Tamanhos exatos: nenhuma escrita pode ter sido perdida ou duplicada
+            if (!finished) {
+                System.out.println("⚠️ Teste interrompido por tempo; tamanhos exatos não verificados");
+            } else {
+                String[] checked = expectedSizes.keySet().toArray(new String[0]);
+                int[] actualSizes = remoteList.sizes(checked);
+                for (int i = 0; i < checked.length; i++) {
+                    int expected = expectedSizes.get(checked[i]).get();
+                    if (expected != actualSizes[i]) {
+                        consistent = false;
+                        System.out.printf("❌ Lista '%s': esperado %d, obtido %d\n",
+                                checked[i], expected, actualSizes[i]);
+                    }
+                }
+                if (consistent) {
+                    System.out.printf("🎉 Tamanhos exatos conferem nas %d listas do teste\n", expectedSizes.size());
+                }
+            }
             System.out.println("✅ Verificação de integridade concluída!");
 
         } catch (Exception e) {
+            consistent = false;
             System.err.println("❌ Erro na verificação: " + e.getMessage());
         }
+        return consistent;
     }
 }
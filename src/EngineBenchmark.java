@@ -0,0 +1,410 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Benchmark do motor de listas (RemoteListImpl em processo) e dos caminhos RMI
+ * e binário (NIO) completos por loopback.
+ *
+ * Para cada cenário e número de threads: iterações de aquecimento
+ * descartadas, depois iterações medidas de duração fixa, reportando
+ * média ± desvio padrão em ops/s. Os resultados podem ser gravados em CSV e
+ * comparados com um CSV de uma versão anterior para detectar regressões.
+ *
+ * É um benchmark de fumaça, não um harness no estilo JMH: todos os cenários
+ * rodam na mesma JVM, um depois do outro, então o perfil do JIT e o estado do
+ * heap de um cenário influenciam os seguintes, e nada impede o JIT de
+ * eliminar trabalho além do blackhole simples. Serve para pegar regressões
+ * grandes comparando versões na mesma máquina e com os mesmos argumentos,
+ * não para números absolutos ou diferenças de poucos por cento. (JMH não
+ * serve aqui: o código gerado por ele fica num pacote nomeado e não enxerga
+ * as classes do pacote padrão.)
+ *
+ * Uso: java EngineBenchmark [--threads 1,2,4,8] [--warmup 2] [--iterations 5]
+ *        [--seconds 1] [--scenarios append-hot,get-cold,...] [--no-net]
+ *        [--csv resultados.csv] [--baseline anterior.csv] [--tolerance 10]
+ */
+public class EngineBenchmark {
+    private static final int PREFILL = 1024;
+    private static final int COLD_LISTS = 100_000;
+    private static final int RMI_PORT = 1199;
+    private static final int BINARY_PORT = 7199;
+    private static final int PIPELINE_DEPTH = 64;
+
+    /** Uma operação do benchmark, executada repetidamente por cada thread. */
+    private interface Operation {
+        long run(RemoteListInterface target, int thread, ThreadLocalRandom random) throws Exception;
+    }
+
+    /** Por onde o cenário chega ao motor. */
+    private enum Transport { LOCAL, RMI, BINARY }
+
+    private static final class Scenario {
+        final String name;
+        final Transport transport;
+        final Operation operation;
+        final int opsPerCall;
+
+        Scenario(String name, Transport transport, Operation operation) {
+            this(name, transport, operation, 1);
+        }
+
+        Scenario(String name, Transport transport, Operation operation, int opsPerCall) {
+            this.name = name;
+            this.transport = transport;
+            this.operation = operation;
+            this.opsPerCall = opsPerCall;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int[] threadCounts = parseInts(options.getOrDefault("threads", defaultThreads()));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "2"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "5"));
+        double seconds = Double.parseDouble(options.getOrDefault("seconds", "1"));
+        // --no-net (ou o antigo --no-rmi) pula os cenários por loopback
+        boolean withNet = !options.containsKey("no-net") && !options.containsKey("no-rmi");
+        String only = options.get("scenarios");
+
+        // Sem log de operações: o benchmark mede o motor, não a saída
+        ServerLog.setLevel(ServerLog.Level.WARN);
+
+        System.out.println("⏱️ === BENCHMARK DO MOTOR REMOTELIST ===");
+        System.out.printf("⚙️ threads %s | aquecimento %d x %.1fs | medição %d x %.1fs%n",
+                options.getOrDefault("threads", defaultThreads()), warmup, seconds, iterations, seconds);
+
+        List<Scenario> scenarios = scenarios();
+        RemoteListImpl engine = new RemoteListImpl();
+        engine.markHot("hot_comb");
+        RemoteListInterface rmiStub = null;
+        Registry registry = null;
+        BinaryServer binaryServer = null;
+        BinaryClient binaryClient = null;
+        if (withNet) {
+            registry = LocateRegistry.createRegistry(RMI_PORT);
+            registry.rebind("RemoteListBench", engine);
+            rmiStub = (RemoteListInterface) LocateRegistry.getRegistry("localhost", RMI_PORT).lookup("RemoteListBench");
+            binaryServer = new BinaryServer(engine, BINARY_PORT, 1,
+                    Executors.newCachedThreadPool(RemoteListServer.daemonThreads("bench-binary")));
+            binaryServer.start();
+            binaryClient = new BinaryClient("localhost", BINARY_PORT);
+            asyncClient = new AsyncListClient(binaryClient);
+        }
+
+        List<String[]> results = new ArrayList<>();
+        System.out.printf("%n%-16s %8s %16s %12s%n", "Cenário", "threads", "ops/s", "± desvio");
+        for (Scenario scenario : scenarios) {
+            if ((only != null && !List.of(only.split(",")).contains(scenario.name))
+                    || (scenario.transport != Transport.LOCAL && !withNet)) {
+                continue;
+            }
+            for (int threads : threadCounts) {
+                RemoteListInterface target = scenario.transport == Transport.RMI ? rmiStub
+                        : scenario.transport == Transport.BINARY ? binaryClient : engine;
+                double[] measured = new double[iterations];
+                for (int i = 0; i < warmup; i++) {
+                    prefill(engine, threads);
+                    runIteration(scenario, target, threads, seconds);
+                }
+                for (int i = 0; i < iterations; i++) {
+                    prefill(engine, threads);
+                    measured[i] = runIteration(scenario, target, threads, seconds);
+                }
+                double mean = mean(measured);
+                double stddev = stddev(measured, mean);
+                System.out.printf("%-16s %8d %16.0f %12.0f%n", scenario.name, threads, mean, stddev);
+                results.add(new String[]{scenario.name, String.valueOf(threads),
+                        String.format("%.0f", mean), String.format("%.0f", stddev)});
+            }
+        }
+
+        if (options.containsKey("csv")) {
+            writeCsv(Path.of(options.get("csv")), results);
+        }
+        int regressions = 0;
+        if (options.containsKey("baseline")) {
+            double tolerance = Double.parseDouble(options.getOrDefault("tolerance", "10"));
+            regressions = compareWithBaseline(Path.of(options.get("baseline")), results, tolerance);
+        }
+
+        if (registry != null) {
+            UnicastRemoteObject.unexportObject(registry, true);
+            binaryClient.close();
+            binaryServer.stop();
+        }
+        UnicastRemoteObject.unexportObject(engine, true);
+        System.exit(regressions == 0 ? 0 : 2);
+    }
+
+    private static List<Scenario> scenarios() {
+        List<Scenario> list = new ArrayList<>();
+        // hot: todas as threads na mesma lista; own: uma lista por thread;
+        // cold: escolha aleatória entre muitas listas (fora do cache)
+        list.add(new Scenario("append-hot", Transport.LOCAL, (t, thread, r) -> {
+            t.append("hot", thread);
+            return 1;
+        }));
+        // Mesma disputa numa lista que combina os appends desde o início (para comparar
+        // com append-hot rodando com -Dremotelist.hotList.contendedAppends=0)
+        list.add(new Scenario("append-hot-comb", Transport.LOCAL, (t, thread, r) -> {
+            t.append("hot_comb", thread);
+            return 1;
+        }));
+        list.add(new Scenario("append-own", Transport.LOCAL, (t, thread, r) -> {
+            t.append(ownList(thread), thread);
+            return 1;
+        }));
+        list.add(new Scenario("get-hot", Transport.LOCAL, (t, thread, r) ->
+                t.get("hot", r.nextInt(PREFILL))));
+        list.add(new Scenario("get-cold", Transport.LOCAL, (t, thread, r) ->
+                t.get(coldList(r.nextInt(COLD_LISTS)), r.nextInt(16))));
+        list.add(new Scenario("size-hot", Transport.LOCAL, (t, thread, r) ->
+                t.size("hot")));
+        // Mistura 50% get / 40% append / 10% remove
+        list.add(new Scenario("mix-hot", Transport.LOCAL, (t, thread, r) -> mixed(t, "hot", r)));
+        list.add(new Scenario("mix-own", Transport.LOCAL, (t, thread, r) -> mixed(t, ownList(thread), r)));
+        list.add(new Scenario("rmi-append", Transport.RMI, (t, thread, r) -> {
+            t.append(ownList(thread), thread);
+            return 1;
+        }));
+        list.add(new Scenario("rmi-get", Transport.RMI, (t, thread, r) ->
+                t.get(ownList(thread), r.nextInt(PREFILL))));
+        // Mesmas operações pelo protocolo binário, uma conexão compartilhada
+        list.add(new Scenario("bin-append", Transport.BINARY, (t, thread, r) -> {
+            t.append(ownList(thread), thread);
+            return 1;
+        }));
+        list.add(new Scenario("bin-get", Transport.BINARY, (t, thread, r) ->
+                t.get(ownList(thread), r.nextInt(PREFILL))));
+        // Pipelining: cada thread mantém PIPELINE_DEPTH requisições em voo
+        list.add(new Scenario("bin-get-pipe", Transport.BINARY, (t, thread, r) -> {
+            BinaryClient client = (BinaryClient) t;
+            CompletableFuture<?>[] inFlight = new CompletableFuture<?>[PIPELINE_DEPTH];
+            for (int i = 0; i < PIPELINE_DEPTH; i++) {
+                inFlight[i] = client.getAsync(ownList(thread), r.nextInt(PREFILL));
+            }
+            CompletableFuture.allOf(inFlight).join();
+            return PIPELINE_DEPTH;
+        }, PIPELINE_DEPTH));
+        // Lotes automáticos: os appends de todas as threads viajam juntos em BATCH
+        list.add(new Scenario("bin-append-batch", Transport.BINARY, (t, thread, r) -> {
+            CompletableFuture<?>[] inFlight = new CompletableFuture<?>[PIPELINE_DEPTH];
+            for (int i = 0; i < PIPELINE_DEPTH; i++) {
+                inFlight[i] = asyncClient.append(ownList(thread), i);
+            }
+            asyncClient.flush();
+            CompletableFuture.allOf(inFlight).join();
+            return PIPELINE_DEPTH;
+        }, PIPELINE_DEPTH));
+        return list;
+    }
+
+    private static long mixed(RemoteListInterface t, String listId, ThreadLocalRandom r) throws Exception {
+        int dice = r.nextInt(10);
+        if (dice < 5) {
+            return t.get(listId, r.nextInt(PREFILL));
+        } else if (dice < 9) {
+            t.append(listId, dice);
+            return 1;
+        }
+        return t.remove(listId);
+    }
+
+    private static AsyncListClient asyncClient;
+
+    private static String ownList(int thread) {
+        return OWN_IDS[thread];
+    }
+
+    private static String coldList(int n) {
+        return COLD_IDS[n];
+    }
+
+    // Ids pré-criados: o benchmark não deve medir concatenação de strings
+    private static final String[] OWN_IDS = new String[1024];
+    private static final String[] COLD_IDS = new String[COLD_LISTS];
+
+    static {
+        for (int i = 0; i < OWN_IDS.length; i++) {
+            OWN_IDS[i] = "own_" + i;
+        }
+        for (int i = 0; i < COLD_IDS.length; i++) {
+            COLD_IDS[i] = "cold_" + i;
+        }
+    }
+
+    private static void prefill(RemoteListImpl engine, int threads) throws Exception {
+        int[] values = new int[PREFILL];
+        topUp(engine, "hot", values);
+        topUp(engine, "hot_comb", values);
+        for (int i = 0; i < threads; i++) {
+            topUp(engine, ownList(i), values);
+        }
+        if (engine.size(coldList(0)) == 0) {
+            int[] small = new int[16];
+            for (String id : COLD_IDS) {
+                engine.appendAll(id, small);
+            }
+        }
+    }
+
+    private static void topUp(RemoteListImpl engine, String listId, int[] values) throws Exception {
+        int size = engine.size(listId);
+        if (size > PREFILL) {
+            engine.removeN(listId, size - PREFILL);  // appends das iterações anteriores
+        } else if (size < PREFILL) {
+            int[] missing = new int[PREFILL - size];
+            System.arraycopy(values, 0, missing, 0, missing.length);
+            engine.appendAll(listId, missing);
+        }
+    }
+
+    private static double runIteration(Scenario scenario, RemoteListInterface target, int threads, double seconds)
+            throws Exception {
+        long[] counts = new long[threads * 16];  // espaçados para evitar false sharing
+        AtomicBoolean running = new AtomicBoolean(true);
+        CyclicBarrier start = new CyclicBarrier(threads + 1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long ops = 0;
+                long sink = 0;
+                try {
+                    start.await();
+                    while (running.get()) {
+                        sink += scenario.operation.run(target, thread, random);
+                        ops += scenario.opsPerCall;
+                    }
+                } catch (Exception e) {
+                    System.err.println("❌ Erro no benchmark: " + e.getMessage());
+                }
+                counts[thread * 16] = ops;
+                blackhole(sink);
+            });
+            workers[t].start();
+        }
+        start.await();
+        long begin = System.nanoTime();
+        Thread.sleep((long) (seconds * 1000));
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        long total = 0;
+        for (int t = 0; t < threads; t++) {
+            total += counts[t * 16];
+        }
+        return total * 1e9 / elapsed;
+    }
+
+    private static volatile long sink;
+
+    private static void blackhole(long value) {
+        sink += value;
+    }
+
+    private static void writeCsv(Path file, List<String[]> results) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            out.println("scenario,threads,ops_per_sec,stddev");
+            for (String[] row : results) {
+                out.println(String.join(",", row));
+            }
+        }
+        System.out.println("\n💾 Resultados gravados em " + file);
+    }
+
+    private static int compareWithBaseline(Path file, List<String[]> results, double tolerancePercent)
+            throws IOException {
+        Map<String, Double> baseline = new HashMap<>();
+        for (String line : Files.readAllLines(file)) {
+            String[] cols = line.split(",");
+            if (cols.length >= 3 && !cols[0].equals("scenario")) {
+                baseline.put(cols[0] + "/" + cols[1], Double.parseDouble(cols[2]));
+            }
+        }
+        System.out.printf("%n📈 Comparação com %s (tolerância %.0f%%)%n", file, tolerancePercent);
+        int regressions = 0;
+        for (String[] row : results) {
+            Double before = baseline.get(row[0] + "/" + row[1]);
+            if (before == null || before == 0) {
+                continue;
+            }
+            double change = (Double.parseDouble(row[2]) - before) * 100 / before;
+            boolean regression = change < -tolerancePercent;
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf("%s %-16s %8s %+8.1f%%%n", regression ? "❌" : "✅", row[0], row[1], change);
+        }
+        if (regressions > 0) {
+            System.out.printf("⚠️ %d regressões acima da tolerância%n", regressions);
+        }
+        return regressions;
+    }
+
+    private static String defaultThreads() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        StringBuilder sb = new StringBuilder("1");
+        for (int t = 2; t <= cores; t *= 2) {
+            sb.append(',').append(t);
+        }
+        return sb.toString();
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].startsWith("--")) {
+                String key = args[i].substring(2);
+                boolean hasValue = i + 1 < args.length && !args[i + 1].startsWith("--");
+                options.put(key, hasValue ? args[++i] : "true");
+            }
+        }
+        return options;
+    }
+
+    private static int[] parseInts(String csv) {
+        String[] parts = csv.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values) {
+            sum += v;
+        }
+        return sum / values.length;
+    }
+
+    private static double stddev(double[] values, double mean) {
+        if (values.length < 2) {
+            return 0;
+        }
+        double sum = 0;
+        for (double v : values) {
+            sum += (v - mean) * (v - mean);
+        }
+        return Math.sqrt(sum / (values.length - 1));
+    }
+}
@@ -0,0 +1,50 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Handles de lista (ver RemoteListInterface.open): o slot num array denso
+ * nos 32 bits baixos e a geração desta tabela nos altos. Resolver é uma
+ * leitura de array mais uma comparação; a geração é sorteada a cada
+ * instância, então um handle de outra execução ou de outra tabela é recusado
+ * com StaleHandleException. Entradas nunca saem, como as listas do servidor.
+ */
+final class HandleTable<T> {
+    private final int generation = ThreadLocalRandom.current().nextInt() | 1;
+    private final ConcurrentHashMap<String, Integer> slots = new ConcurrentHashMap<>();
+    private volatile Object[] entries = new Object[64];
+    private int count;  // sob synchronized (slots)
+
+    /** Handle de {@code key}, criando a entrada com {@code create} na primeira vez. */
+    long open(String key, Function<String, T> create) {
+        Integer slot = slots.get(key);
+        if (slot == null) {
+            T value = create.apply(key);
+            synchronized (slots) {
+                slot = slots.get(key);
+                if (slot == null) {
+                    Object[] table = entries;
+                    if (count == table.length) {
+                        table = Arrays.copyOf(table, table.length * 2);
+                    }
+                    slot = count++;
+                    table[slot] = value;
+                    entries = table;  // escrita volátil: publica o slot para quem receber o handle
+                    slots.put(key, slot);
+                }
+            }
+        }
+        return (long) generation << 32 | slot;
+    }
+
+    @SuppressWarnings("unchecked")
+    T resolve(long handle) {
+        Object[] table = entries;
+        int slot = (int) handle;
+        if ((int) (handle >>> 32) != generation || slot < 0 || slot >= table.length || table[slot] == null) {
+            throw new RemoteListInterface.StaleHandleException(handle);
+        }
+        return (T) table[slot];
+    }
+}
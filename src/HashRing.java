@@ -0,0 +1,84 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Anel de hashing consistente com nós virtuais.
+ *
+ * Cada nó ocupa {@code virtualNodes} pontos do anel; uma chave pertence ao
+ * primeiro ponto no sentido horário a partir do seu hash. Com vários pontos
+ * por nó a carga fica equilibrada, e adicionar ou remover um nó só move as
+ * chaves que caíam nos pontos dele (~1/N do total).
+ *
+ * Imutável: o anel é montado uma vez em arrays ordenados e consultado com
+ * busca binária, sem lock.
+ */
+public class HashRing<T> {
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final long[] points;
+    private final T[] owners;
+    private final List<T> nodes;
+
+    public HashRing(List<T> nodes) {
+        this(nodes, DEFAULT_VIRTUAL_NODES);
+    }
+
+    @SuppressWarnings("unchecked")
+    public HashRing(List<T> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("O anel precisa de pelo menos um nó");
+        }
+        this.nodes = List.copyOf(nodes);
+        int total = nodes.size() * virtualNodes;
+        long[] hashes = new long[total];
+        int[] nodeIndex = new int[total];
+        int k = 0;
+        for (int n = 0; n < nodes.size(); n++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                hashes[k] = hash(nodes.get(n) + "#" + v);
+                nodeIndex[k] = n;
+                k++;
+            }
+        }
+        // Ordena os pontos levando junto o dono de cada um
+        Integer[] order = new Integer[total];
+        for (int i = 0; i < total; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        points = new long[total];
+        owners = (T[]) new Object[total];
+        for (int i = 0; i < total; i++) {
+            points[i] = hashes[order[i]];
+            owners[i] = nodes.get(nodeIndex[order[i]]);
+        }
+    }
+
+    public T nodeFor(String key) {
+        int i = Arrays.binarySearch(points, hash(key));
+        if (i < 0) {
+            i = -i - 1;  // ponto de inserção: o próximo ponto no sentido horário
+        }
+        return owners[i == points.length ? 0 : i];
+    }
+
+    public List<T> nodes() {
+        return nodes;
+    }
+
+    /** FNV-1a de 64 bits seguido do finalizador do MurmurHash3, para espalhar bem. */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
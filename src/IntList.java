@@ -0,0 +1,311 @@
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Lista de inteiros primitivos, sem boxing.
+ *
+ * Os elementos ficam em segmentos (chunks) de tamanho fixo: crescer a lista
+ * aloca um novo segmento em vez de copiar todo o array. Apenas o primeiro
+ * segmento cresce por cópia (até o tamanho de um chunk), para que listas
+ * pequenas não paguem 64KB logo no primeiro append.
+ *
+ * Segmentos frios podem ser comprimidos (ver {@link #compactStep}): o int[]
+ * dá lugar a um PackedInts e as leituras descomprimem na hora. Uma escrita
+ * num segmento comprimido o descomprime de volta; a versão comprimida fica
+ * até o próximo compactStep, para que a cópia sem lock do snapshot nunca
+ * encontre um segmento sem nenhuma das duas.
+ *
+ * Não é thread-safe; o controle de concorrência fica em quem a usa. É o
+ * armazenamento padrão das listas (ver IntStore).
+ */
+public class IntList implements IntStore {
+    public static final int DEFAULT_CHUNK_SHIFT = 14; // 16K ints (64KB) por segmento
+    private static final int INITIAL_CAPACITY = 16;
+    // Só comprime se economizar ao menos 1/8 do segmento
+    private static final int MIN_SAVING_SHIFT = 3;
+
+    private final int chunkShift;
+    private final int chunkSize;
+    private final int chunkMask;
+
+    private int[][] chunks;
+    private PackedInts[] packed;  // segmentos comprimidos; chunks[c] == null quando só há a versão comprimida
+    private int compacted;        // segmentos [0, compacted) já comprimidos ou sem ganho em comprimir
+    private int size;
+
+    public IntList() {
+        this(DEFAULT_CHUNK_SHIFT);
+    }
+
+    public IntList(int chunkShift) {
+        if (chunkShift < 4 || chunkShift > 30) {
+            throw new IllegalArgumentException("chunkShift fora do intervalo [4, 30]: " + chunkShift);
+        }
+        this.chunkShift = chunkShift;
+        this.chunkSize = 1 << chunkShift;
+        this.chunkMask = chunkSize - 1;
+        this.chunks = new int[4][];
+        this.packed = new PackedInts[4];
+        this.chunks[0] = new int[Math.min(INITIAL_CAPACITY, chunkSize)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void add(int value) {
+        int c = size >>> chunkShift;
+        int offset = size & chunkMask;
+        int[] chunk = ensureChunk(c, offset);
+        chunk[offset] = value;
+        size++;
+    }
+
+    public void addAll(int[] values, int offset, int length) {
+        while (length > 0) {
+            int c = size >>> chunkShift;
+            int chunkOffset = size & chunkMask;
+            int[] chunk = ensureChunk(c, chunkOffset);
+            int n = Math.min(length, chunk.length - chunkOffset);
+            System.arraycopy(values, offset, chunk, chunkOffset, n);
+            size += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /** Copia em bloco todo o conteúdo restante de {@code values}, segmento a segmento. */
+    public void addAll(IntBuffer values) {
+        while (values.hasRemaining()) {
+            int c = size >>> chunkShift;
+            int chunkOffset = size & chunkMask;
+            int[] chunk = ensureChunk(c, chunkOffset);
+            int n = Math.min(values.remaining(), chunk.length - chunkOffset);
+            values.get(chunk, chunkOffset, n);
+            size += n;
+        }
+    }
+
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Índice " + index + " fora do tamanho " + size);
+        }
+        return read(index);
+    }
+
+    private int read(int index) {
+        int c = index >>> chunkShift;
+        int[] chunk = chunks[c];
+        return chunk != null ? chunk[index & chunkMask] : packed[c].get(index & chunkMask);
+    }
+
+    /**
+     * Leitura tolerante a corridas, usada sob leitura otimista: nunca lança
+     * exceção e o valor só é confiável se a stamp for validada em seguida.
+     */
+    public int getRacy(int index) {
+        int[][] cs = chunks;
+        PackedInts[] ps = packed;
+        int c = index >>> chunkShift;
+        if (index < 0 || c >= cs.length || c >= ps.length) {
+            return 0;
+        }
+        int[] chunk = cs[c];
+        int offset = index & chunkMask;
+        if (chunk == null) {
+            PackedInts p = ps[c];
+            return p != null && offset < p.size() ? p.get(offset) : 0;
+        }
+        return offset < chunk.length ? chunk[offset] : 0;
+    }
+
+    public int removeLast() {
+        if (size == 0) {
+            throw new IndexOutOfBoundsException("Lista vazia");
+        }
+        int last = size - 1;
+        int value = read(last);
+        size = last;
+        if ((last & chunkMask) == 0) {
+            releaseSpareChunks();
+        }
+        return value;
+    }
+
+    /**
+     * Remove até {@code n} elementos do fim e os retorna na ordem em que
+     * sairiam com chamadas sucessivas a removeLast (último primeiro).
+     */
+    public int[] removeLast(int n) {
+        n = Math.min(n, size);
+        int[] out = new int[n];
+        for (int i = 0; i < n; i++) {
+            int last = size - 1 - i;
+            out[i] = read(last);
+        }
+        size -= n;
+        if (n > 0) {
+            releaseSpareChunks();
+        }
+        return out;
+    }
+
+    /** Copia os elementos [from, to) para {@code out} a partir de {@code outOffset}. */
+    public void copyRange(int from, int to, int[] out, int outOffset) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Intervalo [" + from + ", " + to + ") fora do tamanho " + size);
+        }
+        while (from < to) {
+            int c = from >>> chunkShift;
+            int[] chunk = chunks[c];
+            int chunkOffset = from & chunkMask;
+            if (chunk != null) {
+                int n = Math.min(to - from, chunk.length - chunkOffset);
+                System.arraycopy(chunk, chunkOffset, out, outOffset, n);
+                from += n;
+                outOffset += n;
+            } else {
+                int n = Math.min(to - from, packed[c].size() - chunkOffset);
+                packed[c].copyTo(chunkOffset, chunkOffset + n, out, outOffset);
+                from += n;
+                outOffset += n;
+            }
+        }
+    }
+
+    /**
+     * Cópia tolerante a corridas de [from, to): segmentos já liberados são
+     * pulados (ficam zerados em {@code out}). Só o snapshot usa, e ele
+     * corrige esses trechos com os valores preservados pela lista.
+     */
+    public void copyRangeRacy(int from, int to, int[] out) {
+        int[][] cs = chunks;
+        PackedInts[] ps = packed;
+        while (from < to) {
+            int c = from >>> chunkShift;
+            int chunkOffset = from & chunkMask;
+            int[] chunk = c < cs.length ? cs[c] : null;
+            int n = Math.min(to - from, chunkSize - chunkOffset);
+            if (chunk != null) {
+                System.arraycopy(chunk, chunkOffset, out, from, Math.min(n, Math.max(0, chunk.length - chunkOffset)));
+            } else if (c < ps.length && ps[c] != null) {
+                PackedInts p = ps[c];
+                p.copyTo(Math.min(chunkOffset, p.size()), Math.min(chunkOffset + n, p.size()), out, from);
+            }
+            from += n;
+        }
+    }
+
+    public void clear() {
+        size = 0;
+        releaseSpareChunks();
+        // Primeiro segmento volta ao tamanho inicial: uma lista esvaziada (ou
+        // descarregada para o disco) não fica segurando a capacidade antiga
+        chunks[0] = new int[Math.min(INITIAL_CAPACITY, chunkSize)];
+        packed[0] = null;
+        compacted = 0;
+    }
+
+    /** Estimativa de bytes ocupados pelos segmentos alocados. */
+    public long capacityBytes() {
+        long bytes = 16L + 16L * chunks.length;
+        for (int c = 0; c < chunks.length; c++) {
+            if (chunks[c] != null) {
+                bytes += 16L + 4L * chunks[c].length;
+            }
+            if (packed[c] != null) {
+                bytes += packed[c].memoryBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Um passo da compressão: comprime o próximo segmento ainda não visto,
+     * entre os que guardam a lista menos o último (que recebe os appends), ou
+     * todos se {@code all}. Cada passo custa no máximo um segmento, para quem
+     * chama poder soltar o lock entre eles. Retorna os bytes economizados, ou
+     * -1 quando não resta nada a comprimir.
+     */
+    public long compactStep(boolean all) {
+        int used = size == 0 ? 0 : ((size - 1) >>> chunkShift) + 1;
+        int eligible = all ? used : used - 1;
+        if (compacted >= eligible) {
+            // Versões comprimidas que ficaram velhas depois de uma escrita
+            for (int c = Math.max(0, eligible); c < packed.length; c++) {
+                if (chunks[c] != null) {
+                    packed[c] = null;
+                }
+            }
+            return -1;
+        }
+        int c = compacted++;
+        int[] chunk = chunks[c];
+        if (chunk == null) {
+            return 0;  // já comprimido
+        }
+        int n = Math.min(chunk.length, size - (c << chunkShift));
+        if (n > PackedInts.MAX_SIZE) {
+            return 0;
+        }
+        PackedInts p = PackedInts.pack(chunk, 0, n);
+        long raw = 16L + 4L * chunk.length;
+        if (p.memoryBytes() > raw - (raw >> MIN_SAVING_SHIFT)) {
+            packed[c] = null;
+            return 0;
+        }
+        // Publica a versão comprimida antes de soltar o int[]
+        packed[c] = p;
+        chunks[c] = null;
+        return raw - p.memoryBytes();
+    }
+
+    public int[] toArray() {
+        int[] out = new int[size];
+        copyRange(0, size, out, 0);
+        return out;
+    }
+
+    private int[] ensureChunk(int c, int offset) {
+        if (c >= chunks.length) {
+            // Só o diretório de segmentos é copiado, nunca os dados
+            packed = Arrays.copyOf(packed, chunks.length * 2);
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+        if (c < compacted) {
+            compacted = c;
+        }
+        int[] chunk = chunks[c];
+        if (chunk == null && packed[c] != null) {
+            // Escrita num segmento comprimido: volta a ser int[]
+            PackedInts p = packed[c];
+            chunk = new int[c == 0 ? Math.min(chunkSize, Math.max(INITIAL_CAPACITY, p.size())) : chunkSize];
+            p.copyTo(0, p.size(), chunk, 0);
+            chunks[c] = chunk;
+        }
+        if (chunk == null) {
+            chunk = new int[chunkSize];
+            chunks[c] = chunk;
+        } else if (offset >= chunk.length) {
+            // Primeiro segmento ainda crescendo até o tamanho de um chunk
+            chunk = Arrays.copyOf(chunk, Math.min(chunk.length * 2, chunkSize));
+            chunks[c] = chunk;
+        }
+        return chunk;
+    }
+
+    private void releaseSpareChunks() {
+        // Mantém um segmento livre além do último usado para evitar
+        // alocar/liberar repetidamente quando a lista oscila na fronteira
+        int keep = size == 0 ? 1 : ((size - 1) >>> chunkShift) + 2;
+        for (int c = Math.max(keep, 1); c < chunks.length && (chunks[c] != null || packed[c] != null); c++) {
+            chunks[c] = null;
+            packed[c] = null;
+        }
+        compacted = Math.min(compacted, keep);
+    }
+}
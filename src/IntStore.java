@@ -0,0 +1,83 @@
+import java.nio.IntBuffer;
+
+/**
+ * Armazenamento dos valores de uma lista, atrás do ConcurrentIntList.
+ *
+ * Implementações: {@link IntList} (heap, padrão), {@link OffHeapIntList}
+ * (memória direta, invisível ao GC) e {@link MappedIntList} (arquivo mapeado,
+ * pode passar da RAM e sobrevive a reinícios). Nenhuma é thread-safe; o
+ * controle de concorrência fica no ConcurrentIntList. A escolha é feita por
+ * {@link StorageBackend}.
+ */
+public interface IntStore {
+    int size();
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    void add(int value);
+
+    void addAll(int[] values, int offset, int length);
+
+    /** Copia em bloco todo o conteúdo restante de {@code values}. */
+    void addAll(IntBuffer values);
+
+    int get(int index);
+
+    /**
+     * Leitura tolerante a corridas, usada sob leitura otimista: nunca lança
+     * exceção e o valor só é confiável se a stamp for validada em seguida.
+     */
+    int getRacy(int index);
+
+    int removeLast();
+
+    /**
+     * Remove até {@code n} elementos do fim e os retorna na ordem em que
+     * sairiam com chamadas sucessivas a removeLast (último primeiro).
+     */
+    int[] removeLast(int n);
+
+    /** Copia os elementos [from, to) para {@code out} a partir de {@code outOffset}. */
+    void copyRange(int from, int to, int[] out, int outOffset);
+
+    /**
+     * Cópia tolerante a corridas de [from, to) para as mesmas posições de
+     * {@code out}; trechos já liberados ficam zerados (ver snapshot).
+     */
+    void copyRangeRacy(int from, int to, int[] out);
+
+    /** Estimativa de bytes ocupados, no heap ou fora dele. */
+    long capacityBytes();
+
+    default int[] toArray() {
+        int[] out = new int[size()];
+        copyRange(0, out.length, out, 0);
+        return out;
+    }
+
+    /**
+     * Seq da última operação incluída no conteúdo encontrado ao abrir (só no
+     * armazenamento persistente); -1 se a lista começou vazia.
+     */
+    default long persistedSeq() {
+        return -1;
+    }
+
+    /**
+     * Comprime o próximo segmento frio (só no heap, ver IntList): todos se
+     * {@code all}, senão os que não recebem appends. Retorna os bytes
+     * economizados, ou -1 quando não há mais nada a comprimir.
+     */
+    default long compactStep(boolean all) {
+        return -1;
+    }
+
+    /** Descarta todo o conteúdo (conteúdo persistido mais velho que o snapshot). */
+    void clear();
+
+    /** Fecha o armazenamento; o persistente grava o conteúdo até {@code lastSeq}. */
+    default void close(long lastSeq) {
+    }
+}
@@ -0,0 +1,138 @@
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Envia aos caches de cliente os avisos de mudança das listas.
+ *
+ * Cada assinante só recebe avisos das listas que já leu. As mudanças de uma
+ * lista se acumulam até o próximo envio (maior versão, menor índice tocado),
+ * então o custo por escrita é uma consulta a um mapa, e o envio de cada
+ * assinante roda numa thread à parte, um por vez: um cliente lento só junta
+ * mais mudanças no mesmo aviso. Sem mudanças, o assinante recebe um aviso
+ * vazio de tempos em tempos, para saber que o canal continua vivo.
+ */
+final class InvalidationHub implements ConcurrentIntList.ChangeListener {
+    private final long pushMillis = Long.getLong("remotelist.cache.pushMillis", 2);
+    private final long heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong("remotelist.cache.heartbeatMillis", 1000));
+
+    private static final class Subscriber {
+        final long id;
+        final InvalidationListener listener;
+        // listId -> {versão, menor índice tocado} ainda não enviados
+        final ConcurrentHashMap<String, long[]> pending = new ConcurrentHashMap<>();
+        final AtomicBoolean sending = new AtomicBoolean();
+        volatile long lastSentNanos = System.nanoTime();
+
+        Subscriber(long id, InvalidationListener listener) {
+            this.id = id;
+            this.listener = listener;
+        }
+    }
+
+    private final ConcurrentHashMap<Long, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<Subscriber>> interested = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private ExecutorService senders;
+    private ScheduledExecutorService timer;
+
+    long subscribe(InvalidationListener listener) {
+        synchronized (this) {
+            if (timer == null) {
+                senders = Executors.newCachedThreadPool(RemoteListServer.daemonThreads("invalidation-push"));
+                timer = Executors.newSingleThreadScheduledExecutor(RemoteListServer.daemonThreads("invalidation-timer"));
+                timer.scheduleWithFixedDelay(this::flushAll, pushMillis, pushMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        long id = nextId.incrementAndGet();
+        subscribers.put(id, new Subscriber(id, listener));
+        return id;
+    }
+
+    void unsubscribe(long id) {
+        Subscriber subscriber = subscribers.remove(id);
+        if (subscriber != null) {
+            for (String listId : interested.keySet()) {
+                // Conjunto vazio sai do mapa, senão cada lista já lida fica nele para sempre
+                interested.computeIfPresent(listId, (k, set) -> set.remove(subscriber) && set.isEmpty() ? null : set);
+            }
+        }
+    }
+
+    /** Passa a avisar o assinante das mudanças da lista. */
+    void watch(long subscriberId, String listId) throws RemoteException {
+        Subscriber subscriber = subscribers.get(subscriberId);
+        if (subscriber == null) {
+            throw new RemoteException("Assinante de invalidações desconhecido: " + subscriberId);
+        }
+        // compute, e não computeIfAbsent + add: não pode cair num conjunto que unsubscribe acabou de tirar
+        interested.compute(listId, (k, set) -> {
+            Set<Subscriber> result = set != null ? set : ConcurrentHashMap.<Subscriber>newKeySet();
+            result.add(subscriber);
+            return result;
+        });
+    }
+
+    @Override
+    public void changed(String listId, long version, int from, int size) {
+        Set<Subscriber> set = interested.get(listId);
+        if (set == null) {
+            return;
+        }
+        for (Subscriber subscriber : set) {
+            subscriber.pending.merge(listId, new long[] {version, from}, (a, b) -> {
+                a[0] = Math.max(a[0], b[0]);
+                a[1] = Math.min(a[1], b[1]);
+                return a;
+            });
+        }
+    }
+
+    private void flushAll() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers.values()) {
+            boolean due = !subscriber.pending.isEmpty() || now - subscriber.lastSentNanos >= heartbeatNanos;
+            if (due && subscriber.sending.compareAndSet(false, true)) {
+                senders.execute(() -> send(subscriber));
+            }
+        }
+    }
+
+    private void send(Subscriber subscriber) {
+        try {
+            String[] ids = subscriber.pending.keySet().toArray(new String[0]);
+            long[] versions = new long[ids.length];
+            int[] from = new int[ids.length];
+            int n = 0;
+            for (String id : ids) {
+                long[] change = subscriber.pending.remove(id);
+                if (change != null) {
+                    ids[n] = id;
+                    versions[n] = change[0];
+                    from[n++] = (int) change[1];
+                }
+            }
+            if (n < ids.length) {
+                ids = Arrays.copyOf(ids, n);
+                versions = Arrays.copyOf(versions, n);
+                from = Arrays.copyOf(from, n);
+            }
+            subscriber.listener.invalidated(ids, versions, from);
+            subscriber.lastSentNanos = System.nanoTime();
+        } catch (RemoteException e) {
+            // Cliente sumiu: sem o callback o cache dele expira sozinho
+            ServerLog.warn("Assinante de invalidações " + subscriber.id + " removido: " + e.getMessage());
+            unsubscribe(subscriber.id);
+        } finally {
+            subscriber.sending.set(false);
+        }
+    }
+}
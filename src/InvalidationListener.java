@@ -0,0 +1,12 @@
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * Callback exportado pelo cliente com cache: o servidor avisa quais listas
+ * mudaram. Para cada posição i, a lista {@code listIds[i]} chegou à versão
+ * {@code versions[i]} e nada abaixo do índice {@code from[i]} mudou desde o
+ * aviso anterior. Um aviso vazio é só sinal de vida.
+ */
+public interface InvalidationListener extends Remote {
+    void invalidated(String[] listIds, long[] versions, int[] from) throws RemoteException;
+}
@@ -0,0 +1,23 @@
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * Leituras versionadas e avisos de mudança para caches de cliente
+ * ({@link CachingListClient}). Implementada pelo RemoteListImpl ao lado da
+ * RemoteListInterface.
+ */
+public interface InvalidationSource extends Remote {
+    /** Registra o callback e devolve o id do assinante. */
+    long subscribeInvalidations(InvalidationListener listener) throws RemoteException;
+
+    void unsubscribeInvalidations(long subscriberId) throws RemoteException;
+
+    /**
+     * Lê [from, to) com o tamanho e a versão da lista, e passa a avisar o
+     * assinante das mudanças dela. Lista inexistente volta vazia, versão 0.
+     */
+    ConcurrentIntList.Segment readSegment(long subscriberId, String listId, int from, int to) throws RemoteException;
+
+    /** Tamanhos e versões de várias listas (segmentos sem valores), também passando a avisá-las. */
+    ConcurrentIntList.Segment[] readSizes(long subscriberId, String[] listIds) throws RemoteException;
+}
@@ -0,0 +1,102 @@
+/**
+ * Histograma de latências no estilo HDR: buckets log-lineares com precisão
+ * relativa de ~0,1% (3 dígitos significativos) de 1 ns até ~18 minutos
+ * (valores maiores contam no último bucket), em um array fixo de ~256 KB.
+ * Gravar é O(1) e não aloca.
+ *
+ * Não é thread-safe: cada thread grava no seu e os histogramas são somados
+ * com {@link #add} no final.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 10;
+    private static final int SUB_BUCKET_HALF = 1 << SUB_BUCKET_BITS;          // 1024
+    private static final int LINEAR_LIMIT = SUB_BUCKET_HALF << 1;             // 2048
+    private static final long MAX_TRACKED = 1L << 40;
+    private static final int BUCKETS = indexFor(MAX_TRACKED) + 1;
+
+    private final long[] counts = new long[BUCKETS];
+    private long totalCount;
+    private long maxValue;
+    private long minValue = Long.MAX_VALUE;
+    private double sum;
+
+    static int indexFor(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) Math.max(0, value);
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_HALF + (int) (value >>> shift);
+    }
+
+    /** Maior valor representado pelo bucket (o reportado nos percentis). */
+    static long highestValueAt(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = (index >> SUB_BUCKET_BITS) - 1;
+        long sub = index - (long) shift * SUB_BUCKET_HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    public void recordValue(long value) {
+        counts[indexFor(Math.min(value, MAX_TRACKED))]++;
+        totalCount++;
+        sum += value;
+        if (value > maxValue) {
+            maxValue = value;
+        }
+        if (value < minValue) {
+            minValue = value;
+        }
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        maxValue = Math.max(maxValue, other.maxValue);
+        minValue = Math.min(minValue, other.minValue);
+    }
+
+    public void reset() {
+        java.util.Arrays.fill(counts, 0);
+        totalCount = 0;
+        maxValue = 0;
+        minValue = Long.MAX_VALUE;
+        sum = 0;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMaxValue() {
+        return maxValue;
+    }
+
+    public long getMinValue() {
+        return totalCount == 0 ? 0 : minValue;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    /** Valor no percentil {@code percentile} (0..100). */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(highestValueAt(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+}
@@ -0,0 +1,72 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compressão periódica dos segmentos frios das listas (ver PackedInts).
+ *
+ * A cada passada, em cada lista, comprime os segmentos que já não recebem
+ * appends e, nas listas sem escritas há {@code idleSeconds}, também o último.
+ * Leituras descomprimem na hora; uma escrita volta o segmento a int[]. Só o
+ * armazenamento no heap comprime (os demais já ficam fora do GC).
+ */
+public class ListCompactor {
+    private final RemoteListImpl remoteList;
+    private final long intervalSeconds;
+    private final long idleNanos;
+    private ScheduledExecutorService scheduler;
+
+    public ListCompactor(RemoteListImpl remoteList, long intervalSeconds, long idleSeconds) {
+        this.remoteList = remoteList;
+        this.intervalSeconds = intervalSeconds;
+        this.idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+    }
+
+    /** remotelist.compress.intervalSeconds (padrão 10, 0 desliga) e remotelist.compress.idleSeconds (60). */
+    public static ListCompactor fromSystemProperties(RemoteListImpl remoteList) {
+        return new ListCompactor(remoteList, Long.getLong("remotelist.compress.intervalSeconds", 10),
+                Long.getLong("remotelist.compress.idleSeconds", 60));
+    }
+
+    public long intervalSeconds() {
+        return intervalSeconds;
+    }
+
+    public void start() {
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "list-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                compactAll();
+            } catch (Exception e) {
+                ServerLog.error("Falha na compressão das listas: " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /** Uma passada por todas as listas; retorna os bytes economizados. */
+    public long compactAll() throws Exception {
+        long start = System.nanoTime();
+        long saved = 0;
+        for (String listId : remoteList.allListIds()) {
+            saved += remoteList.compactList(listId, idleNanos);
+        }
+        if (saved > 0) {
+            ServerLog.info(String.format("Compressão: %d KB economizados em %d ms", saved >> 10,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        }
+        return saved;
+    }
+
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+import java.rmi.RemoteException;
+
+/**
+ * Uma lista aberta por handle (ver RemoteListInterface.open): append, get,
+ * remove e size vão sem o listId. Se o servidor reiniciar, o handle é
+ * reaberto e a operação repetida uma vez; repetir é seguro porque um handle
+ * recusado não aplica nada.
+ */
+public class ListHandle {
+    private final RemoteListInterface target;
+    private final String listId;
+    private volatile long handle;
+
+    public ListHandle(RemoteListInterface target, String listId) throws RemoteException {
+        this.target = target;
+        this.listId = listId;
+        this.handle = target.open(listId);
+    }
+
+    public String listId() {
+        return listId;
+    }
+
+    public boolean append(int value) throws RemoteException {
+        try {
+            return target.append(handle, value);
+        } catch (RemoteListInterface.StaleHandleException e) {
+            return target.append(reopen(e), value);
+        }
+    }
+
+    public int get(int index) throws RemoteException {
+        try {
+            return target.get(handle, index);
+        } catch (RemoteListInterface.StaleHandleException e) {
+            return target.get(reopen(e), index);
+        }
+    }
+
+    public int remove() throws RemoteException {
+        try {
+            return target.remove(handle);
+        } catch (RemoteListInterface.StaleHandleException e) {
+            return target.remove(reopen(e));
+        }
+    }
+
+    public int size() throws RemoteException {
+        try {
+            return target.size(handle);
+        } catch (RemoteListInterface.StaleHandleException e) {
+            return target.size(reopen(e));
+        }
+    }
+
+    // Outra thread pode já ter reaberto: só pede um novo se o recusado ainda é o atual
+    private synchronized long reopen(RemoteListInterface.StaleHandleException e) throws RemoteException {
+        if (handle == e.handle) {
+            handle = target.open(listId);
+        }
+        return handle;
+    }
+}
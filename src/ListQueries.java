@@ -0,0 +1,195 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Consultas que percorrem a lista no servidor (soma, mínimo, máximo,
+ * contagem, histograma, varredura filtrada), para que uma análise custe uma
+ * chamada remota e só o resultado trafegue.
+ *
+ * Os valores são copiados do armazenamento em blocos para um int[] local e
+ * processados em laços simples sobre o array, que o JIT vetoriza (SIMD).
+ * Intervalos grandes são divididos em pedaços de {@link #PARALLEL_THRESHOLD}
+ * valores processados em paralelo no ForkJoinPool comum; o armazenamento só
+ * é lido, sob o read lock da lista tomado por quem chama.
+ */
+final class ListQueries {
+    static final int BLOCK = 4096;
+    static final int PARALLEL_THRESHOLD = Integer.getInteger("remotelist.query.parallelThreshold", 1 << 20);
+    static final int MAX_BUCKETS = 1 << 16;
+
+    private ListQueries() {
+    }
+
+    /** Consulta sobre [from, to) já limitado ao tamanho, chamada sob o read lock. */
+    interface RangeQuery<T> {
+        T run(IntStore data, int from, int to);
+    }
+
+    /** Resultado parcial de um pedaço, combinado com os vizinhos. */
+    private interface Partial<P> {
+        P compute(IntStore data, int from, int to);
+
+        P combine(P left, P right);
+    }
+
+    private static final class Split<P> extends RecursiveTask<P> {
+        private static final long serialVersionUID = 1L;
+
+        private final IntStore data;
+        private final int from;
+        private final int to;
+        private final Partial<P> partial;
+
+        Split(IntStore data, int from, int to, Partial<P> partial) {
+            this.data = data;
+            this.from = from;
+            this.to = to;
+            this.partial = partial;
+        }
+
+        @Override
+        protected P compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                return partial.compute(data, from, to);
+            }
+            int mid = (from + to) >>> 1;
+            Split<P> left = new Split<>(data, from, mid, partial);
+            left.fork();
+            P right = new Split<>(data, mid, to, partial).compute();
+            return partial.combine(left.join(), right);
+        }
+    }
+
+    private static <P> P parallel(IntStore data, int from, int to, Partial<P> partial) {
+        if (to - from <= PARALLEL_THRESHOLD) {
+            return partial.compute(data, from, to);
+        }
+        return ForkJoinPool.commonPool().invoke(new Split<>(data, from, to, partial));
+    }
+
+    // ---- Consultas ----
+
+    static RemoteListInterface.Stats stats(IntStore data, int from, int to) {
+        long[] r = parallel(data, from, to, new Partial<long[]>() {
+            @Override
+            public long[] compute(IntStore data, int from, int to) {
+                int[] block = new int[BLOCK];
+                long sum = 0;
+                int min = Integer.MAX_VALUE;
+                int max = Integer.MIN_VALUE;
+                for (int start = from; start < to; start += BLOCK) {
+                    int n = Math.min(BLOCK, to - start);
+                    data.copyRange(start, start + n, block, 0);
+                    for (int i = 0; i < n; i++) {
+                        int v = block[i];
+                        sum += v;
+                        min = Math.min(min, v);
+                        max = Math.max(max, v);
+                    }
+                }
+                return new long[] {sum, min, max};
+            }
+
+            @Override
+            public long[] combine(long[] left, long[] right) {
+                return new long[] {left[0] + right[0], Math.min(left[1], right[1]), Math.max(left[2], right[2])};
+            }
+        });
+        return new RemoteListInterface.Stats(to - from, r[0], (int) r[1], (int) r[2]);
+    }
+
+    static long count(IntStore data, int from, int to, int low, int high) {
+        return parallel(data, from, to, new Partial<Long>() {
+            @Override
+            public Long compute(IntStore data, int from, int to) {
+                int[] block = new int[BLOCK];
+                long count = 0;
+                for (int start = from; start < to; start += BLOCK) {
+                    int n = Math.min(BLOCK, to - start);
+                    data.copyRange(start, start + n, block, 0);
+                    for (int i = 0; i < n; i++) {
+                        int v = block[i];
+                        count += v >= low && v <= high ? 1 : 0;
+                    }
+                }
+                return count;
+            }
+
+            @Override
+            public Long combine(Long left, Long right) {
+                return left + right;
+            }
+        });
+    }
+
+    /**
+     * Contagens em {@code buckets} faixas de mesma largura cobrindo
+     * [low, high]; valores fora dela não contam.
+     */
+    static long[] histogram(IntStore data, int from, int to, int low, int high, int buckets) {
+        if (buckets < 1 || buckets > MAX_BUCKETS || high < low) {
+            throw new IllegalArgumentException("Histograma inválido: " + buckets + " faixas em [" + low + ", "
+                    + high + "]");
+        }
+        long span = (long) high - low + 1;
+        // Largura arredondada para cima: a última faixa pode ficar menor
+        long width = (span + buckets - 1) / buckets;
+        return parallel(data, from, to, new Partial<long[]>() {
+            @Override
+            public long[] compute(IntStore data, int from, int to) {
+                int[] block = new int[BLOCK];
+                long[] counts = new long[buckets];
+                for (int start = from; start < to; start += BLOCK) {
+                    int n = Math.min(BLOCK, to - start);
+                    data.copyRange(start, start + n, block, 0);
+                    for (int i = 0; i < n; i++) {
+                        int v = block[i];
+                        if (v >= low && v <= high) {
+                            counts[(int) (((long) v - low) / width)]++;
+                        }
+                    }
+                }
+                return counts;
+            }
+
+            @Override
+            public long[] combine(long[] left, long[] right) {
+                for (int i = 0; i < left.length; i++) {
+                    left[i] += right[i];
+                }
+                return left;
+            }
+        });
+    }
+
+    /**
+     * Valores em [low, high], na ordem da lista, até {@code limit} deles.
+     * Sequencial: para no limite, sem percorrer o resto da lista.
+     */
+    static RemoteListInterface.ScanResult scan(IntStore data, int from, int to, int low, int high, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limite inválido: " + limit);
+        }
+        int[] block = new int[BLOCK];
+        int[] out = new int[Math.min(limit, Math.min(to - from, BLOCK))];
+        int found = 0;
+        int start = from;
+        while (start < to && found < limit) {
+            int n = Math.min(BLOCK, to - start);
+            data.copyRange(start, start + n, block, 0);
+            int i = 0;
+            for (; i < n && found < limit; i++) {
+                int v = block[i];
+                if (v >= low && v <= high) {
+                    if (found == out.length) {
+                        out = Arrays.copyOf(out, (int) Math.min(limit, 2L * out.length));
+                    }
+                    out[found++] = v;
+                }
+            }
+            start += i;
+        }
+        return new RemoteListInterface.ScanResult(found == out.length ? out : Arrays.copyOf(out, found), start);
+    }
+}
@@ -0,0 +1,87 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mantém a memória das listas dentro de um orçamento descarregando as menos
+ * usadas para o disco (ver ConcurrentIntList.spill e SpillStore).
+ *
+ * A cada passada avança o relógio de acesso das listas e, se o total passar
+ * de {@code maxBytes}, descarrega por ordem de último uso até 90% do
+ * orçamento. Uma lista descarregada volta sozinha na primeira operação que
+ * precisar dos valores. O armazenamento mapeado já vive em disco e não
+ * participa.
+ */
+public class ListSpiller {
+    private final RemoteListImpl remoteList;
+    private final SpillStore store;
+    private final long maxBytes;
+    private final long targetBytes;
+    private final long intervalMillis;
+    private ScheduledExecutorService scheduler;
+
+    public ListSpiller(RemoteListImpl remoteList, SpillStore store, long maxBytes, long intervalMillis) {
+        this.remoteList = remoteList;
+        this.store = store;
+        this.maxBytes = maxBytes;
+        this.targetBytes = maxBytes / 10 * 9;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * remotelist.spill.maxMB (padrão 0, desligado) e remotelist.spill.intervalMillis
+     * (1000); os arquivos ficam em dataDir/spill. Retorna null se desligado.
+     */
+    public static ListSpiller fromSystemProperties(RemoteListImpl remoteList, StorageBackend storage)
+            throws IOException {
+        long maxMB = Long.getLong("remotelist.spill.maxMB", 0);
+        if (maxMB <= 0) {
+            return null;
+        }
+        if (storage.persistent()) {
+            System.out.println("remotelist.spill.maxMB ignorado: o armazenamento já está em disco");
+            return null;
+        }
+        SpillStore store = new SpillStore(Path.of(System.getProperty("remotelist.dataDir", "data"), "spill"));
+        return new ListSpiller(remoteList, store, maxMB << 20, Long.getLong("remotelist.spill.intervalMillis", 1000));
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "list-spiller");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                spillToBudget();
+            } catch (Exception e) {
+                ServerLog.error("Falha ao descarregar listas para o disco: " + e.getMessage());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Uma passada; retorna os bytes liberados. */
+    public long spillToBudget() {
+        ConcurrentIntList.tickAccessClock();
+        long start = System.nanoTime();
+        long freed = remoteList.spillToBudget(maxBytes, targetBytes, store);
+        if (freed > 0) {
+            ServerLog.info(String.format("Descarregamento: %d KB liberados em %d ms", freed >> 10,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        }
+        return freed;
+    }
+
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
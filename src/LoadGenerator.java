@@ -0,0 +1,368 @@
+import java.rmi.Naming;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Gerador de carga para o servidor RemoteList, reportando percentis de
+ * latência por tipo de operação.
+ *
+ * Malha fechada (padrão): cada cliente dispara a próxima operação assim que a
+ * anterior responde. Malha aberta ({@code --rate}): as operações têm horários
+ * planejados a uma taxa fixa e a latência é medida a partir do horário
+ * planejado, não de quando a chamada saiu de fato. Assim uma pausa do
+ * servidor aparece em todas as requisições que ficaram esperando atrás dela
+ * (correção de coordinated omission), e não só na única que estava em voo.
+ *
+ * Uso: java LoadGenerator [--clients 16] [--seconds 30] [--warmup 5]
+ *        [--mix append=40,get=40,size=10,remove=10] [--lists 1000]
+ *        [--distribution uniform|zipfian] [--theta 0.99] [--rate 0]
+ *        [--prefill 100] [--url //localhost/RemoteList] [--local]
+ *        [--transport rmi|binary] [--host localhost] [--port 7070] [--connections 4]
+ *        [--threads platform|virtual] [--replicas url1,url2,...] [--handles]
+ *
+ * Cada cliente é uma thread; com {@code --threads virtual} (Java 21+) dá para
+ * simular dezenas de milhares de clientes. No transporte binário os clientes
+ * compartilham {@code --connections} conexões, com as chamadas em voo
+ * multiplexadas em cada uma. Com {@code --replicas} (RMI) as leituras vão
+ * para as réplicas pelo {@link ReplicatedListClient}. Com {@code --handles}
+ * as operações usam handles (RemoteListInterface.open) em vez do listId.
+ */
+public class LoadGenerator {
+    private static final String[] OPS = {"append", "get", "size", "remove"};
+    private static final int APPEND = 0, GET = 1, SIZE = 2, REMOVE = 3;
+
+    /** Escolha de listas: índice em [0, n). */
+    private interface KeyChooser {
+        int next(ThreadLocalRandom random);
+    }
+
+    /**
+     * Distribuição zipfiana sobre [0, n) pelo método de Gray et al. (o mesmo
+     * do YCSB): o índice 0 é o mais popular.
+     */
+    static final class Zipfian implements KeyChooser {
+        private final int n;
+        private final double theta;
+        private final double alpha;
+        private final double zetaN;
+        private final double eta;
+
+        Zipfian(int n, double theta) {
+            this.n = n;
+            this.theta = theta;
+            this.zetaN = zeta(n, theta);
+            this.alpha = 1.0 / (1.0 - theta);
+            this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+        }
+
+        private static double zeta(int n, double theta) {
+            double sum = 0;
+            for (int i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+
+        @Override
+        public int next(ThreadLocalRandom random) {
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1.0) {
+                return 0;
+            }
+            if (uz < 1.0 + Math.pow(0.5, theta)) {
+                return Math.min(1, n - 1);
+            }
+            return Math.min(n - 1, (int) (n * Math.pow(eta * u - eta + 1, alpha)));
+        }
+    }
+
+    /**
+     * Histogramas de um grupo de clientes; somados no final. Com milhares de
+     * clientes cada grupo é compartilhado, então a gravação é sincronizada.
+     */
+    private static final class ClientStats {
+        final LatencyHistogram[] latency = new LatencyHistogram[OPS.length];
+        final LatencyHistogram[] service = new LatencyHistogram[OPS.length];
+        final long[] errors = new long[OPS.length];
+
+        ClientStats() {
+            for (int i = 0; i < OPS.length; i++) {
+                latency[i] = new LatencyHistogram();
+                service[i] = new LatencyHistogram();
+            }
+        }
+
+        synchronized void record(int op, long latencyNanos, long serviceNanos, boolean failed) {
+            latency[op].recordValue(latencyNanos);
+            service[op].recordValue(serviceNanos);
+            if (failed) {
+                errors[op]++;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int clients = Integer.parseInt(options.getOrDefault("clients", "16"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "30"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int lists = Integer.parseInt(options.getOrDefault("lists", "1000"));
+        int prefill = Integer.parseInt(options.getOrDefault("prefill", "100"));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+        String distribution = options.getOrDefault("distribution", "uniform");
+        double theta = Double.parseDouble(options.getOrDefault("theta", "0.99"));
+        int[] mix = parseMix(options.getOrDefault("mix", "append=40,get=40,size=10,remove=10"));
+        boolean local = options.containsKey("local");
+        boolean binary = options.getOrDefault("transport", "rmi").equals("binary");
+        boolean virtual = options.getOrDefault("threads", "platform").equals("virtual");
+        boolean useHandles = options.containsKey("handles");
+
+        // Conexões compartilhadas pelos clientes: o stub RMI já mantém seu
+        // próprio pool, e no binário cada conexão aceita muitas chamadas em voo
+        RemoteListInterface[] targets;
+        if (local) {
+            ServerLog.setLevel(ServerLog.Level.WARN);
+            targets = new RemoteListInterface[] {new RemoteListImpl()};
+        } else if (binary) {
+            targets = new RemoteListInterface[Integer.parseInt(options.getOrDefault("connections", "4"))];
+            for (int i = 0; i < targets.length; i++) {
+                targets[i] = new BinaryClient(options.getOrDefault("host", "localhost"),
+                        Integer.parseInt(options.getOrDefault("port", "7070")));
+            }
+        } else if (options.containsKey("replicas")) {
+            targets = new RemoteListInterface[] {ReplicatedListClient.connect(
+                    options.getOrDefault("url", "//localhost/RemoteList"), options.get("replicas").split(","))};
+        } else {
+            targets = new RemoteListInterface[] {
+                    (RemoteListInterface) Naming.lookup(options.getOrDefault("url", "//localhost/RemoteList"))};
+        }
+        RemoteListInterface server = targets[0];
+        ThreadFactory threads = ThreadSupport.factory(virtual, "load");
+
+        KeyChooser keys;
+        if (distribution.equals("zipfian")) {
+            keys = new Zipfian(lists, theta);
+        } else if (distribution.equals("uniform")) {
+            keys = random -> random.nextInt(lists);
+        } else {
+            throw new IllegalArgumentException("Distribuição desconhecida: " + distribution);
+        }
+        String[] listIds = new String[lists];
+        for (int i = 0; i < lists; i++) {
+            listIds[i] = "load_" + i;
+        }
+
+        System.out.println("📈 === GERADOR DE CARGA REMOTELIST ===");
+        System.out.printf("⚙️ %d clientes | %s | %d listas (%s%s) | mix %s%n", clients,
+                rate > 0 ? String.format("malha aberta, %.0f ops/s", rate) : "malha fechada",
+                lists, distribution, distribution.equals("zipfian") ? ", θ=" + theta : "",
+                options.getOrDefault("mix", "append=40,get=40,size=10,remove=10"));
+        System.out.printf("⚙️ aquecimento %d s, medição %d s, %s, clientes em %s%s%n", warmup, seconds,
+                local ? "em processo" : binary ? "binário (" + targets.length + " conexões)" : "RMI",
+                ThreadSupport.describe(virtual), useHandles ? ", com handles" : "");
+
+        // Pré-carrega as listas para que get tenha índices válidos
+        int[] fill = new int[prefill];
+        int[] currentSizes = server.sizes(listIds);
+        for (int i = 0; i < lists; i++) {
+            if (currentSizes[i] < prefill) {
+                server.appendAll(listIds[i], java.util.Arrays.copyOf(fill, prefill - currentSizes[i]));
+            }
+        }
+
+        // Handles de cada lista em cada conexão (no binário todas falam com o mesmo servidor)
+        long[][] handles = new long[targets.length][];
+        if (useHandles) {
+            for (int t = 0; t < targets.length; t++) {
+                handles[t] = new long[lists];
+                for (int i = 0; i < lists; i++) {
+                    handles[t][i] = targets[t].open(listIds[i]);
+                }
+            }
+        }
+
+        ClientStats[] stats = new ClientStats[Math.min(clients,
+                Math.min(32, 2 * Runtime.getRuntime().availableProcessors()))];
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = new ClientStats();
+        }
+        long intervalNanos = rate > 0 ? (long) (clients * 1e9 / rate) : 0;
+        long startAt = System.nanoTime() + 100_000_000L;
+        long measureFrom = startAt + warmup * 1_000_000_000L;
+        long endAt = measureFrom + seconds * 1_000_000_000L;
+        LongAdder behind = new LongAdder();
+        CountDownLatch done = new CountDownLatch(clients);
+
+        for (int c = 0; c < clients; c++) {
+            ClientStats s = stats[c % stats.length];
+            final int clientId = c;
+            RemoteListInterface target = targets[c % targets.length];
+            long[] targetHandles = handles[c % targets.length];
+            Thread thread = threads.newThread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                // Clientes defasados dentro do intervalo para não dispararem juntos
+                long intended = startAt + (intervalNanos * clientId) / clients;
+                try {
+                    while (true) {
+                        long now = System.nanoTime();
+                        if (intervalNanos > 0) {
+                            if (now < intended) {
+                                LockSupport.parkNanos(intended - now);
+                                now = System.nanoTime();
+                            } else if (now - intended > intervalNanos) {
+                                behind.increment();
+                            }
+                        } else {
+                            intended = now;
+                        }
+                        if (intended >= endAt) {
+                            break;
+                        }
+                        int op = pick(mix, random);
+                        int key = keys.next(random);
+                        long started = System.nanoTime();
+                        boolean failed = false;
+                        try {
+                            if (targetHandles != null) {
+                                long handle = targetHandles[key];
+                                switch (op) {
+                                    case APPEND: target.append(handle, random.nextInt()); break;
+                                    case GET: target.get(handle, random.nextInt(prefill)); break;
+                                    case SIZE: target.size(handle); break;
+                                    default: target.remove(handle); break;
+                                }
+                            } else {
+                                String listId = listIds[key];
+                                switch (op) {
+                                    case APPEND: target.append(listId, random.nextInt()); break;
+                                    case GET: target.get(listId, random.nextInt(prefill)); break;
+                                    case SIZE: target.size(listId); break;
+                                    default: target.remove(listId); break;
+                                }
+                            }
+                        } catch (Exception e) {
+                            failed = true;
+                        }
+                        long finished = System.nanoTime();
+                        if (intended >= measureFrom) {  // o aquecimento não entra nos histogramas
+                            s.record(op, finished - intended, finished - started, failed);
+                        }
+                        if (intervalNanos > 0) {
+                            intended += intervalNanos;
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.start();
+        }
+        done.await();
+        long elapsed = System.nanoTime() - measureFrom;
+
+        report(stats, elapsed, intervalNanos > 0);
+        if (intervalNanos > 0 && behind.sum() > 0) {
+            System.out.printf("%n⚠️ %d operações saíram atrasadas mais de um intervalo: o servidor não "
+                    + "acompanhou a taxa pedida%n", behind.sum());
+        }
+        if (server instanceof ReplicatedListClient) {
+            ReplicatedListClient replicated = (ReplicatedListClient) server;
+            System.out.printf("%n🔁 Leituras: %d nas réplicas, %d no primário%n",
+                    replicated.replicaReads(), replicated.primaryReads());
+        }
+        System.exit(0);
+    }
+
+    private static void report(ClientStats[] stats, long elapsedNanos, boolean openLoop) {
+        LatencyHistogram total = new LatencyHistogram();
+        System.out.printf("%n%-8s %10s %10s %8s %10s %10s %10s %10s %10s%n",
+                "Op", "ops", "ops/s", "erros", "p50 µs", "p99 µs", "p99.9 µs", "max µs", "média µs");
+        for (int op = 0; op < OPS.length; op++) {
+            LatencyHistogram merged = new LatencyHistogram();
+            long errors = 0;
+            for (ClientStats s : stats) {
+                merged.add(s.latency[op]);
+                errors += s.errors[op];
+            }
+            total.add(merged);
+            if (merged.getTotalCount() > 0) {
+                printRow(OPS[op], merged, errors, elapsedNanos);
+            }
+        }
+        printRow("total", total, -1, elapsedNanos);
+
+        if (openLoop) {
+            // Tempo de serviço isolado, para ver quanto da latência foi fila
+            LatencyHistogram service = new LatencyHistogram();
+            for (ClientStats s : stats) {
+                for (LatencyHistogram h : s.service) {
+                    service.add(h);
+                }
+            }
+            System.out.println("\nTempo de serviço (sem a espera desde o horário planejado):");
+            printRow("serviço", service, -1, elapsedNanos);
+        }
+    }
+
+    private static void printRow(String name, LatencyHistogram h, long errors, long elapsedNanos) {
+        System.out.printf("%-8s %10d %10.0f %8s %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                name, h.getTotalCount(), h.getTotalCount() * 1e9 / elapsedNanos,
+                errors < 0 ? "" : Long.toString(errors),
+                h.getValueAtPercentile(50) / 1e3, h.getValueAtPercentile(99) / 1e3,
+                h.getValueAtPercentile(99.9) / 1e3, h.getMaxValue() / 1e3, h.getMean() / 1e3);
+    }
+
+    private static int pick(int[] cumulative, ThreadLocalRandom random) {
+        int r = random.nextInt(cumulative[cumulative.length - 1]);
+        int op = 0;
+        while (r >= cumulative[op]) {
+            op++;
+        }
+        return op;
+    }
+
+    /** "append=40,get=40,..." em pesos acumulados na ordem de OPS. */
+    private static int[] parseMix(String spec) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] kv = part.split("=");
+            weights.put(kv[0].trim(), Integer.parseInt(kv[1].trim()));
+        }
+        List<String> known = List.of(OPS);
+        for (String name : weights.keySet()) {
+            if (!known.contains(name)) {
+                throw new IllegalArgumentException("Operação desconhecida no mix: " + name);
+            }
+        }
+        int[] cumulative = new int[OPS.length];
+        int sum = 0;
+        for (int i = 0; i < OPS.length; i++) {
+            sum += weights.getOrDefault(OPS[i], 0);
+            cumulative[i] = sum;
+        }
+        if (sum <= 0) {
+            throw new IllegalArgumentException("Mix sem operações: " + spec);
+        }
+        return cumulative;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].startsWith("--")) {
+                String key = args[i].substring(2);
+                boolean hasValue = i + 1 < args.length && !args[i + 1].startsWith("--");
+                options.put(key, hasValue ? args[++i] : "true");
+            }
+        }
+        return options;
+    }
+}
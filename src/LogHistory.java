@@ -0,0 +1,116 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Registros mais recentes do WAL em memória, até um limite de valores.
+ *
+ * Ouve o OperationLog e é lido por quem acompanha o log a partir de uma seq:
+ * réplicas e assinantes do fluxo de mudanças. Só são entregues registros já
+ * sincronizados em disco, então ninguém vê uma escrita que o servidor poderia
+ * perder numa queda. Quem pedir uma seq que já saiu do buffer recebe null e
+ * precisa recomeçar do estado atual das listas.
+ */
+final class LogHistory implements OperationLog.Listener {
+    private static final long POLL_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final OperationLog log;
+    private final long maxValues;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition arrived = lock.newCondition();
+    // Registros com seqs contíguas a partir de buffer[head]
+    private final ArrayList<OperationLog.Record> buffer = new ArrayList<>();
+    private int head;
+    private long bufferedValues;
+    private long trimmedThrough;  // maior seq que já saiu do buffer (ou anterior a ele)
+
+    LogHistory(OperationLog log, long maxValues) {
+        this.log = log;
+        this.maxValues = maxValues;
+        this.trimmedThrough = log.lastSeq();
+        log.addListener(this);
+    }
+
+    @Override
+    public void logged(OperationLog.Record record) {
+        lock.lock();
+        try {
+            if (record.seq <= trimmedThrough) {
+                return;
+            }
+            if (head == buffer.size()) {
+                // Buffer vazio: o que veio antes deste registro não está aqui
+                trimmedThrough = record.seq - 1;
+            }
+            buffer.add(record);
+            bufferedValues += weight(record);
+            while (bufferedValues > maxValues && buffer.size() - head > 1) {
+                OperationLog.Record oldest = buffer.set(head++, null);
+                bufferedValues -= weight(oldest);
+                trimmedThrough = oldest.seq;
+            }
+            if (head > 1024 && head > buffer.size() / 2) {
+                buffer.subList(0, head).clear();
+                head = 0;
+            }
+            arrived.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static long weight(OperationLog.Record record) {
+        return 1 + (record.values != null ? record.values.length : 0);
+    }
+
+    /** Maior seq que já saiu do buffer: ler a partir dela exige recomeçar. */
+    long trimmedThrough() {
+        lock.lock();
+        try {
+            return trimmedThrough;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Até {@code max} registros duráveis com seq maior que {@code afterSeq},
+     * esperando até {@code waitNanos} se ainda não houver nenhum; null se
+     * algum deles já saiu do buffer.
+     */
+    OperationLog.Record[] read(long afterSeq, int max, long waitNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + waitNanos;
+        lock.lock();
+        try {
+            while (true) {
+                if (afterSeq < trimmedThrough) {
+                    return null;
+                }
+                long durable = log.durableSeq();
+                List<OperationLog.Record> records = new ArrayList<>();
+                if (head < buffer.size()) {
+                    long firstSeq = buffer.get(head).seq;
+                    long from = Math.max(afterSeq + 1, firstSeq);
+                    for (int i = head + (int) (from - firstSeq); i < buffer.size() && records.size() < max; i++) {
+                        OperationLog.Record record = buffer.get(i);
+                        if (record.seq > durable) {
+                            break;
+                        }
+                        records.add(record);
+                    }
+                }
+                long remaining = deadline - System.nanoTime();
+                if (!records.isEmpty() || remaining <= 0) {
+                    return records.toArray(new OperationLog.Record[0]);
+                }
+                // A seq durável avança sem aviso, então a espera é em fatias curtas
+                arrived.awaitNanos(Math.min(remaining, POLL_SLICE_NANOS));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Lista de inteiros num arquivo mapeado em memória: os segmentos são páginas
+ * do arquivo, então a lista pode passar da RAM (o sistema operacional
+ * descarrega as páginas frias) e não ocupa o heap.
+ *
+ * Formato: uma página de cabeçalho (magic, versão, chunkShift, marca de
+ * fechamento limpo, tamanho, seq da última operação) seguida dos segmentos,
+ * em ordem nativa de bytes. O conteúdo só é reaproveitado ao reabrir se o
+ * arquivo foi fechado de forma limpa; depois de uma queda ele é descartado e
+ * a lista volta do snapshot e do WAL, que continuam sendo a fonte da verdade.
+ *
+ * O arquivo só fica aberto enquanto mapeia ou fecha: o mapeamento vale sem o
+ * FileChannel, então milhares de listas não prendem milhares de descritores.
+ */
+public class MappedIntList extends BufferIntList {
+    private static final int MAGIC = 0x524C4D49; // "RLMI"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4096;
+    private static final int CLEAN = 12;
+    private static final int SIZE = 16;
+    private static final int LAST_SEQ = 24;
+
+    private final Path file;
+    private final MappedByteBuffer header;
+    private final long persistedSeq;
+    private volatile boolean closed;
+
+    public MappedIntList(Path file, int chunkShift) {
+        super(chunkShift);
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            boolean existed = channel.size() >= HEADER_BYTES;
+            this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            if (existed && header.getInt(0) == MAGIC && header.getInt(4) == VERSION
+                    && header.getInt(8) == chunkShift && header.getInt(CLEAN) == 1) {
+                size = header.getInt(SIZE);
+                persistedSeq = header.getLong(LAST_SEQ);
+                mapExisting(channel);
+            } else {
+                if (existed) {
+                    System.err.printf("⚠️ %s não foi fechado de forma limpa: conteúdo descartado%n", file);
+                    channel.truncate(HEADER_BYTES);
+                }
+                header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, chunkShift);
+                persistedSeq = -1;
+            }
+            // Aberto: uma queda a partir daqui invalida o conteúdo
+            header.putInt(CLEAN, 0);
+            header.force();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Falha ao abrir a lista mapeada " + file, e);
+        }
+    }
+
+    @Override
+    protected IntBuffer allocate(int c, int minCapacity) {
+        try {
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+            try (FileChannel channel = open()) {
+                return map(channel, c);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Falha ao mapear segmento de " + file, e);
+        }
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private IntBuffer map(FileChannel channel, int c) throws IOException {
+        long bytes = 4L * chunkSize;
+        return channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + c * bytes, bytes)
+                .order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    @Override
+    public long persistedSeq() {
+        return persistedSeq;
+    }
+
+    // Mapeia os segmentos já gravados; as páginas só são lidas quando acessadas
+    private void mapExisting(FileChannel channel) throws IOException {
+        int used = size == 0 ? 0 : ((size - 1) >>> chunkShift) + 1;
+        chunks = Arrays.copyOf(chunks, Math.max(chunks.length, used));
+        for (int c = 0; c < used; c++) {
+            chunks[c] = map(channel, c);
+        }
+    }
+
+    @Override
+    public void close(long lastSeq) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try (FileChannel channel = open()) {
+            // fsync do arquivo também grava as páginas alteradas pelo mapeamento
+            channel.force(false);
+            int used = size == 0 ? 0 : ((size - 1) >>> chunkShift) + 1;
+            channel.truncate(HEADER_BYTES + 4L * chunkSize * used);
+            header.putInt(SIZE, size).putLong(LAST_SEQ, lastSeq);
+            header.force();
+            header.putInt(CLEAN, 1);
+            header.force();
+        } catch (IOException e) {
+            System.err.printf("❌ Falha ao fechar a lista mapeada %s: %s%n", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Lista de inteiros em memória direta (ByteBuffer.allocateDirect), fora do
+ * heap: uma lista de centenas de milhões de valores não aumenta o trabalho
+ * do GC, que só enxerga o diretório de segmentos. Como no IntList, só o
+ * primeiro segmento cresce por cópia, então listas pequenas ocupam pouco.
+ *
+ * A memória de um segmento liberado volta ao sistema quando o GC recolhe o
+ * buffer; o total fica limitado por -XX:MaxDirectMemorySize.
+ */
+public class OffHeapIntList extends BufferIntList {
+    private static final int INITIAL_CAPACITY = 16;
+
+    public OffHeapIntList() {
+        this(IntList.DEFAULT_CHUNK_SHIFT);
+    }
+
+    public OffHeapIntList(int chunkShift) {
+        super(chunkShift);
+    }
+
+    @Override
+    protected IntBuffer allocate(int c, int minCapacity) {
+        int capacity = chunkSize;
+        if (c == 0) {
+            IntBuffer current = chunks[0];
+            capacity = Math.max(INITIAL_CAPACITY, current != null ? current.capacity() * 2 : 0);
+            while (capacity < minCapacity) {
+                capacity *= 2;
+            }
+            capacity = Math.min(capacity, chunkSize);
+        }
+        return ByteBuffer.allocateDirect(4 * capacity).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+}
@@ -0,0 +1,566 @@
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Log binário append-only (WAL) das operações de escrita.
+ *
+ * Cada registro é [int tamanho][int crc32c][corpo], com corpo
+ * [byte tipo][long seq][short tamId][id UTF-8][payload]. O log fica em
+ * segmentos {@code <primeiraSeq>.wal} dentro do diretório; a cada abertura
+ * um novo segmento é iniciado, então um final corrompido por queda nunca
+ * recebe novos registros. O Snapshotter também troca de segmento (rotate)
+ * antes de cada snapshot e apaga os segmentos que o snapshot já cobre.
+ *
+ * Modos de durabilidade:
+ * - SYNC: cada operação é escrita e sincronizada (fsync) individualmente;
+ * - GROUP: uma thread de escrita junta as operações que chegam durante a
+ *   janela de group commit e faz um único fsync para todas, e cada chamada
+ *   espera o fsync do seu registro;
+ * - ASYNC: como GROUP, mas as chamadas não esperam o fsync.
+ */
+public class OperationLog implements AutoCloseable {
+    public enum Durability { SYNC, GROUP, ASYNC }
+
+    public static final byte APPEND = 1;
+    public static final byte APPEND_ALL = 2;
+    public static final byte REMOVE = 3;
+
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+    public static final int MAX_LIST_ID_BYTES = 0xFFFF;
+
+    private final Path dir;
+    private final Durability durability;
+    private final long groupWindowNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Serializa a escrita no canal: a thread de escrita o segura fora de 'lock'
+    // enquanto escreve um lote; rotate() o toma para trocar de segmento.
+    private final ReentrantLock ioLock = new ReentrantLock();
+    private final Condition pendingWritten = lock.newCondition();
+    private final Condition durableAdvanced = lock.newCondition();
+
+    private FileChannel channel;
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    private long nextSeq;
+    private long pendingSeq;   // maior seq já colocada no buffer
+    private volatile long durableSeq;
+    private IOException failure;
+    private boolean closed;
+    private Thread writer;
+    private volatile Listener[] listeners = new Listener[0];
+
+    /** Um registro do log: lido na recuperação ou enviado às réplicas. */
+    public static final class Record implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        public final byte type;
+        public final long seq;
+        public final String listId;
+        public final int[] values;  // APPEND/APPEND_ALL
+        public final int count;     // REMOVE
+
+        Record(byte type, long seq, String listId, int[] values, int count) {
+            this.type = type;
+            this.seq = seq;
+            this.listId = listId;
+            this.values = values;
+            this.count = count;
+        }
+    }
+
+    public interface RecordHandler {
+        void apply(Record record);
+    }
+
+    /**
+     * Recebe cada registro no momento em que ganha sua seq, ainda sob o lock
+     * do log (portanto em ordem de seq). Não deve bloquear.
+     */
+    public interface Listener {
+        void logged(Record record);
+    }
+
+    public OperationLog(Path dir, Durability durability, long groupWindowMicros) throws IOException {
+        this.dir = dir;
+        this.durability = durability;
+        this.groupWindowNanos = TimeUnit.MICROSECONDS.toNanos(groupWindowMicros);
+        Files.createDirectories(dir);
+    }
+
+    /** Cria o log a partir das propriedades de sistema remotelist.*. */
+    public static OperationLog fromSystemProperties() throws IOException {
+        Path dir = Path.of(System.getProperty("remotelist.dataDir", "data"), "wal");
+        Durability durability = Durability.valueOf(
+                System.getProperty("remotelist.wal.durability", "GROUP").toUpperCase());
+        long windowMicros = Long.getLong("remotelist.wal.groupWindowMicros", 500);
+        return new OperationLog(dir, durability, windowMicros);
+    }
+
+    public Durability durability() {
+        return durability;
+    }
+
+    /** Acrescenta um ouvinte de registros novos (replicação, fluxo de mudanças). */
+    public void addListener(Listener listener) {
+        lock.lock();
+        try {
+            Listener[] current = listeners;
+            Listener[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = listener;
+            listeners = updated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Maior seq já escrita e sincronizada em disco. */
+    public long durableSeq() {
+        return durableSeq;
+    }
+
+    /**
+     * Reaplica todos os registros válidos dos segmentos existentes, em ordem,
+     * e abre um novo segmento para escrita. Deve ser chamado uma única vez,
+     * antes de qualquer append. {@code minLastSeq} é a maior seq já coberta
+     * por um snapshot, para que a numeração nunca volte atrás.
+     */
+    public long recover(RecordHandler handler, long minLastSeq) throws IOException {
+        long lastSeq = 0;
+        long count = 0;
+        for (Path segment : segments()) {
+            try (FileChannel in = FileChannel.open(segment, StandardOpenOption.READ)) {
+                ByteBuffer buf = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+                Record record;
+                while ((record = readRecord(buf)) != null) {
+                    if (record.seq > lastSeq) {
+                        handler.apply(record);
+                        lastSeq = record.seq;
+                        count++;
+                    }
+                }
+                if (buf.hasRemaining()) {
+                    System.out.printf("⚠️ WAL: final inválido em %s ignorado (%d bytes)%n",
+                            segment.getFileName(), buf.remaining());
+                }
+            }
+        }
+        System.out.printf("WAL: %d operações reaplicadas (última seq %d)%n", count, lastSeq);
+        lastSeq = Math.max(lastSeq, minLastSeq);
+        start(lastSeq + 1);
+        return lastSeq;
+    }
+
+    private void start(long firstSeq) throws IOException {
+        nextSeq = firstSeq;
+        pendingSeq = firstSeq - 1;
+        durableSeq = firstSeq - 1;
+        channel = FileChannel.open(dir.resolve(segmentName(firstSeq)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        syncDirectory(dir);
+        if (durability != Durability.SYNC) {
+            writer = new Thread(this::writerLoop, "wal-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    public long logAppend(String listId, int value) {
+        return log(APPEND, listId, value, null);
+    }
+
+    /**
+     * Listas maiores que um registro cabe viram vários APPEND_ALL seguidos,
+     * com seqs contíguas; retorna a seq do último.
+     */
+    public long logAppendAll(String listId, int[] values) {
+        return log(APPEND_ALL, listId, 0, values);
+    }
+
+    public long logRemove(String listId, int count) {
+        return log(REMOVE, listId, count, null);
+    }
+
+    /** Lança IllegalArgumentException se o listId não couber no campo de tamanho (short) dos registros. */
+    public static byte[] encodeListId(String listId) {
+        byte[] id = listId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > MAX_LIST_ID_BYTES) {
+            throw new IllegalArgumentException("listId longo demais: " + id.length + " bytes em UTF-8 (máximo "
+                    + MAX_LIST_ID_BYTES + ")");
+        }
+        return id;
+    }
+
+    /**
+     * Coloca o registro no log e retorna sua seq. Chamado pelos escritores
+     * ainda dentro do lock da lista, para que a ordem das seqs de uma lista
+     * seja a ordem em que as operações foram aplicadas.
+     */
+    private long log(byte type, String listId, int value, int[] values) {
+        byte[] id = encodeListId(listId);
+        // Mesmo limite que readRecord aplica na recuperação
+        int perRecord = (MAX_RECORD_BYTES - (1 + 8 + 2 + id.length + 4)) / 4;
+        lock.lock();
+        try {
+            checkUsable();
+            long seq;
+            if (values == null) {
+                seq = put(type, listId, id, value, null, 0, 0);
+            } else {
+                int from = 0;
+                do {
+                    int n = Math.min(perRecord, values.length - from);
+                    seq = put(type, listId, id, 0, values, from, n);
+                    from += n;
+                } while (from < values.length);
+            }
+
+            if (durability == Durability.SYNC) {
+                flushPending();
+            } else {
+                pendingWritten.signal();
+            }
+            return seq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Sob 'lock': serializa um registro no buffer pendente e avisa os ouvintes
+    private long put(byte type, String listId, byte[] id, int value, int[] values, int from, int n) {
+        int payload = values == null ? 4 : 4 + 4 * n;
+        int bodyBytes = 1 + 8 + 2 + id.length + payload;
+        long seq = nextSeq++;
+        ensurePendingCapacity(HEADER_BYTES + bodyBytes);
+        int start = pending.position();
+        pending.putInt(bodyBytes).putInt(0);
+        pending.put(type).putLong(seq).putShort((short) id.length).put(id);
+        if (values == null) {
+            pending.putInt(value);
+        } else {
+            pending.putInt(n);
+            for (int i = from; i < from + n; i++) {
+                pending.putInt(values[i]);
+            }
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(pending.array(), start + HEADER_BYTES, bodyBytes);
+        pending.putInt(start + 4, (int) crc.getValue());
+        pendingSeq = seq;
+        Listener[] ls = listeners;
+        if (ls.length > 0) {
+            // Cópia dos valores: o array do chamador pode ser reutilizado depois
+            Record record = type == REMOVE ? new Record(type, seq, listId, null, value)
+                    : new Record(type, seq, listId, values == null ? new int[]{value}
+                            : Arrays.copyOfRange(values, from, from + n), values == null ? 1 : n);
+            for (Listener l : ls) {
+                l.logged(record);
+            }
+        }
+        return seq;
+    }
+
+    /**
+     * Espera até que {@code seq} esteja em disco, conforme o modo de
+     * durabilidade. Chamado fora do lock da lista.
+     */
+    public void awaitDurable(long seq) {
+        if (durability != Durability.ASYNC) {
+            awaitSynced(seq);
+        }
+    }
+
+    /** Espera até que {@code seq} esteja em disco, mesmo no modo ASYNC. */
+    public void awaitSynced(long seq) {
+        if (durableSeq >= seq) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (durableSeq < seq) {
+                checkUsable();
+                durableAdvanced.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Fecha o segmento atual e começa outro. Retorna a primeira seq do novo
+     * segmento: todo registro com seq menor está nos segmentos anteriores,
+     * já escrito e sincronizado.
+     */
+    public long rotate() throws IOException {
+        lock.lock();
+        try {
+            checkUsable();
+            ioLock.lock();
+            try {
+                // O que ainda estiver pendente pertence ao segmento antigo
+                flushPendingLocked();
+                channel.force(true);
+                channel.close();
+                channel = FileChannel.open(dir.resolve(segmentName(nextSeq)),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                syncDirectory(dir);
+                return nextSeq;
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            } finally {
+                ioLock.unlock();
+                durableAdvanced.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Apaga os segmentos cujos registros têm todos seq menor que {@code seq}. */
+    public void deleteSegmentsBefore(long seq) throws IOException {
+        List<Path> all = segments();
+        for (int i = 0; i < all.size(); i++) {
+            // Um segmento termina onde o próximo começa
+            boolean covered = i + 1 < all.size() && firstSeqOf(all.get(i + 1)) <= seq;
+            if (covered) {
+                Files.deleteIfExists(all.get(i));
+            }
+        }
+    }
+
+    public long lastSeq() {
+        lock.lock();
+        try {
+            return nextSeq - 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writerLoop() {
+        lock.lock();
+        try {
+            while (true) {
+                while (!closed && pending.position() == 0) {
+                    pendingWritten.awaitUninterruptibly();
+                }
+                if (pending.position() == 0) {
+                    return;
+                }
+                // Janela de group commit: deixa outras chamadas se juntarem ao mesmo fsync
+                if (!closed && groupWindowNanos > 0) {
+                    long deadline = System.nanoTime() + groupWindowNanos;
+                    long remaining;
+                    while ((remaining = deadline - System.nanoTime()) > 0
+                            && pending.position() < pending.capacity() / 2 && !closed) {
+                        try {
+                            pendingWritten.awaitNanos(remaining);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
+                    }
+                }
+                ByteBuffer batch = pending;
+                long batchSeq = pendingSeq;
+                pending = spare;
+                spare = null;
+                ioLock.lock();
+                lock.unlock();
+                IOException error = null;
+                try {
+                    batch.flip();
+                    while (batch.hasRemaining()) {
+                        channel.write(batch);
+                    }
+                    channel.force(false);
+                } catch (IOException e) {
+                    error = e;
+                } finally {
+                    ioLock.unlock();
+                    lock.lock();
+                }
+                batch.clear();
+                spare = batch;
+                if (error != null) {
+                    failure = error;
+                    ServerLog.error("WAL: falha de escrita: " + error.getMessage());
+                } else if (batchSeq > durableSeq) {
+                    // rotate() pode já ter sincronizado seqs posteriores
+                    durableSeq = batchSeq;
+                }
+                durableAdvanced.signalAll();
+                if (error != null) {
+                    return;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Modo SYNC: escreve e sincroniza o buffer pendente ainda sob o lock do log
+    private void flushPending() {
+        ioLock.lock();
+        try {
+            flushPendingLocked();
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException("Falha ao escrever no WAL", e);
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    // Chamado com 'lock' e 'ioLock' seguros
+    private void flushPendingLocked() throws IOException {
+        try {
+            pending.flip();
+            while (pending.hasRemaining()) {
+                channel.write(pending);
+            }
+            channel.force(false);
+            durableSeq = pendingSeq;
+        } finally {
+            pending.clear();
+        }
+    }
+
+    private void ensurePendingCapacity(int bytes) {
+        if (pending.remaining() < bytes) {
+            int capacity = pending.capacity();
+            while (capacity - pending.position() < bytes) {
+                capacity *= 2;
+            }
+            ByteBuffer bigger = ByteBuffer.allocate(capacity);
+            pending.flip();
+            bigger.put(pending);
+            pending = bigger;
+        }
+    }
+
+    private void checkUsable() {
+        if (failure != null) {
+            throw new UncheckedIOException("WAL indisponível após falha de escrita", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("WAL fechado");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        Thread w;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pendingWritten.signalAll();
+            w = writer;
+        } finally {
+            lock.unlock();
+        }
+        if (w != null) {
+            try {
+                w.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (channel != null) {
+            channel.force(true);
+            channel.close();
+        }
+    }
+
+    /**
+     * fsync do diretório: torna duráveis as entradas criadas, renomeadas ou
+     * apagadas nele (o fsync de um arquivo não cobre o nome dele).
+     */
+    static void syncDirectory(Path dir) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> result = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(p -> p.getFileName().toString().endsWith(".wal"))
+                    .sorted()
+                    .forEach(result::add);
+        }
+        return result;
+    }
+
+    private static String segmentName(long firstSeq) {
+        return String.format("%020d.wal", firstSeq);
+    }
+
+    private static long firstSeqOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - ".wal".length()));
+    }
+
+    /** Lê um registro do buffer, ou null se o restante estiver incompleto/corrompido. */
+    private static Record readRecord(ByteBuffer buf) {
+        if (buf.remaining() < HEADER_BYTES) {
+            return null;
+        }
+        int start = buf.position();
+        int bodyBytes = buf.getInt(start);
+        int crcValue = buf.getInt(start + 4);
+        if (bodyBytes < 15 || bodyBytes > MAX_RECORD_BYTES || buf.remaining() < HEADER_BYTES + bodyBytes) {
+            return null;
+        }
+        CRC32C crc = new CRC32C();
+        ByteBuffer body = buf.duplicate();
+        body.position(start + HEADER_BYTES).limit(start + HEADER_BYTES + bodyBytes);
+        crc.update(body.duplicate());
+        if ((int) crc.getValue() != crcValue) {
+            return null;
+        }
+        try {
+            byte type = body.get();
+            long seq = body.getLong();
+            byte[] id = new byte[body.getShort() & 0xFFFF];
+            body.get(id);
+            String listId = new String(id, StandardCharsets.UTF_8);
+            Record record;
+            if (type == APPEND) {
+                record = new Record(type, seq, listId, new int[]{body.getInt()}, 1);
+            } else if (type == APPEND_ALL) {
+                int[] values = new int[body.getInt()];
+                body.asIntBuffer().get(values);
+                record = new Record(type, seq, listId, values, values.length);
+            } else if (type == REMOVE) {
+                record = new Record(type, seq, listId, null, body.getInt());
+            } else {
+                return null;
+            }
+            buf.position(start + HEADER_BYTES + bodyBytes);
+            return record;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Sequência imutável de inteiros comprimida em quadros de {@link #FRAME}
+ * valores, cada um empacotado em bits com a largura que precisar:
+ * - referência (frame of reference): valor - mínimo do quadro;
+ * - delta: diferença para o anterior em zigzag (pequenas, positivas ou
+ *   negativas, ficam pequenas), boa para sequências crescentes.
+ * Cada quadro usa a que der menos bits; valores aleatórios de 32 bits ficam
+ * com pouco mais que os 4 bytes originais.
+ *
+ * O índice dos quadros (base, largura e posição de cada um, juntos num long)
+ * mantém o get direto: um deslocamento de bits na referência e no máximo
+ * FRAME - 1 somas num quadro delta, tocando duas linhas de cache.
+ *
+ * O mesmo formato serve em memória (segmentos frios do IntList), nos
+ * snapshots e nas respostas de getRange do protocolo binário:
+ * [int n] e, por quadro, [byte largura][int base][palavras de 64 bits].
+ */
+final class PackedInts {
+    static final int FRAME = 64;
+    private static final int FRAME_SHIFT = 6;
+    private static final int BITS = 0x3F;
+    private static final int DELTA = 0x40;
+    private static final int WIDTH_BITS = 7;
+    /** Maior quantidade de valores: a posição de um quadro ocupa 25 bits do índice. */
+    static final int MAX_SIZE = 1 << 25;
+
+    private final int size;
+    private final long[] words;
+    // Por quadro: [base: 32 bits][primeira palavra: 25 bits][largura: 7 bits]. A base é
+    // o mínimo do quadro (referência) ou o primeiro valor (delta)
+    private final long[] frames;
+
+    private PackedInts(int size, long[] words, long[] frames) {
+        this.size = size;
+        this.words = words;
+        this.frames = frames;
+    }
+
+    private static long frame(int base, int offset, int width) {
+        return (long) base << 32 | (long) offset << WIDTH_BITS | width;
+    }
+
+    private static int base(long frame) {
+        return (int) (frame >> 32);
+    }
+
+    private static int offset(long frame) {
+        return (int) frame >>> WIDTH_BITS;
+    }
+
+    private static int width(long frame) {
+        return (int) frame & ((1 << WIDTH_BITS) - 1);
+    }
+
+    /** Comprime values[from, to); no máximo {@link #MAX_SIZE} valores. */
+    static PackedInts pack(int[] values, int from, int to) {
+        int n = to - from;
+        if (n > MAX_SIZE) {
+            throw new IllegalArgumentException("Sequência longa demais para comprimir: " + n);
+        }
+        int count = (n + FRAME - 1) >>> FRAME_SHIFT;
+        long[] frames = new long[count];
+        int totalWords = 0;
+        for (int f = 0; f < count; f++) {
+            int start = from + (f << FRAME_SHIFT);
+            int length = Math.min(FRAME, to - start);
+            int min = values[start];
+            int max = min;
+            int deltas = 0;  // OR dos deltas em zigzag: a largura do maior
+            for (int i = start + 1; i < start + length; i++) {
+                int v = values[i];
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+                deltas |= zigzag(v - values[i - 1]);
+            }
+            int forBits = bitsFor(max - min);  // sem sinal: cabe em 32 bits
+            int deltaBits = bitsFor(deltas);
+            if (deltaBits < forBits) {
+                frames[f] = frame(values[start], totalWords, deltaBits | DELTA);
+                totalWords += wordsFor(length, deltaBits);
+            } else {
+                frames[f] = frame(min, totalWords, forBits);
+                totalWords += wordsFor(length, forBits);
+            }
+        }
+
+        long[] words = new long[totalWords];
+        for (int f = 0; f < count; f++) {
+            int width = width(frames[f]);
+            int bits = width & BITS;
+            if (bits == 0) {
+                continue;
+            }
+            int start = from + (f << FRAME_SHIFT);
+            int length = Math.min(FRAME, to - start);
+            long bitPos = (long) offset(frames[f]) << 6;
+            if ((width & DELTA) != 0) {
+                bitPos += bits;  // o primeiro delta é sempre 0
+                for (int i = start + 1; i < start + length; i++, bitPos += bits) {
+                    put(words, bitPos, bits, zigzag(values[i] - values[i - 1]));
+                }
+            } else {
+                int base = base(frames[f]);
+                for (int i = start; i < start + length; i++, bitPos += bits) {
+                    put(words, bitPos, bits, values[i] - base);
+                }
+            }
+        }
+        return new PackedInts(n, words, frames);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(int index) {
+        long frame = frames[index >>> FRAME_SHIFT];
+        int i = index & (FRAME - 1);
+        int width = width(frame);
+        int bits = width & BITS;
+        long bitPos = (long) offset(frame) << 6;
+        if ((width & DELTA) == 0) {
+            return base(frame) + take(words, bitPos + (long) i * bits, bits);
+        }
+        int v = base(frame);
+        if (bits == 0) {
+            return v;
+        }
+        long mask = -1L >>> (64 - bits);
+        for (int j = 1; j <= i; j++) {
+            bitPos += bits;
+            int w = (int) (bitPos >>> 6);
+            int shift = (int) bitPos & 63;
+            long x = words[w] >>> shift;
+            if (shift + bits > 64) {
+                x |= words[w + 1] << (64 - shift);
+            }
+            v += unzigzag((int) (x & mask));
+        }
+        return v;
+    }
+
+    /** Descomprime [from, to) em {@code out} a partir de {@code outOffset}. */
+    void copyTo(int from, int to, int[] out, int outOffset) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Intervalo [" + from + ", " + to + ") fora do tamanho " + size);
+        }
+        while (from < to) {
+            int f = from >>> FRAME_SHIFT;
+            int skip = from & (FRAME - 1);
+            int n = Math.min(FRAME - skip, to - from);
+            long frame = frames[f];
+            int width = width(frame);
+            int bits = width & BITS;
+            int base = base(frame);
+            long bitPos = ((long) offset(frame) << 6) + (long) skip * bits;
+            if ((width & DELTA) == 0) {
+                for (int i = 0; i < n; i++, bitPos += bits) {
+                    out[outOffset + i] = base + take(words, bitPos, bits);
+                }
+            } else {
+                // Soma os deltas desde o início do quadro até o primeiro pedido
+                int v = skip == 0 ? base : get(from);
+                out[outOffset] = v;
+                bitPos += bits;
+                for (int i = 1; i < n; i++, bitPos += bits) {
+                    v += unzigzag(take(words, bitPos, bits));
+                    out[outOffset + i] = v;
+                }
+            }
+            from += n;
+            outOffset += n;
+        }
+    }
+
+    int[] toArray() {
+        int[] out = new int[size];
+        copyTo(0, size, out, 0);
+        return out;
+    }
+
+    /** Bytes ocupados no heap (aproximado). */
+    long memoryBytes() {
+        return 16 + 2 * 16L + 8L * words.length + 8L * frames.length;
+    }
+
+    /** Tamanho do formato serializado (ver {@link #writeTo}). */
+    int encodedBytes() {
+        return 4 + 5 * frames.length + 8 * words.length;
+    }
+
+    void writeTo(ByteBuffer buf) {
+        buf.putInt(size);
+        for (int f = 0; f < frames.length; f++) {
+            buf.put((byte) width(frames[f])).putInt(base(frames[f]));
+            int end = f + 1 < frames.length ? offset(frames[f + 1]) : words.length;
+            for (int w = offset(frames[f]); w < end; w++) {
+                buf.putLong(words[w]);
+            }
+        }
+    }
+
+    static PackedInts readFrom(ByteBuffer buf) {
+        int n = buf.getInt();
+        if (n < 0 || n > MAX_SIZE) {
+            throw new IllegalArgumentException("Tamanho inválido: " + n);
+        }
+        int count = (n + FRAME - 1) >>> FRAME_SHIFT;
+        long[] frames = new long[count];
+        long[] words = new long[0];
+        int totalWords = 0;
+        for (int f = 0; f < count; f++) {
+            int width = buf.get();
+            int bits = width & BITS;
+            if (bits > 32 || (width & ~(BITS | DELTA)) != 0) {
+                throw new IllegalArgumentException("Largura inválida: " + width);
+            }
+            frames[f] = frame(buf.getInt(), totalWords, width);
+            int used = wordsFor(Math.min(FRAME, n - (f << FRAME_SHIFT)), bits);
+            if (totalWords + used > words.length) {
+                words = Arrays.copyOf(words, Math.max(totalWords + used, 2 * words.length));
+            }
+            for (int w = 0; w < used; w++) {
+                words[totalWords++] = buf.getLong();
+            }
+        }
+        return new PackedInts(n, totalWords == words.length ? words : Arrays.copyOf(words, totalWords), frames);
+    }
+
+    private static int wordsFor(int length, int bits) {
+        return (int) (((long) length * bits + 63) >>> 6);
+    }
+
+    private static int bitsFor(int unsigned) {
+        return 32 - Integer.numberOfLeadingZeros(unsigned);
+    }
+
+    private static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    private static int unzigzag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static void put(long[] words, long bitPos, int bits, int value) {
+        int w = (int) (bitPos >>> 6);
+        int shift = (int) bitPos & 63;
+        long v = value & 0xFFFFFFFFL;
+        words[w] |= v << shift;
+        if (shift + bits > 64) {
+            words[w + 1] |= v >>> (64 - shift);
+        }
+    }
+
+    private static int take(long[] words, long bitPos, int bits) {
+        if (bits == 0) {
+            return 0;
+        }
+        int w = (int) (bitPos >>> 6);
+        int shift = (int) bitPos & 63;
+        long v = words[w] >>> shift;
+        if (shift + bits > 64) {
+            v |= words[w + 1] << (64 - shift);
+        }
+        return (int) (v & (-1L >>> (64 - bits)));
+    }
+}
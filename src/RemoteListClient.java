@@ -1,8 +1,14 @@
 import java.rmi.Naming;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class RemoteListClient {
+    private static final int RANGE_PAGE = 10_000;
+    private static final int LIST_PAGE = 1000;
     private static RemoteListInterface remoteList;
 
     public static void main(String[] args) {
@@ -10,6 +16,12 @@ public class RemoteListClient {
             // Conectar ao servidor
             System.out.println("Conectando ao servidor RemoteList...");
             remoteList = (RemoteListInterface) Naming.lookup("//localhost/RemoteList");
+            // Cache local com invalidação pelo servidor (-Dremotelist.cache=true)
+            CachingListClient cache = null;
+            if (Boolean.getBoolean("remotelist.cache")) {
+                cache = new CachingListClient(remoteList);
+                remoteList = cache;
+            }
             System.out.println("✅ Conectado ao servidor!\n");
 
             // Menu interativo
@@ -58,6 +70,10 @@ public class RemoteListClient {
                 }
             }
 
+            if (cache != null) {
+                System.out.printf("Cache: %d acertos, %d faltas%n", cache.hits(), cache.misses());
+                cache.close();
+            }
             System.out.println("Cliente finalizado.");
             scanner.close();
 
@@ -85,14 +101,16 @@ public class RemoteListClient {
 
         // Limpar dados de teste anteriores (se existirem)
         try {
-            String[] ids = remoteList.listIds();
-            for (String id : ids) {
-                if (id.startsWith("demo_")) {
-                    while (remoteList.size(id) > 0) {
-                        remoteList.remove(id);
+            String cursor = null;
+            do {
+                RemoteListInterface.ListPage page = remoteList.scanListIds("demo_", cursor, LIST_PAGE);
+                for (int i = 0; i < page.ids.length; i++) {
+                    if (page.sizes[i] > 0) {
+                        remoteList.removeN(page.ids[i], page.sizes[i]);
                     }
                 }
-            }
+                cursor = page.next;
+            } while (cursor != null);
         } catch (Exception e) {
             // Ignorar erros de limpeza
         }
@@ -169,49 +187,42 @@ public class RemoteListClient {
         System.out.println("\n⚡ === TESTE DE CONCORRÊNCIA ===");
 
         String testListId = "concurrency_test";
-        int numThreads = 5;
-        int operationsPerThread = 10;
-
-        System.out.printf("🧵 Criando %d threads, cada uma fazendo %d operações...\n",
-                numThreads, operationsPerThread);
-
-        // Array para armazenar threads
-        Thread[] threads = new Thread[numThreads];
-
-        // Criar e iniciar threads
-        for (int i = 0; i < numThreads; i++) {
-            final int threadId = i;
-            threads[i] = new Thread(() -> {
+        int numClients = 5;
+        int operationsPerClient = 1000;
+        int initialSize = remoteList.size(testListId);
+
+        // Clientes lógicos em uma única thread: cada append devolve um futuro
+        // e o cliente assíncrono junta as chamadas em lotes pelo protocolo binário
+        int port = Integer.getInteger("remotelist.binary.port", 7070);
+        System.out.printf("🧵 %d clientes lógicos, cada um fazendo %d appends assíncronos (porta %d)...\n",
+                numClients, operationsPerClient, port);
+
+        long start = System.nanoTime();
+        int failures = 0;
+        try (BinaryClient connection = new BinaryClient("localhost", port);
+             AsyncListClient client = new AsyncListClient(connection)) {
+            List<CompletableFuture<Boolean>> results = new ArrayList<>();
+            for (int j = 0; j < operationsPerClient; j++) {
+                for (int clientId = 0; clientId < numClients; clientId++) {
+                    results.add(client.append(testListId, clientId * 100_000 + j));
+                }
+            }
+            client.flush();
+            for (CompletableFuture<Boolean> result : results) {
                 try {
-                    RemoteListInterface localRemoteList =
-                            (RemoteListInterface) Naming.lookup("//localhost/RemoteList");
-
-                    for (int j = 0; j < operationsPerThread; j++) {
-                        int value = threadId * 100 + j;
-                        localRemoteList.append(testListId, value);
-                        System.out.printf("Thread %d: adicionou %d\n", threadId, value);
-
-                        // Pequena pausa para simular operações reais
-                        Thread.sleep(100);
-                    }
-
-                } catch (Exception e) {
-                    System.err.printf("Erro na thread %d: %s\n", threadId, e.getMessage());
+                    result.join();
+                } catch (CompletionException e) {
+                    failures++;
                 }
-            });
-
-            threads[i].start();
-        }
-
-        // Aguardar todas as threads terminarem
-        for (Thread thread : threads) {
-            thread.join();
+            }
         }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int total = numClients * operationsPerClient;
+        System.out.printf("⏱️ %d appends em %.3f s (%.0f ops/s), %d falhas\n",
+                total, seconds, total / seconds, failures);
 
         System.out.println("\n📊 Resultado do teste de concorrência:");
-        showListContents(testListId);
-
-        int expectedSize = numThreads * operationsPerThread;
+        int expectedSize = initialSize + total - failures;
         int actualSize = remoteList.size(testListId);
 
         if (actualSize == expectedSize) {
@@ -300,8 +311,10 @@ public class RemoteListClient {
                         break;
 
                     case "list":
-                        String[] ids = remoteList.listIds();
-                        System.out.println("📝 Listas existentes: " + Arrays.toString(ids));
+                        // Só a primeira página: com milhões de listas a resposta inteira não cabe na tela
+                        RemoteListInterface.ListPage page = remoteList.scanListIds("", null, LIST_PAGE);
+                        System.out.println("📝 Listas existentes: " + Arrays.toString(page.ids)
+                                + (page.next != null ? " ..." : ""));
                         break;
 
                     case "exit":
@@ -325,44 +338,52 @@ public class RemoteListClient {
     private static void showCurrentState() throws Exception {
         System.out.println("\n📊 === ESTADO ATUAL DO SERVIDOR ===");
 
-        String[] ids = remoteList.listIds();
+        // Página a página, com os tamanhos na mesma resposta
+        int total = 0;
+        String cursor = null;
+        do {
+            RemoteListInterface.ListPage page = remoteList.scanListIds("", cursor, LIST_PAGE);
+            total += page.ids.length;
+            cursor = page.next;
+            for (int n = 0; n < page.ids.length; n++) {
+                showListSummary(page.ids[n], page.sizes[n]);
+            }
+        } while (cursor != null);
 
-        if (ids.length == 0) {
+        if (total == 0) {
             System.out.println("🔍 Nenhuma lista encontrada no servidor.");
             return;
         }
 
-        System.out.printf("📝 Total de listas: %d\n\n", ids.length);
+        System.out.printf("\n📝 Total de listas: %d\n", total);
+        System.out.println("\n✅ Estado atual exibido!");
+    }
 
-        for (String listId : ids) {
-            try {
-                int size = remoteList.size(listId);
-                System.out.printf("📋 Lista '%s': %d elementos\n", listId, size);
-
-                // Mostrar alguns elementos se a lista não estiver vazia
-                if (size > 0) {
-                    System.out.print("   Conteúdo: [");
-
-                    // Mostrar até 10 elementos
-                    int maxShow = Math.min(size, 10);
-                    for (int i = 0; i < maxShow; i++) {
-                        if (i > 0) System.out.print(", ");
-                        System.out.print(remoteList.get(listId, i));
-                    }
+    private static void showListSummary(String listId, int size) {
+        try {
+            System.out.printf("📋 Lista '%s': %d elementos\n", listId, size);
 
-                    if (size > 10) {
-                        System.out.print(", ... (+" + (size - 10) + " elementos)");
-                    }
+            // Mostrar alguns elementos se a lista não estiver vazia
+            if (size > 0) {
+                System.out.print("   Conteúdo: [");
 
-                    System.out.println("]");
+                // Mostrar até 10 elementos, buscados em uma única chamada
+                int[] values = remoteList.getRange(listId, 0, 10);
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) System.out.print(", ");
+                    System.out.print(values[i]);
                 }
 
-            } catch (Exception e) {
-                System.out.printf("   ❌ Erro ao acessar lista '%s': %s\n", listId, e.getMessage());
+                if (size > 10) {
+                    System.out.print(", ... (+" + (size - 10) + " elementos)");
+                }
+
+                System.out.println("]");
             }
-        }
 
-        System.out.println("\n✅ Estado atual exibido!");
+        } catch (Exception e) {
+            System.out.printf("   ❌ Erro ao acessar lista '%s': %s\n", listId, e.getMessage());
+        }
     }
 
     private static void showListContents(String listId) throws Exception {
@@ -376,9 +397,13 @@ public class RemoteListClient {
             }
 
             System.out.print("   [");
-            for (int i = 0; i < size; i++) {
-                if (i > 0) System.out.print(", ");
-                System.out.print(remoteList.get(listId, i));
+            // Busca em páginas: uma chamada remota a cada RANGE_PAGE elementos
+            for (int from = 0; from < size; from += RANGE_PAGE) {
+                int[] values = remoteList.getRange(listId, from, Math.min(size, from + RANGE_PAGE));
+                for (int i = 0; i < values.length; i++) {
+                    if (from + i > 0) System.out.print(", ");
+                    System.out.print(values[i]);
+                }
             }
             System.out.println("]");
 
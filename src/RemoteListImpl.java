@@ -1,57 +1,617 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.IntBuffer;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 
-public class RemoteListImpl extends UnicastRemoteObject implements RemoteListInterface {
-    private final ConcurrentHashMap<String, List<Integer>> lists;
+public class RemoteListImpl extends UnicastRemoteObject implements RemoteListInterface, InvalidationSource,
+        ChangeStreamSource {
+    private static final int MAX_LIST_PAGE = 10_000;
+    private static final long RECOVERY_BATCH_VALUES = 4 << 20;  // valores reaplicados por lote na recuperação
+
+    private final ConcurrentHashMap<String, ConcurrentIntList> lists;
+    private final ConcurrentSkipListSet<String> sortedIds = new ConcurrentSkipListSet<>();  // para scanListIds
+    private final OperationLog log;
+    private final ServerMetrics metrics;
+    private final StorageBackend storage;
+    private final InvalidationHub invalidations = new InvalidationHub();
+    private final HandleTable<ConcurrentIntList> handles = new HandleTable<>();  // ver open
+    private AdmissionControl admission;  // null quando desligado; definido antes de publicar o serviço
+    private ChangeFeed changeFeed;  // criado na primeira assinatura
 
     public RemoteListImpl() throws RemoteException {
+        this(null);
+    }
+
+    public RemoteListImpl(OperationLog log) throws RemoteException {
+        this(log, StorageBackend.heap());
+    }
+
+    public RemoteListImpl(OperationLog log, StorageBackend storage) throws RemoteException {
         super();
         this.lists = new ConcurrentHashMap<>();
+        this.log = log;
+        this.metrics = new ServerMetrics(lists);
+        this.storage = storage;
+        // Listas que o armazenamento guardou entram antes do snapshot e do WAL
+        for (String listId : storage.persistedLists()) {
+            listFor(listId);
+        }
         System.out.println("RemoteListImpl inicializado!");
     }
 
+    /**
+     * Reaplica o WAL sobre o estado carregado do snapshot; chamado antes de
+     * registrar o serviço. {@code snapshotSeq} é a maior seq do snapshot.
+     */
+    public void recover(long snapshotSeq) throws IOException {
+        if (log == null) {
+            return;
+        }
+        // Lê o final do log agrupando por lista, na ordem das seqs, e reaplica
+        // as listas em paralelo: operações de listas diferentes são independentes.
+        // Em lotes de até RECOVERY_BATCH_VALUES valores, para que a memória da
+        // recuperação não cresça com o tamanho do log.
+        Map<String, List<OperationLog.Record>> byList = new HashMap<>();
+        long[] batched = new long[1];
+        log.recover(record -> {
+            byList.computeIfAbsent(record.listId, k -> new ArrayList<>()).add(record);
+            batched[0] += record.values != null ? record.values.length : 1;
+            if (batched[0] >= RECOVERY_BATCH_VALUES) {
+                replay(byList);
+                batched[0] = 0;
+            }
+        }, snapshotSeq);
+        replay(byList);
+    }
+
+    private void replay(Map<String, List<OperationLog.Record>> byList) {
+        byList.entrySet().parallelStream().forEach(entry -> {
+            ConcurrentIntList list = listFor(entry.getKey());
+            for (OperationLog.Record record : entry.getValue()) {
+                list.replay(record);
+            }
+        });
+        byList.clear();
+    }
+
+    /** Recria (ou estende) uma lista lida do snapshot. */
+    public void restoreList(String listId, IntBuffer values, long lastSeq) {
+        listFor(listId).restore(values, lastSeq);
+    }
+
+    /** Aplica um registro recebido do primário (réplicas); idempotente por seq. */
+    public void apply(OperationLog.Record record) {
+        listFor(record.listId).replay(record);
+    }
+
+    /** Cópia consistente de uma lista para o snapshot, sem bloquear escritores. */
+    public ConcurrentIntList.Image snapshotList(String listId) {
+        ConcurrentIntList list = lists.get(listId);
+        return list != null ? list.snapshot() : null;
+    }
+
+    /** Comprime os segmentos frios de uma lista (ver ConcurrentIntList.compact); bytes economizados. */
+    public long compactList(String listId, long idleNanos) {
+        ConcurrentIntList list = lists.get(listId);
+        return list != null ? list.compact(idleNanos) : 0;
+    }
+
+    /**
+     * Se a memória das listas passar de {@code maxBytes}, descarrega para o
+     * disco as menos usadas recentemente (ver ConcurrentIntList.spill) até
+     * ficar em {@code targetBytes}. Retorna os bytes liberados.
+     */
+    public long spillToBudget(long maxBytes, long targetBytes, SpillStore store) {
+        List<ConcurrentIntList> loaded = new ArrayList<>();
+        long total = 0;
+        for (ConcurrentIntList list : lists.values()) {
+            total += list.memoryBytes();
+            if (!list.isSpilled() && list.size() > 0) {
+                loaded.add(list);
+            }
+        }
+        if (total <= maxBytes) {
+            return 0;
+        }
+        loaded.sort(Comparator.comparingLong(ConcurrentIntList::lastAccess));
+        long freed = 0;
+        for (ConcurrentIntList list : loaded) {
+            if (total - freed <= targetBytes) {
+                break;
+            }
+            freed += list.spill(store);
+        }
+        return freed;
+    }
+
+    /** Liga a combinação de appends numa lista muito disputada (ver ConcurrentIntList). */
+    public void markHot(String listId) {
+        listFor(listId).markHot();
+    }
+
+    public ServerMetrics metrics() {
+        return metrics;
+    }
+
+    /** Liga o controle de admissão; chamado antes de registrar o serviço e abrir o protocolo binário. */
+    public void setAdmission(AdmissionControl admission) {
+        this.admission = admission;
+        metrics.setAdmission(admission);
+    }
+
+    // Entrada de cada chamada remota: sob sobrecarga lança OverloadedException antes de fazer qualquer coisa
+    private long admit() {
+        if (admission != null) {
+            admission.acquire();
+        }
+        return System.nanoTime();
+    }
+
+    // Saída de cada chamada admitida, inclusive com erro
+    private void done(ServerMetrics.Method method, long start, boolean ok) {
+        metrics.record(method, start, ok);
+        if (admission != null) {
+            admission.release(System.nanoTime() - start);
+        }
+    }
+
+    private ConcurrentIntList listFor(String listId) {
+        ConcurrentIntList list = lists.get(listId);
+        if (list == null) {
+            OperationLog.encodeListId(listId);  // recusa ids que o WAL e o snapshot não conseguem gravar
+            list = lists.computeIfAbsent(listId, k -> new ConcurrentIntList(k, log, invalidations, storage.open(k)));
+            sortedIds.add(listId);
+        }
+        return list;
+    }
+
     @Override
     public boolean append(String listId, int value) throws RemoteException {
-        lists.computeIfAbsent(listId, k -> new ArrayList<>()).add(value);
-        System.out.printf("APPEND: Lista '%s' = %s%n", listId, lists.get(listId));
-        return true;
+        long start = admit();
+        boolean ok = false;
+        try {
+            appendTo(listFor(listId), value);
+            ok = true;
+            return true;
+        } finally {
+            done(ServerMetrics.Method.APPEND, start, ok);
+        }
     }
 
     @Override
     public int get(String listId, int index) throws RemoteException {
-        List<Integer> list = lists.get(listId);
-        if (list == null || index < 0 || index >= list.size()) {
-            throw new RemoteException("Índice inválido ou lista não existe");
+        long start = admit();
+        boolean ok = false;
+        try {
+            int value = getFrom(lists.get(listId), index);
+            ok = true;
+            return value;
+        } finally {
+            done(ServerMetrics.Method.GET, start, ok);
         }
-        return list.get(index);
     }
 
     @Override
     public int remove(String listId) throws RemoteException {
-        List<Integer> list = lists.get(listId);
-        if (list == null || list.isEmpty()) {
-            throw new RemoteException("Lista não existe ou está vazia");
+        long start = admit();
+        boolean ok = false;
+        try {
+            int value = removeFrom(lists.get(listId));
+            ok = true;
+            return value;
+        } finally {
+            done(ServerMetrics.Method.REMOVE, start, ok);
         }
-        return list.remove(list.size() - 1);
     }
 
     @Override
     public int size(String listId) throws RemoteException {
-        List<Integer> list = lists.get(listId);
-        return list != null ? list.size() : 0;
+        long start = admit();
+        boolean ok = false;
+        try {
+            ConcurrentIntList list = lists.get(listId);
+            int size = list != null ? list.size() : 0;
+            ok = true;
+            return size;
+        } finally {
+            done(ServerMetrics.Method.SIZE, start, ok);
+        }
+    }
+
+    @Override
+    public long open(String listId) throws RemoteException {
+        long start = admit();
+        boolean ok = false;
+        try {
+            long handle = handles.open(listId, this::listFor);
+            ok = true;
+            return handle;
+        } finally {
+            done(ServerMetrics.Method.OPEN, start, ok);
+        }
+    }
+
+    @Override
+    public boolean append(long handle, int value) throws RemoteException {
+        long start = admit();
+        boolean ok = false;
+        try {
+            appendTo(handles.resolve(handle), value);
+            ok = true;
+            return true;
+        } finally {
+            done(ServerMetrics.Method.APPEND, start, ok);
+        }
+    }
+
+    @Override
+    public int get(long handle, int index) throws RemoteException {
+        long start = admit();
+        boolean ok = false;
+        try {
+            int value = getFrom(handles.resolve(handle), index);
+            ok = true;
+            return value;
+        } finally {
+            done(ServerMetrics.Method.GET, start, ok);
+        }
+    }
+
+    @Override
+    public int remove(long handle) throws RemoteException {
+        long start = admit();
+        boolean ok = false;
+        try {
+            int value = removeFrom(handles.resolve(handle));
+            ok = true;
+            return value;
+        } finally {
+            done(ServerMetrics.Method.REMOVE, start, ok);
+        }
+    }
+
+    @Override
+    public int size(long handle) throws RemoteException {
+        long start = admit();
+        boolean ok = false;
+        try {
+            int size = handles.resolve(handle).size();
+            ok = true;
+            return size;
+        } finally {
+            done(ServerMetrics.Method.SIZE, start, ok);
+        }
+    }
+
+    private void appendTo(ConcurrentIntList list, int value) throws RemoteException {
+        try {
+            list.append(value);
+        } catch (UncheckedIOException e) {
+            throw new RemoteException("Falha ao registrar operação no log", e);
+        }
+        if (ServerLog.isEnabled(ServerLog.Level.DEBUG)) {
+            ServerLog.op(ServerLog.Level.DEBUG, "APPEND", list.listId(), value, list.size());
+        }
+    }
+
+    private static int getFrom(ConcurrentIntList list, int index) throws RemoteException {
+        if (list == null) {
+            throw new RemoteException("Índice inválido ou lista não existe");
+        }
+        try {
+            return list.get(index);
+        } catch (IndexOutOfBoundsException e) {
+            throw new RemoteException("Índice inválido ou lista não existe");
+        }
+    }
+
+    private static int removeFrom(ConcurrentIntList list) throws RemoteException {
+        if (list == null) {
+            throw new RemoteException("Lista não existe ou está vazia");
+        }
+        try {
+            int value = list.removeLast();
+            if (ServerLog.isEnabled(ServerLog.Level.DEBUG)) {
+                ServerLog.op(ServerLog.Level.DEBUG, "REMOVE", list.listId(), value, list.size());
+            }
+            return value;
+        } catch (NoSuchElementException e) {
+            throw new RemoteException("Lista não existe ou está vazia");
+        } catch (UncheckedIOException e) {
+            throw new RemoteException("Falha ao registrar operação no log", e);
+        }
     }
 
     @Override
     public String[] listIds() throws RemoteException {
+        long start = admit();
+        boolean ok = false;
+        try {
+            String[] ids = allListIds();
+            ok = true;
+            return ids;
+        } finally {
+            done(ServerMetrics.Method.LIST_IDS, start, ok);
+        }
+    }
+
+    /** Ids de todas as listas para as tarefas do servidor, sem métricas nem controle de admissão. */
+    public String[] allListIds() {
         return lists.keySet().toArray(new String[0]);
     }
 
+    @Override
+    public RemoteListInterface.ListPage scanListIds(String prefix, String cursor, int limit) throws RemoteException {
+        long start = admit();
+        boolean ok = false;
+        try {
+            if (limit <= 0) {
+                throw new RemoteException("Limite da página deve ser positivo: " + limit);
+            }
+            String from = prefix != null ? prefix : "";
+            int max = Math.min(limit, MAX_LIST_PAGE);
+            // O índice ordenado leva direto ao primeiro id da página, sem percorrer os anteriores
+            NavigableSet<String> tail = cursor != null && cursor.compareTo(from) >= 0
+                    ? sortedIds.tailSet(cursor, false) : sortedIds.tailSet(from, true);
+            List<String> ids = new ArrayList<>(Math.min(max, 1024));
+            String next = null;
+            for (String id : tail) {
+                if (!id.startsWith(from)) {
+                    break;
+                }
+                if (ids.size() == max) {
+                    next = ids.get(max - 1);
+                    break;
+                }
+                ids.add(id);
+            }
+            int[] sizes = new int[ids.size()];
+            for (int i = 0; i < sizes.length; i++) {
+                ConcurrentIntList list = lists.get(ids.get(i));
+                sizes[i] = list != null ? list.size() : 0;
+            }
+            ok = true;
+            return new ListPage(ids.toArray(new String[0]), sizes, next);
+        } finally {
+            done(ServerMetrics.Method.LIST_IDS, start, ok);
+        }
+    }
+
+    @Override
+    public boolean appendAll(String listId, int[] values) throws RemoteException {
+        long start = admit();
+        boolean ok = false;
+        try {
+            ConcurrentIntList list = listFor(listId);
+            try {
+                list.appendAll(values);
+            } catch (UncheckedIOException e) {
+                throw new RemoteException("Falha ao registrar operação no log", e);
+            }
+            if (ServerLog.isEnabled(ServerLog.Level.DEBUG)) {
+                ServerLog.op(ServerLog.Level.DEBUG, "APPEND_ALL", listId, values.length, list.size());
+            }
+            ok = true;
+            return true;
+        } finally {
+            done(ServerMetrics.Method.APPEND_ALL, start, ok);
+        }
+    }
+
+    @Override
+    public int[] getRange(String listId, int from, int to) throws RemoteException {
+        long start = admit();
+        boolean ok = false;
+        try {
+            ConcurrentIntList list = lists.get(listId);
+            if (list == null) {
+                throw new RemoteException("Lista não existe");
+            }
+            try {
+                int[] range = list.getRange(from, to);
+                ok = true;
+                return range;
+            } catch (IndexOutOfBoundsException e) {
+                throw new RemoteException("Intervalo inválido: [" + from + ", " + to + ")");
+            }
+        } finally {
+            done(ServerMetrics.Method.GET_RANGE, start, ok);
+        }
+    }
+
+    @Override
+    public int[] removeN(String listId, int n) throws RemoteException {
+        long start = admit();
+        boolean ok = false;
+        try {
+            if (n < 0) {
+                throw new RemoteException("Quantidade inválida: " + n);
+            }
+            ConcurrentIntList list = lists.get(listId);
+            if (list == null) {
+                throw new RemoteException("Lista não existe");
+            }
+            try {
+                int[] removed = list.removeLast(n);
+                if (ServerLog.isEnabled(ServerLog.Level.DEBUG)) {
+                    ServerLog.op(ServerLog.Level.DEBUG, "REMOVE_N", listId, removed.length, list.size());
+                }
+                ok = true;
+                return removed;
+            } catch (UncheckedIOException e) {
+                throw new RemoteException("Falha ao registrar operação no log", e);
+            }
+        } finally {
+            done(ServerMetrics.Method.REMOVE_N, start, ok);
+        }
+    }
+
+    @Override
+    public int[] sizes(String[] listIds) throws RemoteException {
+        long start = admit();
+        boolean ok = false;
+        try {
+            int[] result = new int[listIds.length];
+            for (int i = 0; i < listIds.length; i++) {
+                ConcurrentIntList list = lists.get(listIds[i]);
+                result[i] = list != null ? list.size() : 0;
+            }
+            ok = true;
+            return result;
+        } finally {
+            done(ServerMetrics.Method.SIZES, start, ok);
+        }
+    }
+
+    @Override
+    public long subscribeInvalidations(InvalidationListener listener) throws RemoteException {
+        return invalidations.subscribe(listener);
+    }
+
+    @Override
+    public void unsubscribeInvalidations(long subscriberId) throws RemoteException {
+        invalidations.unsubscribe(subscriberId);
+    }
+
+    // Lista que não existe: vazia, com versão -1 para o cliente não guardar nada nem pedir avisos dela
+    private static final ConcurrentIntList.Segment MISSING = new ConcurrentIntList.Segment(new int[0], 0, -1);
+
+    private ConcurrentIntList.Segment watchAndRead(long subscriberId, String listId, ConcurrentIntList list,
+            int from, int to) throws RemoteException {
+        // Interesse antes da leitura: uma mudança logo depois dela já é avisada
+        invalidations.watch(subscriberId, listId);
+        return list.readSegment(from, to);
+    }
+
+    @Override
+    public ConcurrentIntList.Segment readSegment(long subscriberId, String listId, int from, int to)
+            throws RemoteException {
+        long start = admit();
+        boolean ok = false;
+        try {
+            ConcurrentIntList list = lists.get(listId);
+            try {
+                ConcurrentIntList.Segment segment = list != null ? watchAndRead(subscriberId, listId, list, from, to)
+                        : MISSING;
+                ok = true;
+                return segment;
+            } catch (IndexOutOfBoundsException e) {
+                throw new RemoteException("Intervalo inválido: [" + from + ", " + to + ")");
+            }
+        } finally {
+            done(ServerMetrics.Method.GET_RANGE, start, ok);
+        }
+    }
+
+    @Override
+    public ConcurrentIntList.Segment[] readSizes(long subscriberId, String[] listIds) throws RemoteException {
+        long start = admit();
+        boolean ok = false;
+        try {
+            ConcurrentIntList.Segment[] result = new ConcurrentIntList.Segment[listIds.length];
+            for (int i = 0; i < listIds.length; i++) {
+                ConcurrentIntList list = lists.get(listIds[i]);
+                result[i] = list != null ? watchAndRead(subscriberId, listIds[i], list, 0, 0) : MISSING;
+            }
+            ok = true;
+            return result;
+        } finally {
+            done(ServerMetrics.Method.SIZES, start, ok);
+        }
+    }
+
+    @Override
+    public RemoteListInterface.Stats stats(String listId, int from, int to) throws RemoteException {
+        return query(listId, from, to, ListQueries::stats);
+    }
+
+    @Override
+    public long count(String listId, int from, int to, int low, int high) throws RemoteException {
+        return query(listId, from, to, (data, start, end) -> ListQueries.count(data, start, end, low, high));
+    }
+
+    @Override
+    public long[] histogram(String listId, int from, int to, int low, int high, int buckets)
+            throws RemoteException {
+        return query(listId, from, to,
+                (data, start, end) -> ListQueries.histogram(data, start, end, low, high, buckets));
+    }
+
+    @Override
+    public RemoteListInterface.ScanResult scan(String listId, int from, int to, int low, int high, int limit)
+            throws RemoteException {
+        return query(listId, from, to, (data, start, end) -> ListQueries.scan(data, start, end, low, high, limit));
+    }
+
+    private <T> T query(String listId, int from, int to, ListQueries.RangeQuery<T> query) throws RemoteException {
+        long start = admit();
+        boolean ok = false;
+        try {
+            ConcurrentIntList list = lists.get(listId);
+            if (list == null) {
+                throw new RemoteException("Lista não existe");
+            }
+            try {
+                T result = list.query(from, to, query);
+                ok = true;
+                return result;
+            } catch (IndexOutOfBoundsException e) {
+                throw new RemoteException("Intervalo inválido: [" + from + ", " + to + ")");
+            } catch (IllegalArgumentException e) {
+                throw new RemoteException(e.getMessage());
+            }
+        } finally {
+            done(ServerMetrics.Method.QUERY, start, ok);
+        }
+    }
+
+    private synchronized ChangeFeed changeFeed() throws RemoteException {
+        if (log == null) {
+            throw new RemoteException("Fluxo de mudanças exige o log de operações");
+        }
+        if (changeFeed == null) {
+            changeFeed = new ChangeFeed(log);
+        }
+        return changeFeed;
+    }
+
+    @Override
+    public long subscribeChanges(ChangeStreamListener listener, String[] listIds, String[] prefixes, long afterSeq)
+            throws RemoteException {
+        return changeFeed().subscribe(listener, listIds, prefixes, afterSeq);
+    }
+
+    @Override
+    public void unsubscribeChanges(long subscriptionId) throws RemoteException {
+        changeFeed().unsubscribe(subscriptionId);
+    }
+
     @Override
     public void shutdown() throws RemoteException {
+        // Chamável por qualquer cliente: não mexe no estado (ver close)
         System.out.println("Encerrando RemoteListImpl...");
-        // Limpar recursos se necessário
     }
-}
\ No newline at end of file
+
+    /**
+     * Fecha o WAL e o armazenamento das listas. Só o hook de encerramento do
+     * servidor chama, depois do snapshot final; escritas depois disso falham.
+     */
+    public void close() throws IOException {
+        if (log != null) {
+            log.close();
+        }
+        for (ConcurrentIntList list : lists.values()) {
+            list.close();
+        }
+    }
+}
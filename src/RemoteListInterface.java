@@ -1,3 +1,4 @@
+import java.io.Serializable;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 
@@ -7,5 +8,120 @@ public interface RemoteListInterface extends Remote{
     int remove(String listId) throws RemoteException;
     int size(String listId) throws RemoteException;
     String[] listIds() throws RemoteException;
+    // Listas com o prefixo em ordem de id, depois do cursor (null no início), até limit (máx. 10000) por página
+    ListPage scanListIds(String prefix, String cursor, int limit) throws RemoteException;
+
+    // Operações em lote: uma única chamada remota, atômicas por lista
+    boolean appendAll(String listId, int[] values) throws RemoteException;
+    int[] getRange(String listId, int from, int to) throws RemoteException;  // [from, to), limitado ao tamanho
+    int[] removeN(String listId, int n) throws RemoteException;  // até n elementos, último primeiro
+    int[] sizes(String[] listIds) throws RemoteException;
     void shutdown() throws RemoteException;  // Adicionado método shutdown()
+
+    // Consultas no servidor sobre [from, to), limitado ao tamanho: só o resultado trafega
+    Stats stats(String listId, int from, int to) throws RemoteException;  // contagem, soma, mínimo e máximo
+    long count(String listId, int from, int to, int low, int high) throws RemoteException;  // valores em [low, high]
+    long[] histogram(String listId, int from, int to, int low, int high, int buckets) throws RemoteException;
+    ScanResult scan(String listId, int from, int to, int low, int high, int limit) throws RemoteException;
+
+    // Handles: open troca o listId por um long que o servidor resolve num array, sem hash de String.
+    // Valem enquanto o servidor não reiniciar, em qualquer conexão; depois disso StaleHandleException
+    long open(String listId) throws RemoteException;  // cria a lista se não existir
+    boolean append(long handle, int value) throws RemoteException;
+    int get(long handle, int index) throws RemoteException;
+    int remove(long handle) throws RemoteException;
+    int size(long handle) throws RemoteException;
+
+    /**
+     * Chamada recusada pelo controle de admissão do servidor antes de fazer
+     * qualquer coisa: pode ser repetida depois de {@code retryAfterMillis}.
+     */
+    final class OverloadedException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        public final String reason;
+        public final long retryAfterMillis;
+
+        public OverloadedException(String reason, long retryAfterMillis) {
+            super(reason + "; tente de novo em " + retryAfterMillis + " ms");
+            this.reason = reason;
+            this.retryAfterMillis = retryAfterMillis;
+        }
+    }
+
+    /**
+     * Página de {@link #scanListIds}: ids em ordem crescente, os tamanhos no
+     * momento da leitura e o cursor da próxima página (null na última).
+     */
+    final class ListPage implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        public final String[] ids;
+        public final int[] sizes;
+        public final String next;
+
+        public ListPage(String[] ids, int[] sizes, String next) {
+            this.ids = ids;
+            this.sizes = sizes;
+            this.next = next;
+        }
+    }
+
+    /**
+     * Handle emitido por outra execução do servidor (ou por outro servidor):
+     * a operação não foi aplicada e basta chamar {@link #open} de novo.
+     */
+    final class StaleHandleException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        public final long handle;
+
+        public StaleHandleException(long handle) {
+            super("Handle " + Long.toHexString(handle) + " não é deste servidor; abra a lista de novo");
+            this.handle = handle;
+        }
+    }
+
+    /** Resultado de {@link #stats}; numa faixa vazia, min e max ficam nos extremos opostos de int. */
+    final class Stats implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        public final long count;
+        public final long sum;
+        public final int min;
+        public final int max;
+
+        public Stats(long count, long sum, int min, int max) {
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        public double mean() {
+            return count > 0 ? (double) sum / count : 0;
+        }
+
+        @Override
+        public String toString() {
+            return count > 0 ? String.format("%d valores, soma %d, mín %d, máx %d, média %.2f", count, sum, min, max,
+                    mean()) : "nenhum valor";
+        }
+    }
+
+    /**
+     * Resultado de {@link #scan}: valores em [low, high] na ordem da lista e o
+     * índice onde a varredura parou (para continuar de lá, se chegou ao limite).
+     */
+    final class ScanResult implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        public final int[] values;
+        public final int next;
+
+        public ScanResult(int[] values, int next) {
+            this.values = values;
+            this.next = next;
+        }
+    }
 }
@@ -1,42 +1,162 @@
+import java.io.IOException;
 import java.rmi.Naming;
-import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class RemoteListServer {
     private static RemoteListImpl remoteList;
+    private static Snapshotter snapshotter;
+    private static ListCompactor compactor;
+    private static ListSpiller spiller;
+    private static BinaryServer binaryServer;
+    private static String binaryExecution;
 
     public static void main(String[] args) {
+        long startNanos = System.nanoTime();
         try {
             System.out.println("=== INICIANDO SERVIDOR REMOTELIST ===");
 
-            // Cria o registry RMI na porta 1099 (porta padrão)
-            System.out.println("Criando RMI Registry...");
-            LocateRegistry.createRegistry(1099);
+            // Uso: java RemoteListServer [portaRMI] [nome]. Fora da porta padrão as
+            // demais portas e o diretório de dados andam junto, para rodar vários
+            // nós (shards) na mesma máquina sem configurar cada um
+            int rmiPort = args.length > 0 ? Integer.parseInt(args[0]) : 1099;
+            String serviceName = args.length > 1 ? args[1] : "RemoteList";
+            int portOffset = rmiPort - 1099;
+            if (portOffset != 0 && System.getProperty("remotelist.dataDir") == null) {
+                System.setProperty("remotelist.dataDir", "data-" + rmiPort);
+            }
+            String serviceUrl = "//localhost:" + rmiPort + "/" + serviceName;
+
+            // Cria o registry RMI (porta padrão 1099)
+            System.out.println("Criando RMI Registry na porta " + rmiPort + "...");
+            LocateRegistry.createRegistry(rmiPort);
 
             // Cria uma instância do serviço
             System.out.println("Inicializando RemoteList...");
-            remoteList = new RemoteListImpl();
+            OperationLog log = OperationLog.fromSystemProperties();
+            StorageBackend storage = StorageBackend.fromSystemProperties();
+            remoteList = new RemoteListImpl(log, storage);
+            System.out.println("Armazenamento das listas: " + storage.describe());
+
+            snapshotter = Snapshotter.fromSystemProperties(remoteList, log);
+
+            System.out.println("\n=== RECUPERANDO ESTADO ANTERIOR ===");
+            long recoveryStart = System.nanoTime();
+            long snapshotSeq = snapshotter.loadLatest();
+            long snapshotLoaded = System.nanoTime();
+            remoteList.recover(snapshotSeq);
+            long logReplayed = System.nanoTime();
+            System.out.printf("Recuperação: snapshot %d ms + WAL %d ms%n",
+                    TimeUnit.NANOSECONDS.toMillis(snapshotLoaded - recoveryStart),
+                    TimeUnit.NANOSECONDS.toMillis(logReplayed - snapshotLoaded));
+            System.out.printf("Log de operações ativo (durabilidade: %s)%n", log.durability());
+            snapshotter.start();
+            compactor = ListCompactor.fromSystemProperties(remoteList);
+            compactor.start();
+            spiller = ListSpiller.fromSystemProperties(remoteList, storage);
+            if (spiller != null) {
+                spiller.start();
+            }
+            // Antes de abrir qualquer transporte: toda chamada remota passa pela admissão
+            AdmissionControl admission = AdmissionControl.fromSystemProperties();
+            remoteList.setAdmission(admission);
+            System.out.println("=====================================");
+
+            // Listas quentes conhecidas combinam appends desde o início; as demais
+            // passam a combinar sozinhas se muitos appends encontrarem o lock ocupado
+            for (String hotList : System.getProperty("remotelist.hotLists", "").split(",")) {
+                if (!hotList.isBlank()) {
+                    remoteList.markHot(hotList.trim());
+                }
+            }
+
+            // Replicação assíncrona: réplicas puxam o log em <nome>-replication
+            boolean replication = Boolean.getBoolean("remotelist.replication");
+            if (replication) {
+                Naming.rebind(serviceUrl + "-replication",
+                        ReplicationSourceImpl.fromSystemProperties(remoteList, log));
+            }
+
+            // Métricas: JMX sempre, endpoint HTTP em texto se a porta não for 0
+            int metricsPort = Integer.getInteger("remotelist.metrics.port", 9404 + portOffset);
+            remoteList.metrics().registerMBeans();
+            remoteList.metrics().startHttp(metricsPort);
+
+            // Transporte binário NIO ao lado do RMI (porta 0 desliga)
+            int binaryPort = Integer.getInteger("remotelist.binary.port", 7070 + portOffset);
+            if (binaryPort > 0) {
+                int ioThreads = Integer.getInteger("remotelist.binary.ioThreads",
+                        Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+                // Com threads virtuais cada conexão ativa custa só alguns KB
+                boolean virtual = Boolean.getBoolean("remotelist.binary.virtualThreads");
+                binaryServer = new BinaryServer(remoteList, binaryPort, ioThreads,
+                        ThreadSupport.newPerTaskExecutor(virtual, "binary-worker"));
+                binaryExecution = ThreadSupport.describe(virtual);
+                binaryServer.start();
+            }
 
             // Registra o serviço no registry
             System.out.println("Registrando serviço...");
-            Naming.rebind("//localhost/RemoteList", remoteList);
+            Naming.rebind(serviceUrl, remoteList);
 
             System.out.println("\n✅ Servidor RemoteList iniciado com sucesso!");
-            System.out.println("📍 Servidor registrado em: //localhost/RemoteList");
+            System.out.println("📍 Servidor registrado em: " + serviceUrl);
             System.out.println("🔒 Sistema de persistência ativo");
-            System.out.println("📸 Snapshots automáticos a cada 30 segundos");
+            System.out.printf("📸 Snapshots automáticos a cada %d segundos%n", snapshotter.intervalSeconds());
+            if (compactor.intervalSeconds() > 0) {
+                System.out.printf("🗜️ Compressão de segmentos frios a cada %d segundos%n", compactor.intervalSeconds());
+            }
+            if (admission != null) {
+                System.out.println("🚦 Controle de admissão: " + admission.describe());
+            }
+            if (spiller != null) {
+                System.out.printf("💾 Listas ociosas vão para o disco acima de %d MB%n", spiller.maxBytes() >> 20);
+            }
+            if (binaryServer != null) {
+                System.out.printf("⚡ Protocolo binário (NIO) na porta %d, execução em %s%n", binaryPort,
+                        binaryExecution);
+            }
+            if (replication) {
+                System.out.println("🔁 Replicação ativa em " + serviceUrl + "-replication");
+            }
+            if (metricsPort > 0) {
+                System.out.printf("📊 Métricas em http://localhost:%d/metrics (e via JMX)%n", metricsPort);
+            }
             System.out.println("🚀 Aguardando conexões de clientes...");
+            long startupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            remoteList.metrics().setStartupMillis(startupMillis);
+            System.out.printf("⏱️ Tempo de inicialização: %d ms%n", startupMillis);
 
             // Adicionar hook para shutdown gracioso
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 System.out.println("\n🛑 Sinal de shutdown recebido...");
+                if (compactor != null) {
+                    compactor.shutdown();
+                }
+                if (spiller != null) {
+                    spiller.shutdown();
+                }
+                if (snapshotter != null) {
+                    try {
+                        snapshotter.shutdown();
+                    } catch (Exception e) {
+                        System.err.println("❌ Falha no snapshot final: " + e.getMessage());
+                    }
+                }
+                if (binaryServer != null) {
+                    binaryServer.stop();
+                }
                 if (remoteList != null) {
+                    remoteList.metrics().stopHttp();
                     try {
-                        remoteList.shutdown();
-                    } catch (RemoteException e) {
-                        throw new RuntimeException(e);
+                        remoteList.close();
+                    } catch (IOException e) {
+                        System.err.println("❌ Falha ao fechar o log de operações: " + e.getMessage());
                     }
                 }
+                ServerLog.flush();
                 System.out.println("Servidor finalizado.");
             }));
 
@@ -59,4 +179,13 @@ public class RemoteListServer {
             e.printStackTrace();
         }
     }
+
+    static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
 }
@@ -0,0 +1,461 @@
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.rmi.Naming;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Réplica de leitura que segue o log de um primário.
+ *
+ * Uma thread puxa lotes do {@link ReplicationSource} do primário e os aplica
+ * em ordem de seq sobre um RemoteListImpl sem log próprio; as leituras usam
+ * esse estado direto, com os mesmos locks otimistas do primário. Ao começar
+ * (ou se ficar para trás do buffer do primário) a réplica copia todas as
+ * listas e continua pelo log a partir do ponto de cópia.
+ *
+ * O atraso é medido pelo instante em que a réplica sabidamente estava em
+ * dia: quando aplicou tudo até a seq durável que o primário informou. Com o
+ * primário ocioso, a réplica fica numa espera longa que o primário responde
+ * assim que houver algo novo, então conta como em dia enquanto essa espera
+ * estiver dentro do prazo.
+ *
+ * Depois de {@link #promote()} a réplica vira primário: o estado ganha um
+ * OperationLog e um Snapshotter próprios e as escritas passam a ser aceitas.
+ */
+public class ReplicaImpl extends UnicastRemoteObject implements ReplicaInterface {
+    private static final long serialVersionUID = 1L;
+
+    private final String serviceUrl;
+    private final int batchSize = Integer.getInteger("remotelist.replica.batch", 4096);
+    private final long pollMillis = Long.getLong("remotelist.replica.pollMillis", 500);
+    private final long readWaitMillis = Long.getLong("remotelist.replica.readWaitMillis", 100);
+
+    // Aplicação de lotes, troca de estado e troca de primário passam por aqui
+    private final ReentrantLock applyLock = new ReentrantLock();
+    private final Object progress = new Object();
+
+    private volatile RemoteListImpl state;
+    private volatile ReplicationSource source;
+    private volatile String primaryUrl;
+    private volatile long generation;  // muda a cada troca de primário ou promoção
+    private volatile boolean needResync = true;
+    private volatile long appliedSeq;
+    private long lastPrimarySeq;  // seq durável informada no último lote (só a thread seguidora)
+    private volatile long caughtUpAtNanos;
+    private volatile long idlePollStartNanos;  // != 0 durante uma espera longa começada em dia
+    private volatile boolean running = true;
+    private Thread follower;
+
+    // Depois da promoção
+    private volatile boolean promoted;
+    private OperationLog log;
+    private Snapshotter snapshotter;
+    private ReplicationSourceImpl promotedSource;
+
+    public ReplicaImpl(String serviceUrl, String primaryUrl) throws RemoteException {
+        super();
+        this.serviceUrl = serviceUrl;
+        this.primaryUrl = primaryUrl;
+        this.state = new RemoteListImpl();
+        this.caughtUpAtNanos = System.nanoTime() - TimeUnit.DAYS.toNanos(1);
+    }
+
+    public void start() {
+        follower = new Thread(this::followLoop, "replica-follower");
+        follower.setDaemon(true);
+        follower.start();
+    }
+
+    private void followLoop() {
+        int failures = 0;
+        while (running) {
+            long gen = generation;
+            try {
+                ReplicationSource src = source;
+                if (src == null) {
+                    src = (ReplicationSource) Naming.lookup(primaryUrl + "-replication");
+                    source = src;
+                }
+                if (needResync) {
+                    resync(src, gen);
+                    continue;
+                }
+                long requestStart = System.nanoTime();
+                if (appliedSeq >= lastPrimarySeq) {
+                    idlePollStartNanos = requestStart;
+                }
+                ReplicationSource.LogBatch batch;
+                try {
+                    batch = src.fetch(appliedSeq, batchSize, pollMillis);
+                } finally {
+                    idlePollStartNanos = 0;
+                }
+                if (batch.resync) {
+                    ServerLog.warn("Réplica ficou para trás do buffer do primário: copiando as listas de novo");
+                    needResync = true;
+                    continue;
+                }
+                apply(batch, gen, requestStart);
+                if (failures > 0) {
+                    ServerLog.info("Réplica reconectada ao primário " + primaryUrl);
+                }
+                failures = 0;
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                if (failures++ == 0) {
+                    ServerLog.warn("Réplica sem contato com o primário " + primaryUrl + ": " + e.getMessage());
+                }
+                source = null;
+                sleepQuietly(Math.min(1000, 50L << Math.min(failures, 5)));
+            }
+        }
+    }
+
+    private void apply(ReplicationSource.LogBatch batch, long gen, long requestStart) {
+        applyLock.lock();
+        try {
+            if (gen != generation) {
+                return;  // o primário mudou durante a espera
+            }
+            RemoteListImpl target = state;
+            for (OperationLog.Record record : batch.records) {
+                target.apply(record);
+            }
+            if (batch.records.length > 0) {
+                appliedSeq = batch.records[batch.records.length - 1].seq;
+            }
+            lastPrimarySeq = batch.primarySeq;
+            if (appliedSeq >= batch.primarySeq) {
+                // Em dia no instante em que o primário montou o lote
+                caughtUpAtNanos = requestStart + TimeUnit.MILLISECONDS.toNanos(batch.waitedMillis);
+            }
+        } finally {
+            applyLock.unlock();
+        }
+        synchronized (progress) {
+            progress.notifyAll();
+        }
+    }
+
+    // Cópia completa: guarda o ponto de partida, copia cada lista e troca o estado de uma vez
+    private void resync(ReplicationSource src, long gen) throws RemoteException {
+        long start = System.nanoTime();
+        long point = src.resyncPoint();
+        RemoteListImpl fresh = new RemoteListImpl();
+        long elements = 0;
+        String[] ids = src.listIds();
+        for (String listId : ids) {
+            ConcurrentIntList.Image image = src.fetchList(listId);
+            if (image != null) {
+                fresh.restoreList(listId, IntBuffer.wrap(image.values), image.lastSeq);
+                elements += image.values.length;
+            }
+        }
+        RemoteListImpl old;
+        applyLock.lock();
+        try {
+            if (gen != generation) {
+                unexport(fresh);
+                return;
+            }
+            old = state;
+            state = fresh;
+            appliedSeq = point;
+            lastPrimarySeq = Long.MAX_VALUE;  // ainda não sabe até onde o primário foi
+            needResync = false;
+        } finally {
+            applyLock.unlock();
+        }
+        unexport(old);
+        ServerLog.info(String.format("Réplica sincronizada com %s: %d listas, %d elementos em %d ms (seq %d)",
+                primaryUrl, ids.length, elements, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), point));
+    }
+
+    long stalenessNanos() {
+        if (promoted) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        long idleSince = idlePollStartNanos;
+        if (idleSince != 0 && now - idleSince <= TimeUnit.MILLISECONDS.toNanos(2 * pollMillis)) {
+            return 0;  // o primário responderia já se tivesse algo novo
+        }
+        return now - caughtUpAtNanos;
+    }
+
+    /** Estado que atende a consistência pedida, esperando um pouco por ela se preciso. */
+    private RemoteListImpl readable(long minSeq, long maxStaleMillis) throws RemoteException {
+        if (promoted) {
+            return state;
+        }
+        long maxStaleNanos = maxStaleMillis < 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(maxStaleMillis);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(readWaitMillis);
+        synchronized (progress) {
+            while (appliedSeq < minSeq || stalenessNanos() > maxStaleNanos) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new StaleReadException(String.format(
+                            "Réplica na seq %d (pedida %d), atraso %d ms (máximo %d ms)", appliedSeq, minSeq,
+                            TimeUnit.NANOSECONDS.toMillis(stalenessNanos()), maxStaleMillis));
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(progress, Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(5)));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RemoteException("Interrompido esperando a réplica");
+                }
+            }
+        }
+        return state;
+    }
+
+    private RemoteListImpl writable() throws RemoteException {
+        if (!promoted) {
+            throw new RemoteException("Réplica somente leitura: escreva no primário " + primaryUrl);
+        }
+        return state;
+    }
+
+    // ---- Leituras com consistência ----
+
+    @Override
+    public int get(String listId, int index, long minSeq, long maxStaleMillis) throws RemoteException {
+        return readable(minSeq, maxStaleMillis).get(listId, index);
+    }
+
+    @Override
+    public int size(String listId, long minSeq, long maxStaleMillis) throws RemoteException {
+        return readable(minSeq, maxStaleMillis).size(listId);
+    }
+
+    @Override
+    public String[] listIds(long minSeq, long maxStaleMillis) throws RemoteException {
+        return readable(minSeq, maxStaleMillis).listIds();
+    }
+
+    @Override
+    public long appliedSeq() throws RemoteException {
+        return promoted ? log.lastSeq() : appliedSeq;
+    }
+
+    @Override
+    public long stalenessMillis() throws RemoteException {
+        return TimeUnit.NANOSECONDS.toMillis(stalenessNanos());
+    }
+
+    // ---- Promoção e troca de primário ----
+
+    @Override
+    public synchronized long promote() throws RemoteException {
+        if (promoted) {
+            return log.lastSeq();
+        }
+        long inherited;
+        applyLock.lock();
+        try {
+            // A partir daqui nenhum lote do primário antigo é aplicado
+            generation++;
+            running = false;
+            inherited = appliedSeq;
+            try {
+                // O que houver no disco é de uma vida anterior: o estado atual veio do primário
+                Path walDir = Path.of(System.getProperty("remotelist.dataDir", "data"), "wal");
+                if (Files.isDirectory(walDir)) {
+                    try (Stream<Path> files = Files.list(walDir)) {
+                        for (Path file : (Iterable<Path>) files::iterator) {
+                            Files.delete(file);
+                        }
+                    }
+                }
+                OperationLog newLog = OperationLog.fromSystemProperties();
+                RemoteListImpl primary = new RemoteListImpl(newLog);
+                RemoteListImpl current = state;
+                for (String listId : current.listIds()) {
+                    ConcurrentIntList.Image image = current.snapshotList(listId);
+                    primary.restoreList(listId, IntBuffer.wrap(image.values), image.lastSeq);
+                }
+                // Log vazio: as seqs continuam logo depois da última herdada
+                newLog.recover(record -> { }, inherited);
+                Snapshotter newSnapshotter = Snapshotter.fromSystemProperties(primary, newLog);
+                newSnapshotter.takeSnapshot();
+                newSnapshotter.start();
+                promotedSource = ReplicationSourceImpl.fromSystemProperties(primary, newLog);
+                Naming.rebind(serviceUrl + "-replication", promotedSource);
+                log = newLog;
+                snapshotter = newSnapshotter;
+                state = primary;
+                promoted = true;
+                unexport(current);
+            } catch (IOException e) {
+                throw new RemoteException("Falha ao promover a réplica", e);
+            }
+        } finally {
+            applyLock.unlock();
+        }
+        synchronized (progress) {
+            progress.notifyAll();
+        }
+        ServerLog.info(String.format("Réplica promovida a primário em %s (seqs continuam depois de %d)",
+                serviceUrl, inherited));
+        return inherited;
+    }
+
+    @Override
+    public synchronized void follow(String newPrimaryUrl) throws RemoteException {
+        if (promoted) {
+            throw new RemoteException("Esta réplica já foi promovida a primário");
+        }
+        applyLock.lock();
+        try {
+            generation++;
+            primaryUrl = newPrimaryUrl;
+            source = null;
+            needResync = true;
+        } finally {
+            applyLock.unlock();
+        }
+        ServerLog.info("Réplica passa a seguir " + newPrimaryUrl);
+    }
+
+    public boolean isPromoted() {
+        return promoted;
+    }
+
+    /** Para de seguir o primário; se promovida, faz o snapshot final e fecha o log. */
+    public void close() throws Exception {
+        running = false;
+        if (promoted) {
+            snapshotter.shutdown();
+            state.close();
+        }
+    }
+
+    // ---- RemoteListInterface ----
+
+    @Override
+    public boolean append(String listId, int value) throws RemoteException {
+        return writable().append(listId, value);
+    }
+
+    @Override
+    public int get(String listId, int index) throws RemoteException {
+        return state.get(listId, index);
+    }
+
+    @Override
+    public int remove(String listId) throws RemoteException {
+        return writable().remove(listId);
+    }
+
+    @Override
+    public int size(String listId) throws RemoteException {
+        return state.size(listId);
+    }
+
+    @Override
+    public String[] listIds() throws RemoteException {
+        return state.listIds();
+    }
+
+    @Override
+    public RemoteListInterface.ListPage scanListIds(String prefix, String cursor, int limit) throws RemoteException {
+        return state.scanListIds(prefix, cursor, limit);
+    }
+
+    @Override
+    public boolean appendAll(String listId, int[] values) throws RemoteException {
+        return writable().appendAll(listId, values);
+    }
+
+    @Override
+    public int[] getRange(String listId, int from, int to) throws RemoteException {
+        return state.getRange(listId, from, to);
+    }
+
+    @Override
+    public int[] removeN(String listId, int n) throws RemoteException {
+        return writable().removeN(listId, n);
+    }
+
+    @Override
+    public int[] sizes(String[] listIds) throws RemoteException {
+        return state.sizes(listIds);
+    }
+
+    @Override
+    public RemoteListInterface.Stats stats(String listId, int from, int to) throws RemoteException {
+        return state.stats(listId, from, to);
+    }
+
+    @Override
+    public long count(String listId, int from, int to, int low, int high) throws RemoteException {
+        return state.count(listId, from, to, low, high);
+    }
+
+    @Override
+    public long[] histogram(String listId, int from, int to, int low, int high, int buckets)
+            throws RemoteException {
+        return state.histogram(listId, from, to, low, high, buckets);
+    }
+
+    @Override
+    public RemoteListInterface.ScanResult scan(String listId, int from, int to, int low, int high, int limit)
+            throws RemoteException {
+        return state.scan(listId, from, to, low, high, limit);
+    }
+
+    @Override
+    public long open(String listId) throws RemoteException {
+        return state.open(listId);
+    }
+
+    @Override
+    public boolean append(long handle, int value) throws RemoteException {
+        return writable().append(handle, value);
+    }
+
+    @Override
+    public int get(long handle, int index) throws RemoteException {
+        return state.get(handle, index);
+    }
+
+    @Override
+    public int remove(long handle) throws RemoteException {
+        return writable().remove(handle);
+    }
+
+    @Override
+    public int size(long handle) throws RemoteException {
+        return state.size(handle);
+    }
+
+    @Override
+    public void shutdown() throws RemoteException {
+        // Chamável por qualquer cliente: o encerramento de verdade é o close do hook do ReplicaServer
+        System.out.println("Encerrando réplica...");
+    }
+
+    private static void unexport(RemoteListImpl impl) {
+        try {
+            UnicastRemoteObject.unexportObject(impl, true);
+        } catch (NoSuchObjectException e) {
+            // Já não estava exportado
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+import java.rmi.RemoteException;
+
+/**
+ * Uma réplica de leitura. Atende a RemoteListInterface normal (leituras sem
+ * garantia de atraso, escritas recusadas até ser promovida) e leituras com
+ * condição de consistência:
+ * - {@code minSeq}: só responde depois de aplicar essa seq do primário
+ *   (token para ler as próprias escritas); 0 para não exigir;
+ * - {@code maxStaleMillis}: só responde se estava em dia com o primário
+ *   há no máximo esse tempo; negativo para não exigir.
+ * Se a condição não for atendida em pouco tempo, lança
+ * {@link StaleReadException} e o cliente lê do primário.
+ */
+public interface ReplicaInterface extends RemoteListInterface {
+    int get(String listId, int index, long minSeq, long maxStaleMillis) throws RemoteException;
+    int size(String listId, long minSeq, long maxStaleMillis) throws RemoteException;
+    String[] listIds(long minSeq, long maxStaleMillis) throws RemoteException;
+
+    /** Maior seq do primário aplicada aqui, sem lacunas. */
+    long appliedSeq() throws RemoteException;
+
+    /** Há quanto tempo a réplica estava em dia com o primário, em ms. */
+    long stalenessMillis() throws RemoteException;
+
+    /**
+     * Promove a réplica a primário: para de seguir o primário antigo, abre um
+     * log próprio continuando as seqs depois de {@link #appliedSeq()}, passa a
+     * aceitar escritas e a servir de fonte para outras réplicas. Retorna a
+     * última seq herdada.
+     */
+    long promote() throws RemoteException;
+
+    /** Passa a seguir outro primário, com cópia completa das listas. */
+    void follow(String primaryUrl) throws RemoteException;
+
+    /** A réplica não alcançou a consistência pedida a tempo. */
+    class StaleReadException extends RemoteException {
+        private static final long serialVersionUID = 1L;
+
+        public StaleReadException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+import java.rmi.Naming;
+import java.rmi.registry.LocateRegistry;
+
+/**
+ * Sobe uma réplica de leitura que segue um primário.
+ *
+ * Uso: java ReplicaServer urlDoPrimário [portaRMI] [nome]
+ * ex.: java ReplicaServer //localhost:1099/RemoteList 1199
+ *
+ * O primário precisa rodar com -Dremotelist.replication=true. Como no
+ * RemoteListServer, fora da porta 1099 o diretório de dados padrão é
+ * data-<porta>; ele só é usado se a réplica for promovida.
+ */
+public class ReplicaServer {
+    private static ReplicaImpl replica;
+
+    public static void main(String[] args) {
+        try {
+            if (args.length < 1) {
+                System.err.println("Uso: java ReplicaServer urlDoPrimário [portaRMI] [nome]");
+                System.exit(1);
+            }
+            String primaryUrl = args[0];
+            int rmiPort = args.length > 1 ? Integer.parseInt(args[1]) : 1199;
+            String serviceName = args.length > 2 ? args[2] : "RemoteList";
+            if (System.getProperty("remotelist.dataDir") == null) {
+                System.setProperty("remotelist.dataDir", "data-" + rmiPort);
+            }
+            String serviceUrl = "//localhost:" + rmiPort + "/" + serviceName;
+
+            System.out.println("=== INICIANDO RÉPLICA REMOTELIST ===");
+            System.out.println("Criando RMI Registry na porta " + rmiPort + "...");
+            LocateRegistry.createRegistry(rmiPort);
+
+            replica = new ReplicaImpl(serviceUrl, primaryUrl);
+            replica.start();
+            Naming.rebind(serviceUrl, replica);
+
+            System.out.println("\n✅ Réplica iniciada!");
+            System.out.println("📍 Registrada em: " + serviceUrl);
+            System.out.println("🔁 Seguindo o primário: " + primaryUrl);
+            System.out.println("🚀 Aguardando leituras de clientes...");
+
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                System.out.println("\n🛑 Sinal de shutdown recebido...");
+                try {
+                    replica.close();
+                } catch (Exception e) {
+                    System.err.println("❌ Falha ao encerrar a réplica: " + e.getMessage());
+                }
+                ServerLog.flush();
+                System.out.println("Réplica finalizada.");
+            }));
+
+            System.out.println("\n💡 Para parar a réplica, pressione Ctrl+C");
+            Object lock = new Object();
+            synchronized (lock) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    System.out.println("Réplica interrompida.");
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Erro na réplica: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,364 @@
+import java.rmi.Naming;
+import java.rmi.RemoteException;
+import java.rmi.ServerException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Cliente que escreve no primário e espalha as leituras pelas réplicas.
+ *
+ * get, size e listIds vão para as réplicas em rodízio; as demais operações
+ * vão para o primário. Cada leitura leva as condições de consistência do
+ * cliente:
+ * - ler as próprias escritas (padrão): depois de escrever, a próxima leitura
+ *   busca a última seq do primário e só aceita réplicas que já a aplicaram;
+ * - atraso máximo ({@code maxStaleMillis}, negativo para não limitar).
+ * Uma réplica que não atende a tempo, ou que está fora do ar, é pulada e a
+ * leitura cai para o primário; réplicas fora do ar ficam de lado por um
+ * segundo.
+ *
+ * {@link #failover()} promove a réplica mais adiantada quando o primário cai
+ * e faz as outras segui-la.
+ */
+public class ReplicatedListClient implements RemoteListInterface {
+    private static final long DOWN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /** Primário e réplicas atuais; trocado por inteiro no failover. */
+    private static final class Topology {
+        final String primaryUrl;
+        final RemoteListInterface primary;
+        final ReplicationSource source;
+        final List<String> replicaUrls;
+        final List<ReplicaInterface> replicas;
+        final AtomicLongArray downUntil;
+
+        Topology(String primaryUrl, List<String> replicaUrls) throws Exception {
+            this.primaryUrl = primaryUrl;
+            this.primary = (RemoteListInterface) Naming.lookup(primaryUrl);
+            this.source = (ReplicationSource) Naming.lookup(primaryUrl + "-replication");
+            this.replicaUrls = List.copyOf(replicaUrls);
+            this.replicas = new ArrayList<>();
+            for (String url : replicaUrls) {
+                replicas.add((ReplicaInterface) Naming.lookup(url));
+            }
+            this.downUntil = new AtomicLongArray(replicas.size());
+        }
+    }
+
+    private volatile Topology topology;
+    private final boolean readYourWrites;
+    private final long maxStaleMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong token = new AtomicLong();
+    private volatile boolean wrote;
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder primaryReads = new LongAdder();
+    private final HandleTable<String> handles = new HandleTable<>();
+
+    public ReplicatedListClient(String primaryUrl, List<String> replicaUrls, boolean readYourWrites,
+                                long maxStaleMillis) throws Exception {
+        this.topology = new Topology(primaryUrl, replicaUrls);
+        this.readYourWrites = readYourWrites;
+        this.maxStaleMillis = maxStaleMillis;
+    }
+
+    /**
+     * Conecta com a consistência das propriedades remotelist.read.readYourWrites
+     * (padrão true) e remotelist.read.maxStaleMillis (padrão -1, sem limite).
+     */
+    public static ReplicatedListClient connect(String primaryUrl, String... replicaUrls) throws Exception {
+        List<String> urls = new ArrayList<>();
+        for (String url : replicaUrls) {
+            urls.add(url.trim());
+        }
+        boolean ryw = Boolean.parseBoolean(System.getProperty("remotelist.read.readYourWrites", "true"));
+        return new ReplicatedListClient(primaryUrl, urls, ryw, Long.getLong("remotelist.read.maxStaleMillis", -1));
+    }
+
+    /** Maior seq que as leituras deste cliente exigem; pode ser passada a outro cliente. */
+    public long token() {
+        return token.get();
+    }
+
+    /** Passa a exigir pelo menos {@code seq} nas leituras (token de outro cliente). */
+    public void observe(long seq) {
+        token.accumulateAndGet(seq, Math::max);
+    }
+
+    public long replicaReads() {
+        return replicaReads.sum();
+    }
+
+    public long primaryReads() {
+        return primaryReads.sum();
+    }
+
+    public String primaryUrl() {
+        return topology.primaryUrl;
+    }
+
+    // O token só é buscado quando alguém lê depois de escrever. 'wrote' é
+    // limpo antes da busca: uma escrita que termine depois o marca de novo
+    private long minSeq(Topology t) throws RemoteException {
+        if (!readYourWrites) {
+            return 0;
+        }
+        if (wrote) {
+            wrote = false;
+            observe(t.source.lastSeq());
+        }
+        return token.get();
+    }
+
+    /** Uma leitura numa réplica com as condições de consistência. */
+    private interface ReplicaRead<T> {
+        T call(ReplicaInterface replica, long minSeq, long maxStaleMillis) throws RemoteException;
+    }
+
+    /** Uma chamada ao primário. */
+    private interface PrimaryCall<T> {
+        T call(RemoteListInterface primary) throws RemoteException;
+    }
+
+    private <T> T read(ReplicaRead<T> onReplica, PrimaryCall<T> onPrimary) throws RemoteException {
+        Topology t = topology;
+        int n = t.replicas.size();
+        if (n > 0) {
+            long minSeq = minSeq(t);
+            int first = Math.floorMod(next.getAndIncrement(), n);
+            int staleTries = 0;
+            for (int i = 0; i < n && staleTries < 2; i++) {
+                int r = (first + i) % n;
+                if (t.downUntil.get(r) > System.nanoTime()) {
+                    continue;
+                }
+                try {
+                    T result = onReplica.call(t.replicas.get(r), minSeq, maxStaleMillis);
+                    replicaReads.increment();
+                    return result;
+                } catch (ServerException e) {
+                    // Erros da própria operação (índice inválido etc.) valem como resposta
+                    if (!(e.getCause() instanceof ReplicaInterface.StaleReadException)) {
+                        throw e;
+                    }
+                    staleTries++;
+                } catch (RemoteException e) {
+                    t.downUntil.set(r, System.nanoTime() + DOWN_NANOS);
+                }
+            }
+        }
+        primaryReads.increment();
+        return onPrimary.call(t.primary);
+    }
+
+    private void wrote() {
+        if (readYourWrites) {
+            wrote = true;
+        }
+    }
+
+    @Override
+    public int get(String listId, int index) throws RemoteException {
+        return read((r, seq, stale) -> r.get(listId, index, seq, stale), p -> p.get(listId, index));
+    }
+
+    @Override
+    public int size(String listId) throws RemoteException {
+        return read((r, seq, stale) -> r.size(listId, seq, stale), p -> p.size(listId));
+    }
+
+    @Override
+    public String[] listIds() throws RemoteException {
+        return read((r, seq, stale) -> r.listIds(seq, stale), RemoteListInterface::listIds);
+    }
+
+    @Override
+    public RemoteListInterface.ListPage scanListIds(String prefix, String cursor, int limit) throws RemoteException {
+        return topology.primary.scanListIds(prefix, cursor, limit);
+    }
+
+    @Override
+    public boolean append(String listId, int value) throws RemoteException {
+        boolean result = topology.primary.append(listId, value);
+        wrote();
+        return result;
+    }
+
+    @Override
+    public int remove(String listId) throws RemoteException {
+        int result = topology.primary.remove(listId);
+        wrote();
+        return result;
+    }
+
+    @Override
+    public boolean appendAll(String listId, int[] values) throws RemoteException {
+        boolean result = topology.primary.appendAll(listId, values);
+        wrote();
+        return result;
+    }
+
+    @Override
+    public int[] getRange(String listId, int from, int to) throws RemoteException {
+        return topology.primary.getRange(listId, from, to);
+    }
+
+    @Override
+    public int[] removeN(String listId, int n) throws RemoteException {
+        int[] result = topology.primary.removeN(listId, n);
+        wrote();
+        return result;
+    }
+
+    @Override
+    public int[] sizes(String[] listIds) throws RemoteException {
+        return topology.primary.sizes(listIds);
+    }
+
+    @Override
+    public RemoteListInterface.Stats stats(String listId, int from, int to) throws RemoteException {
+        return topology.primary.stats(listId, from, to);
+    }
+
+    @Override
+    public long count(String listId, int from, int to, int low, int high) throws RemoteException {
+        return topology.primary.count(listId, from, to, low, high);
+    }
+
+    @Override
+    public long[] histogram(String listId, int from, int to, int low, int high, int buckets)
+            throws RemoteException {
+        return topology.primary.histogram(listId, from, to, low, high, buckets);
+    }
+
+    @Override
+    public RemoteListInterface.ScanResult scan(String listId, int from, int to, int low, int high, int limit)
+            throws RemoteException {
+        return topology.primary.scan(listId, from, to, low, high, limit);
+    }
+
+    // Handles locais: o roteamento precisa do listId, então o handle só o indexa aqui
+    @Override
+    public long open(String listId) throws RemoteException {
+        topology.primary.open(listId);  // cria a lista, como no servidor
+        return handles.open(listId, Function.identity());
+    }
+
+    @Override
+    public boolean append(long handle, int value) throws RemoteException {
+        return append(handles.resolve(handle), value);
+    }
+
+    @Override
+    public int get(long handle, int index) throws RemoteException {
+        return get(handles.resolve(handle), index);
+    }
+
+    @Override
+    public int remove(long handle) throws RemoteException {
+        return remove(handles.resolve(handle));
+    }
+
+    @Override
+    public int size(long handle) throws RemoteException {
+        return size(handles.resolve(handle));
+    }
+
+    @Override
+    public void shutdown() throws RemoteException {
+        topology.primary.shutdown();
+    }
+
+    /**
+     * Promove a réplica que aplicou mais do log, aponta as demais para ela e
+     * passa a usá-la como primário. Para quando o primário caiu: com ele vivo,
+     * os dois aceitariam escritas.
+     */
+    public synchronized String failover() throws Exception {
+        Promotion promotion = promoteBest(topology.replicaUrls);
+        topology = new Topology(promotion.url, promotion.followers);
+        // Escritas além do que a réplica herdou se perderam com o primário antigo
+        token.set(Math.min(token.get(), promotion.inheritedSeq));
+        return promotion.url;
+    }
+
+    /** Resultado de uma promoção: o novo primário e as réplicas que passaram a segui-lo. */
+    private static final class Promotion {
+        final String url;
+        final long inheritedSeq;
+        final List<String> followers;
+
+        Promotion(String url, long inheritedSeq, List<String> followers) {
+            this.url = url;
+            this.inheritedSeq = inheritedSeq;
+            this.followers = followers;
+        }
+    }
+
+    private static Promotion promoteBest(List<String> replicaUrls) throws Exception {
+        List<ReplicaInterface> replicas = new ArrayList<>();
+        int best = -1;
+        long bestSeq = -1;
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            ReplicaInterface replica = null;
+            try {
+                replica = (ReplicaInterface) Naming.lookup(replicaUrls.get(i));
+                long seq = replica.appliedSeq();
+                if (seq > bestSeq) {
+                    best = i;
+                    bestSeq = seq;
+                }
+            } catch (Exception e) {
+                System.err.println("⚠️ Réplica fora do ar: " + replicaUrls.get(i));
+                replica = null;
+            }
+            replicas.add(replica);
+        }
+        if (best < 0) {
+            throw new RemoteException("Nenhuma réplica disponível para promover");
+        }
+        String promotedUrl = replicaUrls.get(best);
+        long inherited = replicas.get(best).promote();
+        List<String> followers = new ArrayList<>();
+        for (int i = 0; i < replicas.size(); i++) {
+            if (i == best || replicas.get(i) == null) {
+                continue;
+            }
+            try {
+                replicas.get(i).follow(promotedUrl);
+                followers.add(replicaUrls.get(i));
+            } catch (RemoteException e) {
+                System.err.println("⚠️ Réplica não redirecionada: " + replicaUrls.get(i));
+            }
+        }
+        System.out.printf("🔁 %s promovida a primário (seq %d), %d réplica(s) seguindo%n",
+                promotedUrl, inherited, followers.size());
+        return new Promotion(promotedUrl, inherited, followers);
+    }
+
+    /**
+     * Uso: java ReplicatedListClient status urlRéplica1 [urlRéplica2 ...]
+     *      java ReplicatedListClient failover urlRéplica1 [urlRéplica2 ...]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Uso: java ReplicatedListClient status|failover urlRéplica1 [urlRéplica2 ...]");
+            System.exit(1);
+        }
+        List<String> urls = List.of(args).subList(1, args.length);
+        if (args[0].equals("failover")) {
+            promoteBest(urls);
+            return;
+        }
+        for (String url : urls) {
+            ReplicaInterface replica = (ReplicaInterface) Naming.lookup(url);
+            System.out.printf("%s: seq %d, atraso %d ms%n", url, replica.appliedSeq(), replica.stalenessMillis());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+import java.io.Serializable;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * Lado do primário na replicação: as réplicas puxam o log de operações por
+ * aqui (registrado como {@code <nome>-replication}).
+ */
+public interface ReplicationSource extends Remote {
+    /**
+     * Registros com seq maior que {@code afterSeq}, no máximo {@code max}, só
+     * os já sincronizados em disco no primário. Sem nada novo, espera até
+     * {@code waitMillis}. Se {@code afterSeq} já saiu do buffer, o lote volta
+     * com {@code resync} e a réplica precisa copiar as listas de novo.
+     */
+    LogBatch fetch(long afterSeq, int max, long waitMillis) throws RemoteException;
+
+    /** Última seq atribuída no primário: serve de token de leitura das próprias escritas. */
+    long lastSeq() throws RemoteException;
+
+    /**
+     * Ponto de partida para uma cópia completa: todo registro depois dele
+     * ainda está no buffer. A réplica guarda este valor, copia as listas e
+     * volta a puxar o log a partir dele.
+     */
+    long resyncPoint() throws RemoteException;
+
+    String[] listIds() throws RemoteException;
+
+    /** Cópia consistente de uma lista, com a seq da última operação incluída. */
+    ConcurrentIntList.Image fetchList(String listId) throws RemoteException;
+
+    /** Resposta de {@link #fetch}. */
+    final class LogBatch implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        public final OperationLog.Record[] records;
+        public final boolean resync;
+        // Seq durável do primário ao montar o lote: se a réplica aplicou até
+        // ela, estava em dia naquele instante
+        public final long primarySeq;
+        public final long waitedMillis;
+
+        LogBatch(OperationLog.Record[] records, boolean resync, long primarySeq, long waitedMillis) {
+            this.records = records;
+            this.resync = resync;
+            this.primarySeq = primarySeq;
+            this.waitedMillis = waitedMillis;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Envio do log do primário para as réplicas (replicação assíncrona).
+ *
+ * Guarda os registros mais recentes do log em memória (LogHistory), até um
+ * limite de valores; as réplicas puxam o log daqui com long polling. Só vão
+ * para as réplicas registros já sincronizados em disco no primário, então uma
+ * réplica nunca vê uma escrita que o primário poderia perder numa queda.
+ *
+ * A réplica que ficar para trás do que o buffer guarda recebe {@code resync}
+ * e copia as listas de novo (snapshots copy-on-write, sem parar escritores),
+ * com a mesma garantia: cada cópia espera o fsync da última escrita que contém.
+ */
+public class ReplicationSourceImpl extends UnicastRemoteObject implements ReplicationSource {
+    private static final long serialVersionUID = 1L;
+
+    private final RemoteListImpl remoteList;
+    private final OperationLog log;
+    private final LogHistory history;
+
+    public ReplicationSourceImpl(RemoteListImpl remoteList, OperationLog log, long maxBufferedValues)
+            throws RemoteException {
+        super();
+        this.remoteList = remoteList;
+        this.log = log;
+        this.history = new LogHistory(log, maxBufferedValues);
+    }
+
+    /** Cria a fonte a partir de remotelist.replication.bufferValues (padrão 4M valores, ~16 MB). */
+    public static ReplicationSourceImpl fromSystemProperties(RemoteListImpl remoteList, OperationLog log)
+            throws RemoteException {
+        return new ReplicationSourceImpl(remoteList, log,
+                Long.getLong("remotelist.replication.bufferValues", 4L << 20));
+    }
+
+    @Override
+    public LogBatch fetch(long afterSeq, int max, long waitMillis) throws RemoteException {
+        long start = System.nanoTime();
+        OperationLog.Record[] records;
+        try {
+            records = history.read(afterSeq, max, TimeUnit.MILLISECONDS.toNanos(waitMillis));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrompido esperando o log");
+        }
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (records == null) {
+            return new LogBatch(new OperationLog.Record[0], true, log.durableSeq(), waited);
+        }
+        return new LogBatch(records, false, log.durableSeq(), waited);
+    }
+
+    @Override
+    public long lastSeq() throws RemoteException {
+        return log.lastSeq();
+    }
+
+    @Override
+    public long resyncPoint() throws RemoteException {
+        return history.trimmedThrough();
+    }
+
+    @Override
+    public String[] listIds() throws RemoteException {
+        return remoteList.allListIds();
+    }
+
+    @Override
+    public ConcurrentIntList.Image fetchList(String listId) throws RemoteException {
+        ConcurrentIntList.Image image = remoteList.snapshotList(listId);
+        if (image != null) {
+            // Como no fetch: a cópia só sai depois que tudo o que ela contém está em disco
+            log.awaitSynced(image.lastSeq);
+        }
+        return image;
+    }
+}
@@ -0,0 +1,207 @@
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Log assíncrono do servidor.
+ *
+ * Quem registra só preenche um slot pré-alocado de um ring buffer limitado
+ * (sem formatar nada e sem alocar no caminho de append); uma thread em
+ * background formata os eventos e os entrega ao LogSink. Com o buffer cheio
+ * o evento é descartado e contado, em vez de bloquear quem chamou.
+ *
+ * Configuração por propriedades de sistema:
+ * - remotelist.log.level: TRACE, DEBUG, INFO (padrão), WARN, ERROR, OFF
+ * - remotelist.log.sample: registra 1 de cada N eventos de operação (padrão 1)
+ * - remotelist.log.bufferSize: slots do ring buffer (padrão 65536)
+ *
+ * Operações (append/remove/...) são registradas em DEBUG, então ficam
+ * desligadas no nível padrão.
+ */
+public final class ServerLog {
+    public enum Level { TRACE, DEBUG, INFO, WARN, ERROR, OFF }
+
+    /** Destino das linhas já formatadas; o padrão é a saída padrão. */
+    public interface LogSink {
+        void write(String line);
+    }
+
+    private static final ServerLog INSTANCE = new ServerLog(
+            Level.valueOf(System.getProperty("remotelist.log.level", "INFO").toUpperCase()),
+            Integer.getInteger("remotelist.log.sample", 1),
+            Integer.getInteger("remotelist.log.bufferSize", 1 << 16));
+
+    private static final class Event {
+        Level level;
+        long timeMillis;
+        String op;
+        String listId;
+        long a;
+        long b;
+        String message;
+    }
+
+    private volatile Level level;
+    private volatile int sampleEvery;
+    private volatile LogSink sink = System.out::println;
+
+    private final Event[] slots;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private final LongAdder dropped = new LongAdder();
+    private long reportedDropped;
+    private final Thread consumer;
+
+    private ServerLog(Level level, int sampleEvery, int bufferSize) {
+        int capacity = Integer.highestOneBit(Math.max(bufferSize, 64) - 1) << 1;
+        this.level = level;
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.slots = new Event[capacity];
+        this.published = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Event();
+            published.set(i, -1);
+        }
+        consumer = new Thread(this::drainLoop, "server-log");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    public static boolean isEnabled(Level level) {
+        return level.compareTo(INSTANCE.level) >= 0 && level != Level.OFF;
+    }
+
+    public static void setLevel(Level level) {
+        INSTANCE.level = level;
+    }
+
+    public static void setSampleEvery(int n) {
+        INSTANCE.sampleEvery = Math.max(1, n);
+    }
+
+    public static void setSink(LogSink sink) {
+        INSTANCE.sink = sink;
+    }
+
+    public static long droppedCount() {
+        return INSTANCE.dropped.sum();
+    }
+
+    /**
+     * Evento de operação no caminho quente: nenhum texto é montado aqui.
+     * Sai como {@code op=APPEND list=x arg=5 size=10}, onde arg é o valor
+     * (ou a quantidade, nas operações em lote) e size o tamanho resultante.
+     */
+    public static void op(Level level, String op, String listId, long arg, long size) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        int every = INSTANCE.sampleEvery;
+        if (every > 1 && ThreadLocalRandom.current().nextInt(every) != 0) {
+            return;
+        }
+        INSTANCE.publish(level, op, listId, arg, size, null);
+    }
+
+    public static void info(String message) {
+        log(Level.INFO, message);
+    }
+
+    public static void warn(String message) {
+        log(Level.WARN, message);
+    }
+
+    public static void error(String message) {
+        log(Level.ERROR, message);
+    }
+
+    public static void log(Level level, String message) {
+        if (isEnabled(level)) {
+            INSTANCE.publish(level, null, null, 0, 0, message);
+        }
+    }
+
+    /** Entrega o que estiver no buffer antes de encerrar o processo. */
+    public static void flush() {
+        ServerLog log = INSTANCE;
+        long target = log.tail.get();
+        long deadline = System.nanoTime() + 2_000_000_000L;
+        while (log.head < target && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(1_000_000);
+        }
+    }
+
+    private void publish(Level level, String op, String listId, long a, long b, String message) {
+        long seq;
+        do {
+            seq = tail.get();
+            if (seq - head >= slots.length) {
+                dropped.increment();
+                return;
+            }
+        } while (!tail.compareAndSet(seq, seq + 1));
+
+        Event e = slots[(int) seq & mask];
+        e.level = level;
+        e.timeMillis = System.currentTimeMillis();
+        e.op = op;
+        e.listId = listId;
+        e.a = a;
+        e.b = b;
+        e.message = message;
+        published.set((int) seq & mask, seq);  // escrita volátil: publica o slot
+    }
+
+    private void drainLoop() {
+        StringBuilder line = new StringBuilder(128);
+        int idle = 0;
+        while (true) {
+            long h = head;
+            int index = (int) h & mask;
+            if (published.get(index) != h) {
+                reportDropped();
+                // Espera curta crescente: sem sinalização entre produtor e consumidor
+                LockSupport.parkNanos(idle < 10 ? 50_000 : 1_000_000);
+                idle++;
+                continue;
+            }
+            idle = 0;
+            if ((h & 1023) == 0) {
+                reportDropped();  // também sob carga contínua, quando nunca fica ocioso
+            }
+            Event e = slots[index];
+            line.setLength(0);
+            line.append(Instant.ofEpochMilli(e.timeMillis)).append(' ').append(e.level).append(' ');
+            if (e.op != null) {
+                line.append("op=").append(e.op).append(" list=").append(e.listId)
+                        .append(" arg=").append(e.a).append(" size=").append(e.b);
+            } else {
+                line.append(e.message);
+            }
+            e.message = null;
+            e.listId = null;
+            head = h + 1;  // libera o slot para os produtores
+            try {
+                sink.write(line.toString());
+            } catch (RuntimeException ex) {
+                // O sink não pode derrubar a thread de log
+            }
+        }
+    }
+
+    private void reportDropped() {
+        long total = dropped.sum();
+        if (total != reportedDropped) {
+            long delta = total - reportedDropped;
+            reportedDropped = total;
+            sink.write(Instant.now() + " WARN " + delta + " eventos de log descartados (buffer cheio, total "
+                    + total + ")");
+        }
+    }
+}
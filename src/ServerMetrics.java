@@ -0,0 +1,361 @@
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Métricas do servidor: chamadas, erros e latência por método, e o tamanho
+ * e a memória estimada das listas.
+ *
+ * Gravar custa dois LongAdder e um bucket de histograma (também LongAdder),
+ * então threads do RMI em listas diferentes não disputam a mesma linha de
+ * cache. Os números de listas são lidos só quando alguém consulta.
+ *
+ * Exportação:
+ * - JMX: {@code RemoteList:type=Server} e {@code RemoteList:type=Method,name=<método>}
+ * - HTTP em texto (formato Prometheus) na porta remotelist.metrics.port
+ *   (padrão 9404, 0 desliga): {@code /metrics} com os agregados e as maiores
+ *   listas, {@code /lists} com tamanho e memória de todas as listas
+ */
+public class ServerMetrics {
+    public enum Method { APPEND, GET, REMOVE, SIZE, LIST_IDS, APPEND_ALL, GET_RANGE, REMOVE_N, SIZES, QUERY, OPEN }
+
+    /** Atributos de um método no JMX; latências em microssegundos. */
+    public interface MethodStatsMBean {
+        long getCalls();
+        long getErrors();
+        double getMeanMicros();
+        double getP50Micros();
+        double getP99Micros();
+        double getP999Micros();
+        double getMaxMicros();
+    }
+
+    public interface ServerStatsMBean {
+        int getListCount();
+        long getTotalElements();
+        long getEstimatedMemoryBytes();
+        long getTotalCalls();
+        /** Do início do main até aceitar conexões (-1 enquanto inicializa). */
+        long getStartupMillis();
+        String scrape();
+    }
+
+    private static final int TOP_LISTS = Integer.getInteger("remotelist.metrics.topLists", 20);
+
+    /**
+     * Histograma concorrente: buckets log-lineares com 16 subdivisões por
+     * potência de 2 (~6% de precisão), suficiente para painéis e alertas.
+     */
+    static final class Histogram {
+        private static final int SUB_BITS = 4;
+        private static final int SUB_HALF = 1 << SUB_BITS;
+        private static final int LINEAR = SUB_HALF << 1;
+        private static final long MAX_TRACKED = 1L << 40;  // ~18 minutos em ns
+        private static final int BUCKETS = indexFor(MAX_TRACKED) + 1;
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        Histogram() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private static int indexFor(long value) {
+            if (value < LINEAR) {
+                return (int) Math.max(0, value);
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+            return shift * SUB_HALF + (int) (value >>> shift);
+        }
+
+        private static long highestValueAt(int index) {
+            if (index < LINEAR) {
+                return index;
+            }
+            int shift = (index >> SUB_BITS) - 1;
+            long sub = index - (long) shift * SUB_HALF;
+            return ((sub + 1) << shift) - 1;
+        }
+
+        void record(long nanos) {
+            buckets[indexFor(Math.min(nanos, MAX_TRACKED))].increment();
+            count.increment();
+            sum.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        double mean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        /** Percentis (0..100) em uma única passada; aproximado sob gravação concorrente. */
+        long[] percentiles(double... ps) {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets[i].sum();
+                total += counts[i];
+            }
+            long[] out = new long[ps.length];
+            if (total == 0) {
+                return out;
+            }
+            long maxValue = max.get();
+            for (int p = 0; p < ps.length; p++) {
+                long target = Math.max(1, (long) Math.ceil(ps[p] / 100.0 * total));
+                long seen = 0;
+                for (int i = 0; i < BUCKETS; i++) {
+                    seen += counts[i];
+                    if (seen >= target) {
+                        out[p] = Math.min(highestValueAt(i), maxValue);
+                        break;
+                    }
+                }
+            }
+            return out;
+        }
+    }
+
+    private final class MethodStats implements MethodStatsMBean {
+        final LongAdder errors = new LongAdder();
+        final Histogram latency = new Histogram();
+
+        @Override public long getCalls() { return latency.count(); }
+        @Override public long getErrors() { return errors.sum(); }
+        @Override public double getMeanMicros() { return latency.mean() / 1e3; }
+        @Override public double getP50Micros() { return latency.percentiles(50)[0] / 1e3; }
+        @Override public double getP99Micros() { return latency.percentiles(99)[0] / 1e3; }
+        @Override public double getP999Micros() { return latency.percentiles(99.9)[0] / 1e3; }
+        @Override public double getMaxMicros() { return latency.max() / 1e3; }
+    }
+
+    private final Map<String, ConcurrentIntList> lists;
+    private final MethodStats[] methods = new MethodStats[Method.values().length];
+    private HttpServer http;
+    private volatile AdmissionControl admission;
+    private volatile long startupMillis = -1;
+
+    public ServerMetrics(Map<String, ConcurrentIntList> lists) {
+        this.lists = lists;
+        for (int i = 0; i < methods.length; i++) {
+            methods[i] = new MethodStats();
+        }
+    }
+
+    void setAdmission(AdmissionControl admission) {
+        this.admission = admission;
+    }
+
+    public void setStartupMillis(long startupMillis) {
+        this.startupMillis = startupMillis;
+    }
+
+    /** Registra uma chamada iniciada em {@code startNanos} (System.nanoTime). */
+    public void record(Method method, long startNanos, boolean ok) {
+        MethodStats stats = methods[method.ordinal()];
+        stats.latency.record(System.nanoTime() - startNanos);
+        if (!ok) {
+            stats.errors.increment();
+        }
+    }
+
+    public void registerMBeans() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ServerStatsMBean serverStats = new ServerStatsMBean() {
+            @Override public int getListCount() { return lists.size(); }
+            @Override public long getTotalElements() { return totals()[0]; }
+            @Override public long getEstimatedMemoryBytes() { return totals()[1]; }
+            @Override public long getTotalCalls() {
+                long total = 0;
+                for (MethodStats stats : methods) {
+                    total += stats.getCalls();
+                }
+                return total;
+            }
+            @Override public long getStartupMillis() { return startupMillis; }
+            @Override public String scrape() { return ServerMetrics.this.scrape(); }
+        };
+        server.registerMBean(new StandardMBean(serverStats, ServerStatsMBean.class),
+                new ObjectName("RemoteList:type=Server"));
+        for (Method method : Method.values()) {
+            server.registerMBean(new StandardMBean(methods[method.ordinal()], MethodStatsMBean.class),
+                    new ObjectName("RemoteList:type=Method,name=" + methodName(method)));
+        }
+    }
+
+    /** Sobe o endpoint HTTP em localhost; porta 0 não sobe nada. */
+    public void startHttp(int port) throws IOException {
+        if (port <= 0) {
+            return;
+        }
+        http = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        http.createContext("/metrics", exchange -> respond(exchange, scrape()));
+        http.createContext("/lists", exchange -> respond(exchange, listsReport()));
+        http.start();
+    }
+
+    public void stopHttp() {
+        if (http != null) {
+            http.stop(0);
+        }
+    }
+
+    private static void respond(com.sun.net.httpserver.HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /** Agregados no formato de texto do Prometheus. */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        out.append("# TYPE remotelist_calls_total counter\n");
+        for (Method method : Method.values()) {
+            line(out, "remotelist_calls_total", "method", methodName(method), methods[method.ordinal()].getCalls());
+        }
+        out.append("# TYPE remotelist_errors_total counter\n");
+        for (Method method : Method.values()) {
+            line(out, "remotelist_errors_total", "method", methodName(method), methods[method.ordinal()].getErrors());
+        }
+        out.append("# TYPE remotelist_latency_seconds summary\n");
+        for (Method method : Method.values()) {
+            Histogram h = methods[method.ordinal()].latency;
+            long[] p = h.percentiles(50, 99, 99.9);
+            String name = methodName(method);
+            out.append("remotelist_latency_seconds{method=\"").append(name).append("\",quantile=\"0.5\"} ")
+                    .append(p[0] / 1e9).append('\n');
+            out.append("remotelist_latency_seconds{method=\"").append(name).append("\",quantile=\"0.99\"} ")
+                    .append(p[1] / 1e9).append('\n');
+            out.append("remotelist_latency_seconds{method=\"").append(name).append("\",quantile=\"0.999\"} ")
+                    .append(p[2] / 1e9).append('\n');
+            out.append("remotelist_latency_seconds_count{method=\"").append(name).append("\"} ")
+                    .append(h.count()).append('\n');
+            out.append("remotelist_latency_seconds_max{method=\"").append(name).append("\"} ")
+                    .append(h.max() / 1e9).append('\n');
+        }
+
+        List<Map.Entry<String, ConcurrentIntList>> largest = new ArrayList<>(TOP_LISTS + 1);
+        long elements = 0;
+        long bytes = 0;
+        int spilled = 0;
+        for (Map.Entry<String, ConcurrentIntList> entry : lists.entrySet()) {
+            elements += entry.getValue().size();
+            bytes += entry.getValue().memoryBytes();
+            if (entry.getValue().isSpilled()) {
+                spilled++;
+            }
+            keepLargest(largest, entry);
+        }
+        out.append("# TYPE remotelist_lists gauge\n");
+        out.append("remotelist_lists ").append(lists.size()).append('\n');
+        out.append("# TYPE remotelist_elements gauge\n");
+        out.append("remotelist_elements ").append(elements).append('\n');
+        out.append("# TYPE remotelist_memory_bytes gauge\n");
+        out.append("remotelist_memory_bytes ").append(bytes).append('\n');
+        out.append("# TYPE remotelist_spilled_lists gauge\n");
+        out.append("remotelist_spilled_lists ").append(spilled).append('\n');
+        long startup = startupMillis;
+        if (startup >= 0) {
+            out.append("# TYPE remotelist_startup_seconds gauge\n");
+            out.append("remotelist_startup_seconds ").append(startup / 1e3).append('\n');
+        }
+        AdmissionControl control = admission;
+        if (control != null) {
+            control.scrape(out);
+        }
+        out.append("# TYPE remotelist_list_elements gauge\n");
+        for (Map.Entry<String, ConcurrentIntList> entry : largest) {
+            line(out, "remotelist_list_elements", "list", entry.getKey(), entry.getValue().size());
+        }
+        return out.toString();
+    }
+
+    /** Todas as listas: {@code listId elementos bytes}, uma por linha. */
+    public String listsReport() {
+        StringBuilder out = new StringBuilder(64 * Math.min(lists.size(), 100_000));
+        for (Map.Entry<String, ConcurrentIntList> entry : lists.entrySet()) {
+            out.append(entry.getKey()).append(' ').append(entry.getValue().size())
+                    .append(' ').append(entry.getValue().memoryBytes()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private long[] totals() {
+        long elements = 0;
+        long bytes = 0;
+        for (ConcurrentIntList list : lists.values()) {
+            elements += list.size();
+            bytes += list.memoryBytes();
+        }
+        return new long[] {elements, bytes};
+    }
+
+    // Mantém as TOP_LISTS maiores, em ordem decrescente de tamanho
+    private static void keepLargest(List<Map.Entry<String, ConcurrentIntList>> largest,
+                                    Map.Entry<String, ConcurrentIntList> entry) {
+        int size = entry.getValue().size();
+        int pos = largest.size();
+        while (pos > 0 && largest.get(pos - 1).getValue().size() < size) {
+            pos--;
+        }
+        if (pos < TOP_LISTS) {
+            largest.add(pos, entry);
+            if (largest.size() > TOP_LISTS) {
+                largest.remove(TOP_LISTS);
+            }
+        }
+    }
+
+    private static void line(StringBuilder out, String metric, String label, String value, long number) {
+        out.append(metric).append('{').append(label).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\');
+            } else if (c == '\n') {
+                out.append("\\n");
+                continue;
+            }
+            out.append(c);
+        }
+        out.append("\"} ").append(number).append('\n');
+    }
+
+    private static String methodName(Method method) {
+        switch (method) {
+            case LIST_IDS: return "listIds";
+            case APPEND_ALL: return "appendAll";
+            case GET_RANGE: return "getRange";
+            case REMOVE_N: return "removeN";
+            default: return method.name().toLowerCase();
+        }
+    }
+}
@@ -0,0 +1,256 @@
+import java.rmi.Naming;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+
+/**
+ * Cliente roteador para vários servidores RemoteList (shards).
+ *
+ * Cada listId pertence a um nó, escolhido por hashing consistente
+ * ({@link HashRing}); operações de uma lista vão direto para o dono.
+ * listIds e sizes consultam os nós em paralelo e juntam os resultados, e
+ * shutdown é repassado a todos.
+ *
+ * Os nós são identificados pela URL RMI, então o mesmo conjunto de URLs
+ * sempre produz o mesmo anel em qualquer cliente.
+ */
+public class ShardedListClient implements RemoteListInterface {
+    private final Map<String, RemoteListInterface> nodes;
+    private final HashRing<String> ring;
+    private final ExecutorService fanOut;
+    private final HandleTable<String> handles = new HandleTable<>();
+
+    public ShardedListClient(Map<String, RemoteListInterface> nodes) {
+        this.nodes = new LinkedHashMap<>(nodes);
+        this.ring = new HashRing<>(new ArrayList<>(nodes.keySet()));
+        this.fanOut = ThreadSupport.newPerTaskExecutor(false, "shard-fanout");
+    }
+
+    /** Conecta a cada URL RMI (ex.: //localhost:1100/RemoteList). */
+    public static ShardedListClient connect(String... urls) throws Exception {
+        Map<String, RemoteListInterface> nodes = new LinkedHashMap<>();
+        for (String url : urls) {
+            nodes.put(url.trim(), (RemoteListInterface) Naming.lookup(url.trim()));
+        }
+        return new ShardedListClient(nodes);
+    }
+
+    /** URL do nó dono da lista. */
+    public String nodeFor(String listId) {
+        return ring.nodeFor(listId);
+    }
+
+    public List<String> nodeUrls() {
+        return ring.nodes();
+    }
+
+    private RemoteListInterface owner(String listId) {
+        return nodes.get(ring.nodeFor(listId));
+    }
+
+    @Override
+    public boolean append(String listId, int value) throws RemoteException {
+        return owner(listId).append(listId, value);
+    }
+
+    @Override
+    public int get(String listId, int index) throws RemoteException {
+        return owner(listId).get(listId, index);
+    }
+
+    @Override
+    public int remove(String listId) throws RemoteException {
+        return owner(listId).remove(listId);
+    }
+
+    @Override
+    public int size(String listId) throws RemoteException {
+        return owner(listId).size(listId);
+    }
+
+    @Override
+    public boolean appendAll(String listId, int[] values) throws RemoteException {
+        return owner(listId).appendAll(listId, values);
+    }
+
+    @Override
+    public int[] getRange(String listId, int from, int to) throws RemoteException {
+        return owner(listId).getRange(listId, from, to);
+    }
+
+    @Override
+    public int[] removeN(String listId, int n) throws RemoteException {
+        return owner(listId).removeN(listId, n);
+    }
+
+    @Override
+    public String[] listIds() throws RemoteException {
+        List<CompletableFuture<String[]>> parts = new ArrayList<>();
+        for (RemoteListInterface node : nodes.values()) {
+            parts.add(async(node::listIds));
+        }
+        List<String> all = new ArrayList<>();
+        for (CompletableFuture<String[]> part : parts) {
+            all.addAll(Arrays.asList(await(part)));
+        }
+        return all.toArray(new String[0]);
+    }
+
+    /**
+     * Junta a mesma página de cada nó (os ids são disjuntos e ordenados em
+     * cada um). Um nó que parou no limite pode ter ids logo depois do último
+     * que mandou, então a página só vai até o menor desses cursores.
+     */
+    @Override
+    public RemoteListInterface.ListPage scanListIds(String prefix, String cursor, int limit) throws RemoteException {
+        List<CompletableFuture<RemoteListInterface.ListPage>> parts = new ArrayList<>();
+        for (RemoteListInterface node : nodes.values()) {
+            parts.add(async(() -> node.scanListIds(prefix, cursor, limit)));
+        }
+        TreeMap<String, Integer> merged = new TreeMap<>();
+        String bound = null;
+        for (CompletableFuture<RemoteListInterface.ListPage> part : parts) {
+            RemoteListInterface.ListPage page = await(part);
+            for (int i = 0; i < page.ids.length; i++) {
+                merged.put(page.ids[i], page.sizes[i]);
+            }
+            if (page.next != null && (bound == null || page.next.compareTo(bound) < 0)) {
+                bound = page.next;
+            }
+        }
+        Map<String, Integer> taken = bound != null ? merged.headMap(bound, true) : merged;
+        int n = Math.min(limit, taken.size());
+        String[] ids = new String[n];
+        int[] sizes = new int[n];
+        Iterator<Map.Entry<String, Integer>> it = taken.entrySet().iterator();
+        for (int i = 0; i < n; i++) {
+            Map.Entry<String, Integer> entry = it.next();
+            ids[i] = entry.getKey();
+            sizes[i] = entry.getValue();
+        }
+        boolean more = bound != null || n < merged.size();
+        return new RemoteListInterface.ListPage(ids, sizes, more && n > 0 ? ids[n - 1] : null);
+    }
+
+    @Override
+    public int[] sizes(String[] listIds) throws RemoteException {
+        // Agrupa os ids por nó lembrando a posição original de cada um
+        Map<String, List<Integer>> positions = new HashMap<>();
+        for (int i = 0; i < listIds.length; i++) {
+            positions.computeIfAbsent(ring.nodeFor(listIds[i]), k -> new ArrayList<>()).add(i);
+        }
+        List<List<Integer>> partIndexes = new ArrayList<>();
+        List<CompletableFuture<int[]>> parts = new ArrayList<>();
+        for (Map.Entry<String, List<Integer>> entry : positions.entrySet()) {
+            List<Integer> indexes = entry.getValue();
+            String[] ids = new String[indexes.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = listIds[indexes.get(i)];
+            }
+            RemoteListInterface node = nodes.get(entry.getKey());
+            partIndexes.add(indexes);
+            parts.add(async(() -> node.sizes(ids)));
+        }
+        int[] result = new int[listIds.length];
+        for (int p = 0; p < parts.size(); p++) {
+            int[] sizes = await(parts.get(p));
+            List<Integer> indexes = partIndexes.get(p);
+            for (int i = 0; i < sizes.length; i++) {
+                result[indexes.get(i)] = sizes[i];
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public RemoteListInterface.Stats stats(String listId, int from, int to) throws RemoteException {
+        return owner(listId).stats(listId, from, to);
+    }
+
+    @Override
+    public long count(String listId, int from, int to, int low, int high) throws RemoteException {
+        return owner(listId).count(listId, from, to, low, high);
+    }
+
+    @Override
+    public long[] histogram(String listId, int from, int to, int low, int high, int buckets)
+            throws RemoteException {
+        return owner(listId).histogram(listId, from, to, low, high, buckets);
+    }
+
+    @Override
+    public RemoteListInterface.ScanResult scan(String listId, int from, int to, int low, int high, int limit)
+            throws RemoteException {
+        return owner(listId).scan(listId, from, to, low, high, limit);
+    }
+
+    // Handles locais: o roteamento precisa do listId, então o handle só o indexa aqui
+    @Override
+    public long open(String listId) throws RemoteException {
+        owner(listId).open(listId);  // cria a lista, como no servidor
+        return handles.open(listId, Function.identity());
+    }
+
+    @Override
+    public boolean append(long handle, int value) throws RemoteException {
+        return append(handles.resolve(handle), value);
+    }
+
+    @Override
+    public int get(long handle, int index) throws RemoteException {
+        return get(handles.resolve(handle), index);
+    }
+
+    @Override
+    public int remove(long handle) throws RemoteException {
+        return remove(handles.resolve(handle));
+    }
+
+    @Override
+    public int size(long handle) throws RemoteException {
+        return size(handles.resolve(handle));
+    }
+
+    @Override
+    public void shutdown() throws RemoteException {
+        List<CompletableFuture<Boolean>> parts = new ArrayList<>();
+        for (RemoteListInterface node : nodes.values()) {
+            parts.add(async(() -> {
+                node.shutdown();
+                return true;
+            }));
+        }
+        for (CompletableFuture<Boolean> part : parts) {
+            await(part);
+        }
+    }
+
+    /** Uma chamada remota que pode falhar com RemoteException. */
+    private interface RemoteCall<T> {
+        T call() throws RemoteException;
+    }
+
+    private <T> CompletableFuture<T> async(RemoteCall<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return call.call();
+            } catch (RemoteException e) {
+                throw new CompletionException(e);
+            }
+        }, fanOut);
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws RemoteException {
+        return BinaryClient.await(future);
+    }
+}
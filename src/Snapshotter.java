@@ -0,0 +1,481 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Snapshots periódicos em background de todas as listas.
+ *
+ * Formato (versão 3): [int magic][int versão][long seqDeCorte], e para cada
+ * lista [byte 1][short tamId][id UTF-8][long últimaSeq][int n][n ints][int
+ * crc32c do registro], terminando com [byte 0][long númeroDeListas]. O CRC
+ * por lista permite verificar e carregar as listas em paralelo. Com
+ * remotelist.snapshot.compress (padrão true), listas que encolhem com o
+ * PackedInts são gravadas como [byte 2][short tamId][id][long últimaSeq][int
+ * bytes][PackedInts][int crc32c]. A versão 2 é a mesma sem o registro 2.
+ *
+ * Coordenação com o WAL: antes de copiar as listas o log troca de segmento;
+ * a seq de corte é a primeira do novo segmento. Como cada lista é copiada
+ * depois da troca, o snapshot contém toda operação com seq menor que o corte
+ * e os segmentos anteriores podem ser apagados. Operações posteriores ao
+ * corte que já estejam no snapshot são puladas na reaplicação pela
+ * última seq gravada de cada lista.
+ */
+public class Snapshotter {
+    private static final int MAGIC = 0x524C534E; // "RLSN"
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 16;
+    // Tamanho máximo de cada região mapeada na carga
+    private static final int MAP_WINDOW = 256 * 1024 * 1024;
+    private static final byte LIST = 1;
+    private static final byte PACKED_LIST = 2;
+
+    private final RemoteListImpl remoteList;
+    private final OperationLog log;
+    private final Path dir;
+    private final long intervalSeconds;
+    private final boolean compress;
+    private ScheduledExecutorService scheduler;
+
+    public Snapshotter(RemoteListImpl remoteList, OperationLog log, Path dir, long intervalSeconds)
+            throws IOException {
+        this(remoteList, log, dir, intervalSeconds, true);
+    }
+
+    public Snapshotter(RemoteListImpl remoteList, OperationLog log, Path dir, long intervalSeconds,
+            boolean compress) throws IOException {
+        this.remoteList = remoteList;
+        this.log = log;
+        this.dir = dir;
+        this.intervalSeconds = intervalSeconds;
+        this.compress = compress;
+        Files.createDirectories(dir);
+    }
+
+    /** Cria o snapshotter a partir das propriedades de sistema remotelist.*. */
+    public static Snapshotter fromSystemProperties(RemoteListImpl remoteList, OperationLog log)
+            throws IOException {
+        Path dir = Path.of(System.getProperty("remotelist.dataDir", "data"), "snapshots");
+        long interval = Long.getLong("remotelist.snapshot.intervalSeconds", 30);
+        boolean compress = Boolean.parseBoolean(System.getProperty("remotelist.snapshot.compress", "true"));
+        return new Snapshotter(remoteList, log, dir, interval, compress);
+    }
+
+    public long intervalSeconds() {
+        return intervalSeconds;
+    }
+
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "snapshotter");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                takeSnapshot();
+            } catch (Exception e) {
+                ServerLog.error("Falha no snapshot: " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        System.out.printf("Scheduler de snapshots iniciado (intervalo: %ds)%n", intervalSeconds);
+    }
+
+    /** Para o agendamento e tira um último snapshot, encurtando o próximo restart. */
+    public void shutdown() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        takeSnapshot();
+    }
+
+    public synchronized void takeSnapshot() throws IOException {
+        long start = System.nanoTime();
+        long cutSeq = log.rotate();
+        Path target = dir.resolve(String.format("snapshot-%020d.snap", cutSeq));
+        Path tmp = dir.resolve(target.getFileName() + ".tmp");
+
+        long lists = 0;
+        long elements = 0;
+        long bytes;
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            RecordWriter out = new RecordWriter(channel);
+            out.buf.putInt(MAGIC).putInt(VERSION).putLong(cutSeq);
+            for (String listId : remoteList.allListIds()) {
+                ConcurrentIntList.Image image = remoteList.snapshotList(listId);
+                if (image == null) {
+                    continue;
+                }
+                byte[] id = listId.getBytes(StandardCharsets.UTF_8);
+                PackedInts packed = compressible(image.values) ? PackedInts.pack(image.values, 0,
+                        image.values.length) : null;
+                if (packed != null && packed.encodedBytes() < 4L * image.values.length) {
+                    out.writePackedList(id, image.lastSeq, packed);
+                } else {
+                    out.writeList(id, image.lastSeq, image.values);
+                }
+                lists++;
+                elements += image.values.length;
+            }
+            out.ensure(9);
+            out.buf.put((byte) 0).putLong(lists);
+            out.flush();
+            channel.force(true);
+            bytes = channel.size();
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        // A renomeação precisa estar em disco antes de apagar o que o snapshot substitui
+        OperationLog.syncDirectory(dir);
+
+        // O novo snapshot cobre tudo antes do corte: snapshots e segmentos antigos saem
+        for (Path old : snapshots()) {
+            if (!old.equals(target)) {
+                Files.deleteIfExists(old);
+            }
+        }
+        log.deleteSegmentsBefore(cutSeq);
+
+        ServerLog.info(String.format("Snapshot: %d listas, %d elementos, %d KB em %d ms (corte na seq %d)",
+                lists, elements, bytes >> 10, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), cutSeq));
+    }
+
+    // Listas comprimidas são lidas inteiras de uma janela de mapeamento
+    private boolean compressible(int[] values) {
+        return compress && values.length >= PackedInts.FRAME && 4L * values.length <= MAP_WINDOW / 2;
+    }
+
+    /** Escrita bufferizada em um buffer direto, calculando o CRC de cada registro. */
+    private static final class RecordWriter {
+        final FileChannel channel;
+        final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+        final CRC32C crc = new CRC32C();
+
+        RecordWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void writeList(byte[] id, long lastSeq, int[] values) throws IOException {
+            crc.reset();
+            ensure(1 + 2 + id.length + 8 + 4);
+            int from = buf.position();
+            buf.put(LIST).putShort((short) id.length).put(id).putLong(lastSeq).putInt(values.length);
+            checksum(from);
+            int written = 0;
+            while (written < values.length) {
+                ensure(4);
+                int n = Math.min(values.length - written, buf.remaining() / 4);
+                from = buf.position();
+                // Cópia em bloco pela visão IntBuffer, sem um putInt por elemento
+                buf.asIntBuffer().put(values, written, n);
+                buf.position(from + n * 4);
+                checksum(from);
+                written += n;
+            }
+            ensure(4);
+            buf.putInt((int) crc.getValue());
+        }
+
+        void writePackedList(byte[] id, long lastSeq, PackedInts values) throws IOException {
+            ByteBuffer encoded = ByteBuffer.allocate(values.encodedBytes());
+            values.writeTo(encoded);
+            encoded.flip();
+            crc.reset();
+            ensure(1 + 2 + id.length + 8 + 4);
+            int from = buf.position();
+            buf.put(PACKED_LIST).putShort((short) id.length).put(id).putLong(lastSeq).putInt(encoded.remaining());
+            checksum(from);
+            while (encoded.hasRemaining()) {
+                ensure(1);
+                ByteBuffer piece = encoded.slice();
+                piece.limit(Math.min(piece.remaining(), buf.remaining()));
+                from = buf.position();
+                buf.put(piece);
+                encoded.position(encoded.position() + piece.limit());
+                checksum(from);
+            }
+            ensure(4);
+            buf.putInt((int) crc.getValue());
+        }
+
+        private void checksum(int from) {
+            ByteBuffer region = buf.duplicate();
+            region.position(from).limit(buf.position());
+            crc.update(region);
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (buf.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            buf.clear();
+        }
+    }
+
+    /**
+     * Carrega o snapshot mais recente, se houver, nas listas do RemoteListImpl.
+     * Retorna a maior seq coberta pelo snapshot (0 se não houver snapshot).
+     *
+     * O arquivo é mapeado em memória: uma primeira passada lê só os cabeçalhos
+     * das listas, e depois grupos de listas vizinhas são verificados e copiados
+     * em paralelo, direto do mapeamento para os segmentos de cada lista.
+     */
+    public long loadLatest() throws IOException {
+        List<Path> all = snapshots();
+        if (all.isEmpty()) {
+            System.out.println("Nenhum snapshot encontrado.");
+            return 0;
+        }
+        Path latest = all.get(all.size() - 1);
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(latest, StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), HEADER_BYTES));
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+                throw new IOException("Snapshot com formato desconhecido: " + latest);
+            }
+            int version = header.getInt();
+            if (version == 1) {
+                return loadVersion1(latest);
+            }
+            if (version != 2 && version != VERSION) {
+                throw new IOException("Versão de snapshot não suportada: " + version);
+            }
+            long maxSeq = header.getLong() - 1;
+
+            List<Entry> entries = scanEntries(channel, latest);
+            List<List<Entry>> groups = groupByWindow(entries);
+            AtomicLong elements = new AtomicLong();
+            // Verificação e cópia em paralelo, um mapeamento por grupo
+            groups.parallelStream().forEach(group -> {
+                try {
+                    elements.addAndGet(restoreGroup(channel, group));
+                } catch (IOException e) {
+                    throw new IllegalStateException("Snapshot corrompido: " + latest + " (" + e.getMessage() + ")", e);
+                }
+            });
+            for (Entry entry : entries) {
+                maxSeq = Math.max(maxSeq, entry.lastSeq);
+            }
+            System.out.printf("Snapshot %s carregado: %d listas, %d elementos em %d ms%n",
+                    latest.getFileName(), entries.size(), elements.get(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return maxSeq;
+        }
+    }
+
+    /** Cabeçalho de uma lista no arquivo: onde começa o registro e onde estão os valores. */
+    private static final class Entry {
+        final String listId;
+        final long lastSeq;
+        final long recordStart;
+        final long valuesStart;
+        final int count;  // ints, ou bytes do PackedInts se packed
+        final boolean packed;
+
+        Entry(String listId, long lastSeq, long recordStart, long valuesStart, int count, boolean packed) {
+            this.listId = listId;
+            this.lastSeq = lastSeq;
+            this.recordStart = recordStart;
+            this.valuesStart = valuesStart;
+            this.count = count;
+            this.packed = packed;
+        }
+
+        long valueBytes() {
+            return packed ? count : 4L * count;
+        }
+
+        long recordEnd() {
+            return valuesStart + valueBytes() + 4;  // inclui o CRC
+        }
+    }
+
+    private static List<Entry> scanEntries(FileChannel channel, Path file) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        long size = channel.size();
+        long windowStart = HEADER_BYTES;
+        MappedByteBuffer window = null;
+        long pos = HEADER_BYTES;
+        while (true) {
+            // Remapeia quando o próximo cabeçalho (até 1+2+65535+8+4 bytes) não cabe na janela
+            int maxHeader = 1 + 2 + 0xFFFF + 8 + 4 + 8;
+            if (window == null || pos + Math.min(maxHeader, size - pos) > windowStart + window.capacity()) {
+                windowStart = pos;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(MAP_WINDOW, size - pos));
+            }
+            int at = (int) (pos - windowStart);
+            if (at >= window.capacity()) {
+                throw new IOException("Snapshot truncado: " + file);
+            }
+            byte marker = window.get(at);
+            if (marker == 0) {
+                if (at + 9 > window.capacity() || window.getLong(at + 1) != entries.size()) {
+                    throw new IOException("Snapshot truncado ou incompleto: " + file);
+                }
+                return entries;
+            }
+            if ((marker != LIST && marker != PACKED_LIST) || at + 3 > window.capacity()) {
+                throw new IOException("Snapshot corrompido: " + file);
+            }
+            int idLength = window.getShort(at + 1) & 0xFFFF;
+            if (at + 3 + idLength + 12 > window.capacity()) {
+                throw new IOException("Snapshot truncado: " + file);
+            }
+            byte[] id = new byte[idLength];
+            window.get(at + 3, id);
+            long lastSeq = window.getLong(at + 3 + idLength);
+            int count = window.getInt(at + 3 + idLength + 8);
+            long valuesStart = pos + 3 + idLength + 12;
+            Entry entry = new Entry(new String(id, StandardCharsets.UTF_8), lastSeq, pos, valuesStart, count,
+                    marker == PACKED_LIST);
+            if (count < 0 || entry.recordEnd() > size) {
+                throw new IOException("Snapshot truncado: " + file);
+            }
+            entries.add(entry);
+            pos = entry.recordEnd();
+        }
+    }
+
+    // Agrupa listas vizinhas cujos registros cabem juntos em uma janela de mapeamento
+    private static List<List<Entry>> groupByWindow(List<Entry> entries) {
+        List<List<Entry>> groups = new ArrayList<>();
+        List<Entry> current = new ArrayList<>();
+        long groupStart = 0;
+        for (Entry entry : entries) {
+            if (!current.isEmpty() && entry.recordEnd() - groupStart > MAP_WINDOW) {
+                groups.add(current);
+                current = new ArrayList<>();
+            }
+            if (current.isEmpty()) {
+                groupStart = entry.recordStart;
+            }
+            current.add(entry);
+        }
+        if (!current.isEmpty()) {
+            groups.add(current);
+        }
+        return groups;
+    }
+
+    private long restoreGroup(FileChannel channel, List<Entry> group) throws IOException {
+        long groupStart = group.get(0).recordStart;
+        long groupEnd = group.get(group.size() - 1).recordEnd();
+        long elements = 0;
+        if (groupEnd - groupStart <= MAP_WINDOW) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, groupStart, groupEnd - groupStart);
+            for (Entry entry : group) {
+                int recordAt = (int) (entry.recordStart - groupStart);
+                int valuesAt = (int) (entry.valuesStart - groupStart);
+                int crcAt = valuesAt + (int) entry.valueBytes();
+                CRC32C crc = new CRC32C();
+                crc.update(map.slice(recordAt, crcAt - recordAt));
+                if ((int) crc.getValue() != map.getInt(crcAt)) {
+                    throw new IOException("CRC inválido na lista '" + entry.listId + "'");
+                }
+                IntBuffer values;
+                if (entry.packed) {
+                    values = IntBuffer.wrap(PackedInts.readFrom(map.slice(valuesAt, entry.count)).toArray());
+                } else {
+                    values = map.slice(valuesAt, 4 * entry.count).asIntBuffer();
+                }
+                remoteList.restoreList(entry.listId, values, entry.lastSeq);
+                elements += values.limit();
+            }
+            return elements;
+        }
+        // Uma lista maior que a janela: confere o CRC pedaço a pedaço e só então
+        // copia, para que um arquivo corrompido nunca chegue à lista
+        Entry entry = group.get(0);
+        CRC32C crc = new CRC32C();
+        crc.update(channel.map(FileChannel.MapMode.READ_ONLY, entry.recordStart, entry.valuesStart - entry.recordStart));
+        long end = entry.valuesStart + 4L * entry.count;
+        for (long pos = entry.valuesStart; pos < end; pos += MAP_WINDOW) {
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(MAP_WINDOW, end - pos)));
+        }
+        ByteBuffer stored = channel.map(FileChannel.MapMode.READ_ONLY, end, 4);
+        if ((int) crc.getValue() != stored.getInt(0)) {
+            throw new IOException("CRC inválido na lista '" + entry.listId + "'");
+        }
+        remoteList.restoreList(entry.listId, IntBuffer.allocate(0), entry.lastSeq);
+        for (long pos = entry.valuesStart; pos < end; pos += MAP_WINDOW) {
+            MappedByteBuffer piece = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(MAP_WINDOW, end - pos));
+            remoteList.restoreList(entry.listId, piece.asIntBuffer(), entry.lastSeq);
+        }
+        return entry.count;
+    }
+
+    // Formato da versão 1 (stream com CRC único no final), lido sequencialmente
+    private long loadVersion1(Path file) throws IOException {
+        long maxSeq;
+        long lists = 0;
+        long elements = 0;
+        CRC32C crc = new CRC32C();
+        try (InputStream file0 = new BufferedInputStream(Files.newInputStream(file), 1 << 16);
+             CheckedInputStream checked = new CheckedInputStream(file0, crc);
+             DataInputStream in = new DataInputStream(checked)) {
+            in.readInt();
+            in.readInt();
+            maxSeq = in.readLong() - 1;
+            while (in.readByte() == 1) {
+                byte[] id = new byte[in.readShort() & 0xFFFF];
+                in.readFully(id);
+                long lastSeq = in.readLong();
+                int[] values = new int[in.readInt()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = in.readInt();
+                }
+                remoteList.restoreList(new String(id, StandardCharsets.UTF_8), IntBuffer.wrap(values), lastSeq);
+                maxSeq = Math.max(maxSeq, lastSeq);
+                lists++;
+                elements += values.length;
+            }
+            int expected = (int) crc.getValue();
+            if (in.readInt() != expected) {
+                throw new IOException("Snapshot corrompido (CRC inválido): " + file);
+            }
+        }
+        System.out.printf("Snapshot %s (versão 1) carregado: %d listas, %d elementos%n",
+                file.getFileName(), lists, elements);
+        return maxSeq;
+    }
+
+    private List<Path> snapshots() throws IOException {
+        List<Path> result = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(p -> p.getFileName().toString().endsWith(".snap"))
+                    .sorted()
+                    .forEach(result::add);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,107 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.stream.Stream;
+
+/**
+ * Arquivos das listas descarregadas da memória (ver ConcurrentIntList.spill),
+ * um por lista, com o listId em Base64 no nome como no armazenamento mapeado.
+ *
+ * Formato: [int magic][byte 1][PackedInts] ou [int magic][byte 0][int n][n
+ * ints] quando comprimir não compensa. Os arquivos são só uma extensão da
+ * memória: a fonte da verdade continua sendo o snapshot e o WAL, então não há
+ * fsync e o diretório é limpo ao iniciar.
+ */
+public class SpillStore {
+    private static final int MAGIC = 0x524C5350; // "RLSP"
+    private static final String SUFFIX = ".spill";
+
+    private final Path dir;
+
+    public SpillStore(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+        // Sobras de uma execução anterior: as listas voltam do snapshot e do WAL
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(SUFFIX)) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    public Path dir() {
+        return dir;
+    }
+
+    void write(String listId, int[] values) {
+        PackedInts packed = values.length >= PackedInts.FRAME && values.length <= PackedInts.MAX_SIZE
+                ? PackedInts.pack(values, 0, values.length) : null;
+        boolean compress = packed != null && packed.encodedBytes() < 4L + 4L * values.length;
+        ByteBuffer buf = ByteBuffer.allocate(5 + (compress ? packed.encodedBytes() : 4 + 4 * values.length));
+        buf.putInt(MAGIC);
+        if (compress) {
+            buf.put((byte) 1);
+            packed.writeTo(buf);
+        } else {
+            buf.put((byte) 0).putInt(values.length);
+            buf.asIntBuffer().put(values);
+            buf.position(buf.capacity());
+        }
+        buf.flip();
+        try (FileChannel channel = FileChannel.open(file(listId), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Falha ao descarregar a lista '" + listId + "'", e);
+        }
+    }
+
+    int[] read(String listId) {
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file(listId)));
+            if (buf.remaining() < 5 || buf.getInt() != MAGIC) {
+                throw new IOException("Arquivo de lista descarregada inválido");
+            }
+            if (buf.get() == 1) {
+                return PackedInts.readFrom(buf).toArray();
+            }
+            int[] values = new int[buf.getInt()];
+            buf.asIntBuffer().get(values);
+            return values;
+        } catch (IOException | RuntimeException e) {
+            throw new UncheckedIOException("Falha ao carregar a lista '" + listId + "' do disco",
+                    e instanceof IOException ? (IOException) e : new IOException(e));
+        }
+    }
+
+    void delete(String listId) {
+        try {
+            Files.deleteIfExists(file(listId));
+        } catch (IOException e) {
+            // Sobra no disco até o próximo início
+        }
+    }
+
+    /** listIds longos demais para um nome de arquivo ficam sempre em memória. */
+    boolean accepts(String listId) {
+        return name(listId).length() + SUFFIX.length() <= 255;
+    }
+
+    private static String name(String listId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(listId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path file(String listId) {
+        return dir.resolve(name(listId) + SUFFIX);
+    }
+}
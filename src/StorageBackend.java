@@ -0,0 +1,134 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Onde o RemoteListImpl guarda os valores de cada lista (ver IntStore).
+ * Escolhido por remotelist.storage:
+ * - {@code heap} (padrão): IntList, segmentos int[] no heap;
+ * - {@code offheap}: OffHeapIntList, memória direta fora do GC;
+ * - {@code mapped}: MappedIntList, um arquivo por lista em dataDir/lists,
+ *   reaproveitado no próximo início se o servidor parou de forma limpa.
+ */
+public interface StorageBackend {
+    /** Armazenamento de uma lista nova (ou, no mapeado, o que já estava em disco). */
+    IntStore open(String listId);
+
+    /** Listas encontradas no armazenamento ao iniciar (só no mapeado). */
+    default List<String> persistedLists() {
+        return List.of();
+    }
+
+    /**
+     * Se os valores já vivem em disco (mapeado). Esses não são descarregados
+     * pelo ListSpiller: esvaziar a lista apagaria o próprio arquivo dela.
+     */
+    default boolean persistent() {
+        return false;
+    }
+
+    String describe();
+
+    static StorageBackend fromSystemProperties() throws IOException {
+        String kind = System.getProperty("remotelist.storage", "heap").toLowerCase();
+        int chunkShift = Integer.getInteger("remotelist.storage.chunkShift", -1);
+        switch (kind) {
+            case "heap":
+                return heap();
+            case "offheap":
+                return offHeap(chunkShift > 0 ? chunkShift : IntList.DEFAULT_CHUNK_SHIFT);
+            case "mapped":
+                return mapped(Path.of(System.getProperty("remotelist.dataDir", "data"), "lists"),
+                        chunkShift > 0 ? chunkShift : Mapped.DEFAULT_CHUNK_SHIFT);
+            default:
+                throw new IllegalArgumentException("remotelist.storage desconhecido: " + kind);
+        }
+    }
+
+    static StorageBackend heap() {
+        return new StorageBackend() {
+            @Override
+            public IntStore open(String listId) {
+                return new IntList();
+            }
+
+            @Override
+            public String describe() {
+                return "heap";
+            }
+        };
+    }
+
+    static StorageBackend offHeap(int chunkShift) {
+        return new StorageBackend() {
+            @Override
+            public IntStore open(String listId) {
+                return new OffHeapIntList(chunkShift);
+            }
+
+            @Override
+            public String describe() {
+                return "fora do heap (memória direta)";
+            }
+        };
+    }
+
+    static StorageBackend mapped(Path dir, int chunkShift) throws IOException {
+        return new Mapped(dir, chunkShift);
+    }
+
+    /** Um arquivo por lista; o nome é o listId em Base64 (seguro para URLs). */
+    final class Mapped implements StorageBackend {
+        static final int DEFAULT_CHUNK_SHIFT = 20;  // 1M ints (4MB) por segmento
+        private static final String SUFFIX = ".ints";
+
+        private final Path dir;
+        private final int chunkShift;
+
+        Mapped(Path dir, int chunkShift) throws IOException {
+            this.dir = dir;
+            this.chunkShift = chunkShift;
+            Files.createDirectories(dir);
+        }
+
+        @Override
+        public IntStore open(String listId) {
+            String name = Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(listId.getBytes(StandardCharsets.UTF_8));
+            if (name.length() + SUFFIX.length() > 255) {
+                throw new IllegalArgumentException("listId longo demais para o armazenamento mapeado");
+            }
+            return new MappedIntList(dir.resolve(name + SUFFIX), chunkShift);
+        }
+
+        @Override
+        public List<String> persistedLists() {
+            List<String> ids = new ArrayList<>();
+            try (Stream<Path> files = Files.list(dir)) {
+                files.map(file -> file.getFileName().toString())
+                        .filter(name -> name.endsWith(SUFFIX))
+                        .forEach(name -> ids.add(new String(Base64.getUrlDecoder().decode(
+                                name.substring(0, name.length() - SUFFIX.length())), StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return ids;
+        }
+
+        @Override
+        public boolean persistent() {
+            return true;
+        }
+
+        @Override
+        public String describe() {
+            return "arquivos mapeados em " + dir;
+        }
+    }
+}
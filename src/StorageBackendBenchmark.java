@@ -0,0 +1,259 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Pausas de GC e memória de uma lista muito grande em cada armazenamento
+ * (heap, offheap, mapped).
+ *
+ * Cada armazenamento roda numa JVM própria, com o mesmo -Xmx: enche uma lista
+ * com {@code --ints} valores, mede heap, memória fora do heap e RSS, e então
+ * roda uma carga que gera lixo (objetos curtos e alguns de vida média, que
+ * chegam à geração velha) enquanto uma thread mede os atrasos de um sleep de
+ * 1 ms, que é o que uma requisição sente de pausa. No fim, um GC completo.
+ *
+ * Antes de medir, confere que appends em lote que cruzam segmentos alocam
+ * (offheap) ou mapeiam (mapped) cada segmento uma vez só; {@code --check} faz
+ * só essa conferência.
+ *
+ * Uso: java StorageBackendBenchmark [--ints 100000000] [--seconds 10] [--xmx 2g]
+ *                                   [--backend heap|offheap|mapped|all] [--check]
+ */
+public class StorageBackendBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        long ints = 100_000_000;
+        int seconds = 10;
+        String xmx = "2g";
+        String backend = "all";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--ints":
+                    ints = Long.parseLong(args[++i].replace("_", ""));
+                    break;
+                case "--seconds":
+                    seconds = Integer.parseInt(args[++i]);
+                    break;
+                case "--xmx":
+                    xmx = args[++i];
+                    break;
+                case "--backend":
+                    backend = args[++i];
+                    break;
+                case "--check":
+                    checkAllocations();
+                    return;
+                default:
+                    throw new IllegalArgumentException("Argumento desconhecido: " + args[i]);
+            }
+        }
+        if (!backend.equals("all")) {
+            run(backend, ints, seconds);
+            return;
+        }
+
+        checkAllocations();
+        System.out.println("📦 === PAUSAS E MEMÓRIA POR ARMAZENAMENTO ===");
+        System.out.printf("⚙️ %,d ints numa lista, %d s de carga, -Xmx%s%n", ints, seconds, xmx);
+        System.out.printf("%n%-8s %9s %9s %9s %9s %11s %11s %11s %9s %11s%n", "", "enche s", "heap MB",
+                "fora MB", "RSS MB", "atraso p99", "p99.9 ms", "máx ms", "GCs", "GC compl ms");
+        // Uma JVM por armazenamento: o estado do heap de uma não influencia a outra
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        for (String name : new String[] {"heap", "offheap", "mapped"}) {
+            Process process = new ProcessBuilder(java, "-Xmx" + xmx, "-Xms" + xmx,
+                    "-XX:MaxDirectMemorySize=" + Math.max(1, (ints * 4 >> 20) * 2) + "m",
+                    "-cp", System.getProperty("java.class.path"), StorageBackendBenchmark.class.getName(),
+                    "--backend", name, "--ints", Long.toString(ints), "--seconds", Integer.toString(seconds))
+                    .redirectErrorStream(true).start();
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    System.out.println(line);
+                }
+            }
+            if (process.waitFor() != 0) {
+                System.out.printf("%-8s ❌ falhou (memória insuficiente para o -Xmx?)%n", name);
+            }
+        }
+    }
+
+    /**
+     * Lotes de 1000 valores em segmentos de 1024: quase todo lote cruza uma
+     * fronteira. Cada segmento deve ser alocado uma vez (o primeiro do
+     * offheap ainda cresce dobrando até o tamanho cheio); lança se não for.
+     */
+    private static void checkAllocations() throws IOException {
+        int shift = 10;
+        int ints = 1_000_000;
+        int used = ((ints - 1) >>> shift) + 1;
+        Path dir = Files.createTempDirectory("storage-check");
+        try {
+            BufferIntList[] stores = {new OffHeapIntList(shift), new MappedIntList(dir.resolve("check"), shift)};
+            int[] maxAllocations = {used + shift - 4, used};  // offheap: 16, 32, ... até 2^shift no primeiro
+            int[] batch = new int[1000];
+            for (int k = 0; k < stores.length; k++) {
+                BufferIntList store = stores[k];
+                for (int filled = 0; filled < ints; filled += batch.length) {
+                    int n = Math.min(batch.length, ints - filled);
+                    for (int i = 0; i < n; i++) {
+                        batch[i] = filled + i;
+                    }
+                    store.addAll(batch, 0, n);
+                }
+                for (int i = 0; i < ints; i += 997) {
+                    if (store.get(i) != i) {
+                        throw new IllegalStateException("Valor incorreto no índice " + i);
+                    }
+                }
+                String name = store.getClass().getSimpleName();
+                if (store.allocations > maxAllocations[k]) {
+                    throw new IllegalStateException(String.format("%s: %d alocações de segmento para %d segmentos",
+                            name, store.allocations, used));
+                }
+                System.out.printf("✅ %s: %d alocações de segmento para %d segmentos%n", name, store.allocations,
+                        used);
+                store.close(0);
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static void run(String name, long ints, int seconds) throws Exception {
+        Path dir = Files.createTempDirectory("storage-bench");
+        StorageBackend storage;
+        switch (name) {
+            case "heap":
+                storage = StorageBackend.heap();
+                break;
+            case "offheap":
+                storage = StorageBackend.offHeap(IntList.DEFAULT_CHUNK_SHIFT);
+                break;
+            default:
+                storage = StorageBackend.mapped(dir, 20);
+        }
+        try {
+            long t0 = System.nanoTime();
+            IntStore store = storage.open("bench");
+            int[] block = new int[1 << 16];
+            for (long filled = 0; filled < ints; filled += block.length) {
+                int n = (int) Math.min(block.length, ints - filled);
+                for (int i = 0; i < n; i++) {
+                    block[i] = (int) (filled + i);
+                }
+                store.addAll(block, 0, n);
+            }
+            double fillSeconds = (System.nanoTime() - t0) / 1e9;
+
+            long heapBytes = usedHeap();
+            long offHeapBytes = 0;
+            for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+                offHeapBytes += pool.getMemoryUsed();
+            }
+            long rssBytes = rss();
+
+            long gcCountBefore = gcCount();
+            LatencyHistogram delays = churn(seconds);
+            long gcs = gcCount() - gcCountBefore;
+
+            long full = System.nanoTime();
+            System.gc();
+            long fullMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - full);
+
+            // Confere que a lista continua íntegra depois de tudo
+            if (store.get((int) (ints - 1)) != (int) (ints - 1)) {
+                throw new IllegalStateException("Valor incorreto no fim da lista");
+            }
+            System.out.printf("%-8s %9.1f %9d %9d %9d %11.2f %11.2f %11.2f %9d %11d%n", name, fillSeconds,
+                    heapBytes >> 20, offHeapBytes >> 20, rssBytes >> 20,
+                    delays.getValueAtPercentile(99) / 1e6, delays.getValueAtPercentile(99.9) / 1e6,
+                    delays.getMaxValue() / 1e6, gcs, fullMillis);
+            store.close(0);
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static volatile Object sink;
+
+    // Lixo de vida curta e média enquanto mede o atraso de um sleep de 1 ms
+    private static LatencyHistogram churn(int seconds) throws InterruptedException {
+        LatencyHistogram delays = new LatencyHistogram();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        Thread probe = new Thread(() -> {
+            while (System.nanoTime() < end) {
+                long before = System.nanoTime();
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                delays.recordValue(Math.max(0, System.nanoTime() - before - 1_000_000));
+            }
+        }, "pause-probe");
+        probe.setDaemon(true);
+        probe.start();
+
+        List<Object> retained = new ArrayList<>();
+        long i = 0;
+        while (System.nanoTime() < end) {
+            byte[] garbage = new byte[256 + (int) (i % 1024)];
+            sink = garbage;
+            // Uma parte sobrevive algum tempo e é promovida, como caches e sessões
+            if (i % 64 == 0) {
+                if (retained.size() >= 200_000) {
+                    retained.set((int) (i / 64 % retained.size()), garbage);
+                } else {
+                    retained.add(garbage);
+                }
+            }
+            i++;
+        }
+        probe.join();
+        sink = retained;
+        return delays;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 2; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    // Memória residente do processo (Linux); 0 se não der para ler
+    private static long rss() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Fora do Linux
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,123 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compara o armazenamento antigo (ArrayList<Integer>) com o IntList primitivo:
+ * memória retida por elemento e throughput de append/get/remove.
+ *
+ * Uso: java -Xmx4g StorageBenchmark [numElementos]
+ */
+public class StorageBenchmark {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+
+        System.out.println("📦 === BENCHMARK DE ARMAZENAMENTO ===");
+        System.out.printf("⚙️ Elementos por lista: %,d\n", n);
+
+        // Uma rodada de aquecimento para o JIT antes de medir
+        runBoxed(Math.min(n, 1_000_000), false);
+        runPrimitive(Math.min(n, 1_000_000), false);
+
+        Result boxed = runBoxed(n, true);
+        Result primitive = runPrimitive(n, true);
+
+        System.out.println("\n📊 === RESULTADOS ===");
+        System.out.printf("%-22s %14s %14s %14s %14s\n",
+                "Armazenamento", "bytes/elem", "append Mops/s", "get Mops/s", "remove Mops/s");
+        print("ArrayList<Integer>", boxed, n);
+        print("IntList (int[] chunks)", primitive, n);
+        System.out.printf("\n🚀 Memória: %.1fx menor | append: %.1fx mais rápido\n",
+                (double) boxed.bytes / Math.max(1, primitive.bytes),
+                (double) boxed.appendNanos / Math.max(1, primitive.appendNanos));
+    }
+
+    private static Result runBoxed(int n, boolean measure) {
+        long before = usedMemory();
+        long t0 = System.nanoTime();
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            // Valores fora do cache de Integer, como acontece com dados reais
+            list.add(i + 1024);
+        }
+        long t1 = System.nanoTime();
+        long bytes = usedMemory() - before;
+
+        long sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += list.get(i);
+        }
+        long t2 = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            sum += list.remove(list.size() - 1);
+        }
+        long t3 = System.nanoTime();
+        blackhole(sum);
+        return measure ? new Result(bytes, t1 - t0, t2 - t1, t3 - t2) : null;
+    }
+
+    private static Result runPrimitive(int n, boolean measure) {
+        long before = usedMemory();
+        long t0 = System.nanoTime();
+        IntList list = new IntList();
+        for (int i = 0; i < n; i++) {
+            list.add(i + 1024);
+        }
+        long t1 = System.nanoTime();
+        long bytes = usedMemory() - before;
+
+        long sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += list.get(i);
+        }
+        long t2 = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            sum += list.removeLast();
+        }
+        long t3 = System.nanoTime();
+        blackhole(sum);
+        return measure ? new Result(bytes, t1 - t0, t2 - t1, t3 - t2) : null;
+    }
+
+    private static void print(String name, Result r, int n) {
+        System.out.printf("%-22s %14.1f %14.1f %14.1f %14.1f\n",
+                name,
+                (double) r.bytes / n,
+                n * 1000.0 / r.appendNanos,
+                n * 1000.0 / r.getNanos,
+                n * 1000.0 / r.removeNanos);
+    }
+
+    private static long usedMemory() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static volatile long sink;
+
+    private static void blackhole(long value) {
+        sink = value;
+    }
+
+    private static class Result {
+        final long bytes;
+        final long appendNanos;
+        final long getNanos;
+        final long removeNanos;
+
+        Result(long bytes, long appendNanos, long getNanos, long removeNanos) {
+            this.bytes = bytes;
+            this.appendNanos = appendNanos;
+            this.getNanos = getNanos;
+            this.removeNanos = removeNanos;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compara threads de plataforma e virtuais com números crescentes de
+ * clientes, todos contra um BinaryServer em processo.
+ *
+ * Cada cliente é uma thread que faz um get síncrono e espera um tempo de
+ * "pensar" antes do próximo, como um usuário real; as chamadas de todos os
+ * clientes são multiplexadas em poucas conexões. Com muitos clientes o que
+ * muda entre os modelos é o custo de criar e manter as threads: tempo para
+ * subir todos os clientes, vazão alcançada em relação à oferecida, latência
+ * e heap usado.
+ *
+ * Threads virtuais exigem Java 21+; em JVMs anteriores só o modelo de
+ * plataforma é medido.
+ *
+ * Uso: java ThreadModelBenchmark [--clients 100,1000,10000,100000]
+ *        [--think-ms 100] [--seconds 5] [--connections 4] [--max-platform 10000]
+ */
+public class ThreadModelBenchmark {
+    private static final int PORT = 7399;
+    private static final int LISTS = 1024;
+    private static final int PREFILL = 256;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        String[] clientCounts = options.getOrDefault("clients", "100,1000,10000,100000").split(",");
+        long thinkNanos = (long) (Double.parseDouble(options.getOrDefault("think-ms", "100")) * 1_000_000);
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "5"));
+        int connections = Integer.parseInt(options.getOrDefault("connections", "4"));
+        int maxPlatform = Integer.parseInt(options.getOrDefault("max-platform", "10000"));
+
+        ServerLog.setLevel(ServerLog.Level.WARN);
+        System.out.println("🧵 === BENCHMARK DE MODELO DE THREADS ===");
+        System.out.printf("⚙️ pensar %.0f ms entre chamadas, %d s por rodada, %d conexões%n",
+                thinkNanos / 1e6, seconds, connections);
+        if (!ThreadSupport.virtualAvailable()) {
+            System.out.println("⚠️ " + ThreadSupport.describe(true) + ": medindo só threads de plataforma");
+        }
+
+        System.out.printf("%n%-11s %9s %11s %12s %12s %10s %10s %9s%n", "Modelo", "clientes", "início ms",
+                "ops/s", "oferecido", "p50 µs", "p99 µs", "heap MB");
+        boolean[] models = ThreadSupport.virtualAvailable() ? new boolean[] {false, true} : new boolean[] {false};
+        for (boolean virtual : models) {
+            RemoteListImpl engine = new RemoteListImpl();
+            int[] values = new int[PREFILL];
+            for (int i = 0; i < LISTS; i++) {
+                engine.appendAll("tm_" + i, values);
+            }
+            BinaryServer server = new BinaryServer(engine, PORT, 1,
+                    ThreadSupport.newPerTaskExecutor(virtual, "tm-worker"));
+            server.start();
+            BinaryClient[] clients = new BinaryClient[connections];
+            for (int i = 0; i < connections; i++) {
+                clients[i] = new BinaryClient("localhost", PORT);
+            }
+            for (String count : clientCounts) {
+                int n = Integer.parseInt(count.trim());
+                String model = virtual ? "virtual" : "plataforma";
+                if (!virtual && n > maxPlatform) {
+                    System.out.printf("%-11s %9d %11s%n", model, n, "pulado (--max-platform)");
+                    continue;
+                }
+                runRound(model, virtual, n, thinkNanos, seconds, clients);
+            }
+            for (BinaryClient client : clients) {
+                client.close();
+            }
+            server.stop();
+        }
+        System.exit(0);
+    }
+
+    private static void runRound(String model, boolean virtual, int n, long thinkNanos, int seconds,
+                                 BinaryClient[] connections) throws Exception {
+        System.gc();
+        ThreadFactory factory = ThreadSupport.factory(virtual, "tm-client");
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch started = new CountDownLatch(n);
+        CountDownLatch done = new CountDownLatch(n);
+        LatencyHistogram[] histograms = new LatencyHistogram[Math.min(n, 32)];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        AtomicLong measureFrom = new AtomicLong(Long.MAX_VALUE);
+
+        long begin = System.nanoTime();
+        for (int c = 0; c < n; c++) {
+            BinaryClient target = connections[c % connections.length];
+            LatencyHistogram histogram = histograms[c % histograms.length];
+            Thread thread = factory.newThread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                started.countDown();
+                try {
+                    // Primeira chamada espalhada no tempo de pensar para não sincronizar todos
+                    LockSupport.parkNanos(random.nextLong(Math.max(1, thinkNanos)));
+                    while (running.get()) {
+                        long start = System.nanoTime();
+                        target.get("tm_" + random.nextInt(LISTS), random.nextInt(PREFILL));
+                        long latency = System.nanoTime() - start;
+                        if (start >= measureFrom.get()) {
+                            synchronized (histogram) {
+                                histogram.recordValue(latency);
+                            }
+                        }
+                        LockSupport.parkNanos(thinkNanos);
+                    }
+                } catch (Exception e) {
+                    System.err.println("❌ Erro no cliente: " + e.getMessage());
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.start();
+        }
+        started.await();
+        long startupMillis = (System.nanoTime() - begin) / 1_000_000;
+
+        // Meio segundo para estabilizar antes de medir
+        Thread.sleep(500);
+        long from = System.nanoTime();
+        measureFrom.set(from);
+        Thread.sleep(seconds * 1000L);
+        long to = System.nanoTime();
+        Runtime runtime = Runtime.getRuntime();
+        long heapMb = (runtime.totalMemory() - runtime.freeMemory()) >> 20;
+        running.set(false);
+        done.await();
+
+        LatencyHistogram total = new LatencyHistogram();
+        for (LatencyHistogram h : histograms) {
+            total.add(h);
+        }
+        double offered = n * 1e9 / Math.max(1, thinkNanos);
+        System.out.printf("%-11s %9d %11d %12.0f %12.0f %10.1f %10.1f %9d%n", model, n, startupMillis,
+                total.getTotalCount() * 1e9 / (to - from), offered,
+                total.getValueAtPercentile(50) / 1e3, total.getValueAtPercentile(99) / 1e3, heapMb);
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].startsWith("--")) {
+                String key = args[i].substring(2);
+                boolean hasValue = i + 1 < args.length && !args[i + 1].startsWith("--");
+                options.put(key, hasValue ? args[++i] : "true");
+            }
+        }
+        return options;
+    }
+}
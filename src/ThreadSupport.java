@@ -0,0 +1,85 @@
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Criação de threads virtuais quando a JVM tem (Java 21+), com threads de
+ * plataforma como alternativa.
+ *
+ * O projeto compila com javac 17, então a API de threads virtuais é
+ * acessada por reflexão: no Java 21 o modo virtual funciona sem recompilar,
+ * e no 17 {@link #virtualAvailable()} é falso e os mesmos pontos de uso caem
+ * para threads de plataforma.
+ */
+final class ThreadSupport {
+    private static final Method NEW_VIRTUAL_EXECUTOR = lookup(Executors.class, "newVirtualThreadPerTaskExecutor");
+    private static final Method OF_VIRTUAL = lookup(Thread.class, "ofVirtual");
+    private static final Method BUILDER_NAME = lookup(builderClass(), "name", String.class, long.class);
+    private static final Method BUILDER_FACTORY = lookup(builderClass(), "factory");
+
+    private ThreadSupport() {
+    }
+
+    static boolean virtualAvailable() {
+        return NEW_VIRTUAL_EXECUTOR != null && OF_VIRTUAL != null && BUILDER_NAME != null && BUILDER_FACTORY != null;
+    }
+
+    /**
+     * Executor com uma thread nova por tarefa: virtual se pedida e disponível,
+     * senão um cached pool de threads daemon de plataforma.
+     */
+    static ExecutorService newPerTaskExecutor(boolean virtual, String prefix) {
+        if (virtual && virtualAvailable()) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Falha ao criar executor de threads virtuais", e);
+            }
+        }
+        return Executors.newCachedThreadPool(RemoteListServer.daemonThreads(prefix));
+    }
+
+    /** Fábrica de threads virtuais (se pedida e disponível) ou daemon de plataforma. */
+    static ThreadFactory factory(boolean virtual, String prefix) {
+        if (virtual && virtualAvailable()) {
+            try {
+                // Thread.ofVirtual().name(prefix + "-", 1).factory()
+                Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), prefix + "-", 1L);
+                return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Falha ao criar fábrica de threads virtuais", e);
+            }
+        }
+        return RemoteListServer.daemonThreads(prefix);
+    }
+
+    /** Descreve o modo efetivo, para as mensagens de início. */
+    static String describe(boolean virtual) {
+        if (!virtual) {
+            return "threads de plataforma";
+        }
+        return virtualAvailable() ? "threads virtuais"
+                : "threads de plataforma (threads virtuais exigem Java 21+, JVM atual "
+                        + System.getProperty("java.version") + ")";
+    }
+
+    private static Class<?> builderClass() {
+        try {
+            return Class.forName("java.lang.Thread$Builder");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static Method lookup(Class<?> type, String name, Class<?>... parameters) {
+        if (type == null) {
+            return null;
+        }
+        try {
+            return type.getMethod(name, parameters);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
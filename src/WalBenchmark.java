@@ -0,0 +1,83 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Mede appends duráveis por segundo em cada modo de durabilidade do WAL,
+ * com várias threads escrevendo nas listas como fariam as threads do RMI.
+ *
+ * Uso: java WalBenchmark [threads] [segundosPorModo] [diretório]
+ */
+public class WalBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Path baseDir = args.length > 2 ? Path.of(args[2]) : Files.createTempDirectory("wal-bench");
+
+        System.out.println("💾 === BENCHMARK DO LOG DE OPERAÇÕES ===");
+        System.out.printf("⚙️ %d threads, %d s por modo, diretório %s\n", threads, seconds, baseDir);
+        System.out.printf("\n%-14s %16s\n", "Modo", "appends/s");
+
+        long[][] configs = {
+                {OperationLog.Durability.SYNC.ordinal(), 0},
+                {OperationLog.Durability.GROUP.ordinal(), 200},
+                {OperationLog.Durability.GROUP.ordinal(), 1000},
+                {OperationLog.Durability.ASYNC.ordinal(), 1000},
+        };
+        for (long[] config : configs) {
+            OperationLog.Durability durability = OperationLog.Durability.values()[(int) config[0]];
+            Path dir = baseDir.resolve(durability + "-" + config[1]);
+            OperationLog log = new OperationLog(dir, durability, config[1]);
+            log.recover(record -> { }, 0);
+            double rate = run(log, threads, seconds);
+            String label = durability == OperationLog.Durability.GROUP
+                    ? "GROUP/" + config[1] + "µs" : durability.toString();
+            System.out.printf("%-14s %16.0f\n", label, rate);
+            log.close();
+            deleteRecursively(dir);
+        }
+    }
+
+    private static double run(OperationLog log, int threads, int seconds) throws InterruptedException {
+        ConcurrentIntList[] lists = new ConcurrentIntList[16];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = new ConcurrentIntList("bench_" + i, log);
+        }
+        LongAdder ops = new LongAdder();
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final ConcurrentIntList list = lists[t % lists.length];
+            Thread thread = new Thread(() -> {
+                try {
+                    int i = 0;
+                    while (running.get()) {
+                        list.append(i++);
+                        ops.increment();
+                    }
+                } catch (Exception e) {
+                    System.err.println("❌ Erro no benchmark: " + e.getMessage());
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.start();
+        }
+        long start = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        done.await();
+        return ops.sum() * 1e9 / (System.nanoTime() - start);
+    }
+
+    private static void deleteRecursively(Path dir) throws Exception {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}